@@ -0,0 +1,192 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.ActivityAuthorizationPool;
+import com.biit.usermanager.security.AuthorizationPool;
+import com.biit.usermanager.security.IActivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorization checks of activities, for a user and for a user in an organization. The loaders return the activities
+ * of the user without a backend, so misses measure the cost of storing the decisions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    private static final int ACTIVITIES = 64;
+    private static final int ACTIVITIES_BY_USER = 8;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.9", "0.5"})
+    private double hitRatio;
+
+    @Param({"0", "0.2"})
+    private double expiredRatio;
+
+    private final ExpirationClock clock = new ExpirationClock();
+    private ActivityAuthorizationPool activityPool;
+    private AuthorizationPool<Long, Long> authorizationPool;
+    private IUser<Long>[] users;
+    private IGroup<Long> organization;
+    private IActivity[] activities;
+    private List<IActivity> userActivities;
+    private Callable<Collection<IActivity>> loader;
+    private LookupKeys keys;
+    private int nextActivity;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void createUsers() {
+        activities = new IActivity[ACTIVITIES];
+        for (int i = 0; i < ACTIVITIES; i++) {
+            activities[i] = BenchmarkEntities.activity(i);
+        }
+        userActivities = new ArrayList<>();
+        for (int i = 0; i < ACTIVITIES_BY_USER; i++) {
+            userActivities.add(activities[i]);
+        }
+        loader = () -> userActivities;
+        organization = BenchmarkEntities.group(1);
+        users = new IUser[size * 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = BenchmarkEntities.user(i);
+        }
+        keys = new LookupKeys(size, hitRatio);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillPools() throws InterruptedException {
+        clock.reset();
+        activityPool = new ActivityAuthorizationPool() {
+            @Override
+            public long getExpirationTime() {
+                return clock.getExpirationTime();
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return 0;
+            }
+        };
+        authorizationPool = new AuthorizationPool<Long, Long>() {
+            @Override
+            public long getExpirationTime() {
+                return clock.getExpirationTime();
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return 0;
+            }
+        };
+        for (int i = 0; i < size; i++) {
+            if (PoolContent.isExpired(i, expiredRatio)) {
+                activityPool.setUserActivities(users[i], userActivities);
+                activityPool.setUserActivities(users[i], organization, userActivities);
+                authorizationPool.setUserActivities(users[i], userActivities);
+                authorizationPool.setUserActivities(users[i], organization, userActivities);
+            }
+        }
+        clock.startValidEntries();
+        for (int i = 0; i < size; i++) {
+            if (!PoolContent.isExpired(i, expiredRatio)) {
+                activityPool.setUserActivities(users[i], userActivities);
+                activityPool.setUserActivities(users[i], organization, userActivities);
+                authorizationPool.setUserActivities(users[i], userActivities);
+                authorizationPool.setUserActivities(users[i], organization, userActivities);
+            }
+        }
+    }
+
+    private IActivity nextActivity() {
+        nextActivity = (nextActivity + 1) % ACTIVITIES;
+        return activities[nextActivity];
+    }
+
+    @Benchmark
+    public Boolean activityPoolIsAuthorized() {
+        return activityPool.isAuthorizedActivity(users[(int) keys.next()], nextActivity());
+    }
+
+    @Benchmark
+    public Boolean activityPoolIsAuthorizedInOrganization() {
+        return activityPool.isAuthorizedActivity(users[(int) keys.next()], organization, nextActivity());
+    }
+
+    @Benchmark
+    public boolean activityPoolIsAuthorizedFromPermissions() throws Exception {
+        return activityPool.isAuthorizedActivityFromPermissions(users[(int) keys.next()], organization, nextActivity(), loader);
+    }
+
+    @Benchmark
+    public void activityPoolAddUser() {
+        activityPool.addUser(users[(int) keys.next()], organization, nextActivity(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Boolean authorizationPoolIsAuthorized() {
+        return authorizationPool.isAuthorizedActivity(users[(int) keys.next()], nextActivity());
+    }
+
+    @Benchmark
+    public Boolean authorizationPoolIsAuthorizedInOrganization() {
+        return authorizationPool.isAuthorizedActivity(users[(int) keys.next()], organization, nextActivity());
+    }
+
+    @Benchmark
+    public boolean authorizationPoolIsAuthorizedFromPermissions() throws Exception {
+        return authorizationPool.isAuthorizedActivityFromPermissions(users[(int) keys.next()], organization, nextActivity(), loader);
+    }
+
+    @Benchmark
+    public void authorizationPoolAddUser() {
+        authorizationPool.addUser(users[(int) keys.next()], organization, nextActivity(), Boolean.TRUE);
+    }
+}
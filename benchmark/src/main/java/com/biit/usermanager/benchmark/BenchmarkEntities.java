@@ -0,0 +1,189 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IActivity;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Minimal entities used to fill the pools.
+ */
+public final class BenchmarkEntities {
+
+    private BenchmarkEntities() {
+    }
+
+    public static IUser<Long> user(long id) {
+        return new User(id);
+    }
+
+    public static IRole<Long> role(long id) {
+        return new Role(id);
+    }
+
+    public static IGroup<Long> group(long id) {
+        return new Group(id);
+    }
+
+    public static IActivity activity(int index) {
+        return new Activity("benchmark.activity." + index);
+    }
+
+    private abstract static class Element {
+        private final long id;
+
+        Element(long id) {
+            this.id = id;
+        }
+
+        public Long getUniqueId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && ((Element) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+
+    private static final class User extends Element implements IUser<Long> {
+        private String firstName = "first";
+        private String lastName = "last";
+        private Locale locale = Locale.ROOT;
+        private String password = "";
+
+        User(long id) {
+            super(id);
+        }
+
+        @Override
+        public String getUniqueName() {
+            return "user" + getUniqueId();
+        }
+
+        @Override
+        public String getEmailAddress() {
+            return "user" + getUniqueId() + "@benchmark.test";
+        }
+
+        @Override
+        public String getFirstName() {
+            return firstName;
+        }
+
+        @Override
+        public String getLastName() {
+            return lastName;
+        }
+
+        @Override
+        public Locale getLocale() {
+            return locale;
+        }
+
+        @Override
+        public String getPassword() {
+            return password;
+        }
+
+        @Override
+        public void setFirstName(String name) {
+            this.firstName = name;
+        }
+
+        @Override
+        public void setLastName(String surname) {
+            this.lastName = surname;
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            this.locale = locale;
+        }
+
+        @Override
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        @Override
+        public int compareTo(IUser<Long> other) {
+            return getUniqueId().compareTo(other.getUniqueId());
+        }
+    }
+
+    private static final class Role extends Element implements IRole<Long> {
+        Role(long id) {
+            super(id);
+        }
+
+        @Override
+        public String getUniqueName() {
+            return "role" + getUniqueId();
+        }
+    }
+
+    private static final class Group extends Element implements IGroup<Long> {
+        Group(long id) {
+            super(id);
+        }
+
+        @Override
+        public String getUniqueName() {
+            return "group" + getUniqueId();
+        }
+    }
+
+    private static final class Activity implements IActivity {
+        private final String tag;
+
+        Activity(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public String getTag() {
+            return tag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Activity && Objects.equals(((Activity) o).tag, tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return tag.hashCode();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line options. Unless a result file is given, results are written as JSON
+ * to a file named with the version of the library, so runs of different versions can be compared.
+ */
+public final class BenchmarkRunner {
+
+    private static final String RESULT_FORMAT = "-rf";
+    private static final String RESULT_FILE = "-rff";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains(RESULT_FORMAT) && !options.contains(RESULT_FILE)) {
+            options.add(RESULT_FORMAT);
+            options.add("json");
+            options.add(RESULT_FILE);
+            options.add("jmh-result-" + getVersion() + ".json");
+        }
+        new Runner(new CommandLineOptions(options.toArray(new String[0]))).run();
+    }
+
+    private static String getVersion() {
+        final String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+        return version != null ? version : "unknown";
+    }
+}
@@ -0,0 +1,59 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+/**
+ * Expiration time that makes expired exactly the entries written before a point in time. Pools compare the age of an
+ * entry with the expiration time each time they check it, so returning {@code now - cutoff} expires the entries
+ * written before the cutoff and keeps the others valid for the whole benchmark.
+ */
+public class ExpirationClock {
+
+    private static final long NO_EXPIRATION = Long.MAX_VALUE / 2;
+
+    private volatile long cutoff = -1;
+
+    public long getExpirationTime() {
+        final long currentCutoff = cutoff;
+        if (currentCutoff < 0) {
+            return NO_EXPIRATION;
+        }
+        return System.currentTimeMillis() - currentCutoff;
+    }
+
+    /**
+     * Entries written from now on never expire. Waits until the clock changes, so they are distinguished from the
+     * previous ones.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void startValidEntries() throws InterruptedException {
+        Thread.sleep(2);
+        cutoff = System.currentTimeMillis();
+        Thread.sleep(2);
+    }
+
+    public void reset() {
+        cutoff = -1;
+    }
+}
@@ -0,0 +1,59 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.SplittableRandom;
+
+/**
+ * Precomputed sequence of ids to look up, so the benchmarks do not measure the random generator. A fraction of the ids
+ * are in the pool (hits) and the others are not (misses).
+ */
+public final class LookupKeys {
+
+    private static final int KEYS = 1 << 16;
+    private static final int MASK = KEYS - 1;
+    private static final long SEED = 42;
+
+    private final long[] keys;
+    private int next;
+
+    /**
+     * Creates the sequence.
+     *
+     * @param size     the ids in the pool are from 0 to size - 1.
+     * @param hitRatio the fraction of ids that are in the pool.
+     */
+    public LookupKeys(int size, double hitRatio) {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        keys = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextDouble() < hitRatio ? random.nextInt(size) : size + random.nextInt(size);
+        }
+    }
+
+    public long next() {
+        final long key = keys[next];
+        next = (next + 1) & MASK;
+        return key;
+    }
+}
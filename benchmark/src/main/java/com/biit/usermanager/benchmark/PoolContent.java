@@ -0,0 +1,45 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+/**
+ * Decides which ids are stored in a pool and which of them are expired.
+ */
+public final class PoolContent {
+
+    private static final int PERCENT = 100;
+
+    private PoolContent() {
+    }
+
+    /**
+     * Ids are spread uniformly between expired and valid, so that lookups hit both kinds.
+     *
+     * @param id           the id of the entry.
+     * @param expiredRatio the fraction of entries that are expired.
+     * @return true if the entry must be written before the expiration cutoff.
+     */
+    public static boolean isExpired(long id, double expiredRatio) {
+        return id % PERCENT < Math.round(expiredRatio * PERCENT);
+    }
+}
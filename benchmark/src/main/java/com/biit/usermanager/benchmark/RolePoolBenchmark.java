@@ -0,0 +1,151 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.RolePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Roles of users and of users in an organization.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RolePoolBenchmark {
+
+    private static final int ROLES = 32;
+    private static final int ROLES_BY_USER = 4;
+    private static final long ORGANIZATION = 1;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.9", "0.5"})
+    private double hitRatio;
+
+    @Param({"0", "0.2"})
+    private double expiredRatio;
+
+    private final ExpirationClock clock = new ExpirationClock();
+    private RolePool<Long, Long, Long> pool;
+    private IUser<Long>[] users;
+    private Set<IRole<Long>>[] roles;
+    private LookupKeys keys;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void createUsers() {
+        final IRole<Long>[] availableRoles = new IRole[ROLES];
+        for (int i = 0; i < ROLES; i++) {
+            availableRoles[i] = BenchmarkEntities.role(i);
+        }
+        users = new IUser[size * 2];
+        roles = new Set[size * 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = BenchmarkEntities.user(i);
+            roles[i] = new HashSet<>();
+            for (int j = 0; j < ROLES_BY_USER; j++) {
+                roles[i].add(availableRoles[(i + j) % ROLES]);
+            }
+        }
+        keys = new LookupKeys(size, hitRatio);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillPool() throws InterruptedException {
+        clock.reset();
+        pool = new RolePool<Long, Long, Long>() {
+            @Override
+            public long getExpirationTime() {
+                return clock.getExpirationTime();
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return 0;
+            }
+        };
+        for (int i = 0; i < size; i++) {
+            if (PoolContent.isExpired(i, expiredRatio)) {
+                addUser(i);
+            }
+        }
+        clock.startValidEntries();
+        for (int i = 0; i < size; i++) {
+            if (!PoolContent.isExpired(i, expiredRatio)) {
+                addUser(i);
+            }
+        }
+    }
+
+    private void addUser(int index) {
+        pool.setUserRoles(users[index], new HashSet<>(roles[index]));
+        pool.addUserRolesOfGroup(users[index].getUniqueId(), ORGANIZATION, roles[index]);
+    }
+
+    @Benchmark
+    public Set<IRole<Long>> getUserRoles() {
+        return pool.getUserRoles(users[(int) keys.next()]);
+    }
+
+    @Benchmark
+    public Set<IRole<Long>> getUserRolesOfGroup() {
+        return pool.getUserRolesOfGroup(keys.next(), ORGANIZATION);
+    }
+
+    @Benchmark
+    public void setUserRoles() {
+        final int index = (int) keys.next();
+        pool.setUserRoles(users[index], roles[index]);
+    }
+
+    /**
+     * Removes the roles of a user and stores them again, so the size of the pool does not change during the iteration.
+     */
+    @Benchmark
+    public void removeUserRoles() {
+        final int index = (int) keys.next();
+        pool.removeUserRoles(users[index]);
+        pool.setUserRoles(users[index], roles[index]);
+    }
+}
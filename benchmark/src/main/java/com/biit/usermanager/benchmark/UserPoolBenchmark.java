@@ -0,0 +1,136 @@
+package com.biit.usermanager.benchmark;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.UserPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups, writes and removals of users by id and by name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPoolBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    @Param({"0.9", "0.5"})
+    private double hitRatio;
+
+    @Param({"0", "0.2"})
+    private double expiredRatio;
+
+    private final ExpirationClock clock = new ExpirationClock();
+    private UserPool<Long, Long> pool;
+    private IUser<Long>[] users;
+    private LookupKeys keys;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void createUsers() {
+        users = new IUser[size * 2];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = BenchmarkEntities.user(i);
+        }
+        keys = new LookupKeys(size, hitRatio);
+    }
+
+    /**
+     * Expired entries are removed when read, so the pool is filled again for each iteration.
+     *
+     * @throws InterruptedException if interrupted while waiting for the clock.
+     */
+    @Setup(Level.Iteration)
+    public void fillPool() throws InterruptedException {
+        clock.reset();
+        pool = new UserPool<Long, Long>() {
+            @Override
+            public long getExpirationTime() {
+                return clock.getExpirationTime();
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return 0;
+            }
+        };
+        for (int i = 0; i < size; i++) {
+            if (PoolContent.isExpired(i, expiredRatio)) {
+                pool.addUser(users[i]);
+            }
+        }
+        clock.startValidEntries();
+        for (int i = 0; i < size; i++) {
+            if (!PoolContent.isExpired(i, expiredRatio)) {
+                pool.addUser(users[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public IUser<Long> getUserById() {
+        return pool.getUserById(keys.next());
+    }
+
+    @Benchmark
+    public IUser<Long> getUserByScreenName() {
+        return pool.getUserByScreenName(users[(int) keys.next()].getUniqueName());
+    }
+
+    @Benchmark
+    public void addUser() {
+        pool.addUser(users[(int) keys.next()]);
+    }
+
+    /**
+     * Removes a user and stores it again, so the size of the pool does not change during the iteration.
+     *
+     * @return the removed user.
+     */
+    @Benchmark
+    public IUser<Long> removeUser() {
+        final IUser<Long> user = users[(int) keys.next()];
+        final IUser<Long> removed = pool.removeElement(user.getUniqueId());
+        pool.addUser(user);
+        return removed;
+    }
+}
@@ -0,0 +1,86 @@
+package com.biit.usermanager.entity.pool;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of looking up several keys at once in a pool: the values that are cached and the keys that must be loaded from
+ * the backend. The keys keep the order of the request.
+ *
+ * @param <Key>   the key type.
+ * @param <Value> the value type.
+ */
+public class BulkResult<Key, Value> {
+
+    private final Map<Key, Value> hits;
+    private final Set<Key> missing;
+
+    public BulkResult() {
+        hits = new LinkedHashMap<>();
+        missing = new LinkedHashSet<>();
+    }
+
+    public void addHit(Key key, Value value) {
+        hits.put(key, value);
+    }
+
+    public void addMissing(Key key) {
+        missing.add(key);
+    }
+
+    /**
+     * Adds a value if not null, or marks the key as missing otherwise.
+     *
+     * @param key   the key.
+     * @param value the value obtained from the pool.
+     */
+    public void add(Key key, Value value) {
+        if (value != null) {
+            addHit(key, value);
+        } else {
+            addMissing(key);
+        }
+    }
+
+    public Map<Key, Value> getHits() {
+        return Collections.unmodifiableMap(hits);
+    }
+
+    public Set<Key> getMissing() {
+        return Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * All keys are cached.
+     *
+     * @return true if there is nothing to load.
+     */
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+}
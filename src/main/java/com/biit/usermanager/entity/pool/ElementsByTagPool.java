@@ -22,82 +22,339 @@ package com.biit.usermanager.entity.pool;
  */
 
 import com.biit.usermanager.entity.IElement;
+import com.biit.usermanager.entity.pool.collection.PersistentSet;
+import com.biit.usermanager.entity.pool.collection.ReverseIndex;
+import com.biit.usermanager.entity.pool.config.PoolConfiguration;
+import com.biit.usermanager.entity.pool.config.PoolConfigurationListener;
 import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.entity.pool.eviction.SegmentedLru;
+import com.biit.usermanager.entity.pool.expiration.ExpirationQueue;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.expiration.ExpiringMap;
+import com.biit.usermanager.entity.pool.expiration.NegativeCache;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import com.biit.usermanager.entity.pool.metrics.PoolMetricsExporter;
 import com.biit.utils.pool.SimplePool;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongSupplier;
 
-public abstract class ElementsByTagPool<ElementId, Type extends IElement<ElementId>> extends SimplePool<ElementId, Type> {
+public abstract class ElementsByTagPool<ElementId, Type extends IElement<ElementId>> extends SimplePool<ElementId, Type>
+        implements PoolConfigurationListener {
+
+    protected static final String ELEMENTS_METRICS = "elements";
+    private static final String ELEMENTS_BY_TAG_METRICS = "elementsByTag";
+
+    // Write time of the elements stored in the pool, ordered by expiration.
+    private ExpirationQueue<ElementId> elementsExpiration;
+    // Usage of the elements, to evict the less used ones when the pool is full.
+    private SegmentedLru<ElementId> elementsUsage;
+
+    // Unique name -> element id.
+    private Map<String, ElementId> elementsByUniqueName;
+
+    // Ids and names that do not exist in the backend.
+    private NegativeCache<ElementId> missingElements;
+    private NegativeCache<String> missingUniqueNames;
 
     // Classification by string.
-    private Map<String, Long> elementsTagTime; // tag -> time.
-    private Map<String, Set<Type>> elementsByTag;
+    // Stored sets are never modified, new versions are put instead. Getters can return them without copying.
+    private ExpiringMap<String, PersistentSet<Type>> elementsByTag;
+    // Stored tags in order, to find the ones with a prefix, and element id -> tags whose sets contain it. Updated holding
+    // the lock of the map, as the listener that removes expired and evicted tags.
+    private NavigableSet<String> tags;
+    private ReverseIndex<ElementId, String> tagsByElement;
+
+    // Usage statistics by map name. Kept when the pool is reset.
+    private Map<String, CacheMetrics> metrics;
 
     public ElementsByTagPool() {
         reset();
+        PoolConfigurationReader.getInstance().addListener(this);
+    }
+
+    @Override
+    public void addElement(Type element) {
+        addElement(element, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores an element obtained at a given time, i.e. restored from a snapshot. It expires when that time is older
+     * than the expiration time.
+     *
+     * @param element   the element.
+     * @param writeTime the time the element was obtained.
+     */
+    public void addElement(Type element, long writeTime) {
+        if (element != null) {
+            // Name can be changed from previous version of the element.
+            removeUniqueNameIndex(getElementsById().get(element.getUniqueId()));
+        }
+        super.addElement(element);
+        if (element != null) {
+            elementsExpiration.touch(element.getUniqueId(), writeTime);
+            missingElements.remove(element.getUniqueId());
+            final Collection<ElementId> victims = elementsUsage.recordWrite(element.getUniqueId());
+            for (final ElementId victim : victims) {
+                discardElement(victim);
+            }
+            getMetrics(ELEMENTS_METRICS).recordEvictions(victims.size());
+            if (element.getUniqueName() != null) {
+                elementsByUniqueName.put(element.getUniqueName(), element.getUniqueId());
+                missingUniqueNames.remove(element.getUniqueName());
+            }
+        }
+    }
+
+    /**
+     * Marks an id as not existing in the backend. The mark is removed when an element with this id is added or after
+     * the negative expiration time.
+     *
+     * @param elementId the id that does not exist.
+     */
+    public void addMissingElement(ElementId elementId) {
+        if (elementId != null) {
+            missingElements.add(elementId);
+        }
+    }
+
+    public boolean isMissingElement(ElementId elementId) {
+        return missingElements.contains(elementId);
+    }
+
+    /**
+     * Marks a unique name as not existing in the backend. The mark is removed when an element with this name is added
+     * or after the negative expiration time.
+     *
+     * @param uniqueName the name that does not exist.
+     */
+    public void addMissingUniqueName(String uniqueName) {
+        if (uniqueName != null) {
+            missingUniqueNames.add(uniqueName);
+        }
+    }
+
+    public boolean isMissingUniqueName(String uniqueName) {
+        return missingUniqueNames.contains(uniqueName);
+    }
+
+    @Override
+    public Type getElement(ElementId elementId) {
+        if (elementId == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        expireElements(now);
+        final CacheMetrics elementsMetrics = getMetrics(ELEMENTS_METRICS);
+        if (elementsExpiration.isExpired(elementId, now)) {
+            // object has expired
+            discardElement(elementId);
+            elementsMetrics.recordExpirations(1);
+            elementsMetrics.recordMiss();
+            return null;
+        }
+        final Type element = getElementsById().get(elementId);
+        if (element != null) {
+            elementsUsage.recordAccess(elementId);
+            elementsMetrics.recordHit();
+        } else {
+            elementsMetrics.recordMiss();
+        }
+        return element;
+    }
+
+    /**
+     * Visits the elements that have not expired, without counting them as accesses.
+     *
+     * @param visitor receives each element and its write time.
+     */
+    public void forEachElement(ExpiringCache.EntryVisitor<ElementId, Type> visitor) {
+        expireElements(System.currentTimeMillis());
+        for (final Map.Entry<ElementId, Type> element : new ArrayList<>(getElementsById().entrySet())) {
+            final Long writeTime = elementsExpiration.getTime(element.getKey());
+            if (writeTime != null) {
+                visitor.visit(element.getKey(), element.getValue(), writeTime);
+            }
+        }
+    }
+
+    /**
+     * Gets several elements at once.
+     *
+     * @param elementIds the ids of the elements.
+     * @return the elements that are cached and the ids that are not.
+     */
+    public BulkResult<ElementId, Type> getElements(Collection<ElementId> elementIds) {
+        final BulkResult<ElementId, Type> result = new BulkResult<>();
+        if (elementIds != null) {
+            for (final ElementId elementId : elementIds) {
+                result.add(elementId, getElement(elementId));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets an element by its unique name.
+     *
+     * @param uniqueName the name of the element.
+     * @return the element or null if not stored or expired.
+     */
+    public Type getElementByUniqueName(String uniqueName) {
+        if (uniqueName != null) {
+            final ElementId elementId = elementsByUniqueName.get(uniqueName);
+            if (elementId != null) {
+                return getElement(elementId);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Type removeElement(ElementId elementId) {
+        final Type removed = discardElement(elementId);
+        if (removed != null) {
+            getMetrics(ELEMENTS_METRICS).recordRemoval();
+        }
+        return removed;
+    }
+
+    private Type discardElement(ElementId elementId) {
+        final Type removed = super.removeElement(elementId);
+        elementsExpiration.remove(elementId);
+        elementsUsage.remove(elementId);
+        removeUniqueNameIndex(removed);
+        onElementRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Called when an element is removed, expired or evicted. Subclasses update here their own indexes.
+     *
+     * @param element the removed element, or null if it was not stored.
+     */
+    protected void onElementRemoved(Type element) {
+    }
+
+    private void removeUniqueNameIndex(Type element) {
+        if (element != null && element.getUniqueName() != null) {
+            elementsByUniqueName.remove(element.getUniqueName(), element.getUniqueId());
+        }
+    }
+
+    /**
+     * Removes all elements that have expired. Only the expired elements are visited.
+     *
+     * @param now current time.
+     */
+    protected void expireElements(long now) {
+        final Collection<ElementId> expiredElements = elementsExpiration.pollExpired(now);
+        for (final ElementId expired : expiredElements) {
+            discardElement(expired);
+        }
+        getMetrics(ELEMENTS_METRICS).recordExpirations(expiredElements.size());
     }
 
     public void addElementByTag(Set<Type> elements, String tag) {
         if (tag != null && elements != null) {
-            elementsTagTime.put(tag, System.currentTimeMillis());
-            Set<Type> existingGroups = elementsByTag.get(tag);
-            if (existingGroups == null) {
-                existingGroups = new HashSet<Type>();
+            synchronized (elementsByTag) {
+                final PersistentSet<Type> existingGroups = elementsByTag.get(tag);
+                elementsByTag.put(tag, existingGroups != null ? existingGroups.plusAll(elements) : PersistentSet.copyOf(elements));
+                addTagIndex(tag, elements);
             }
-            existingGroups.addAll(elements);
-            elementsByTag.put(tag, existingGroups);
         }
     }
 
     public void addElementByTag(Type element, String tag) {
         if (tag != null && element != null) {
             addElement(element);
-            elementsTagTime.put(tag, System.currentTimeMillis());
-            Set<Type> elements = elementsByTag.get(tag);
-            if (elements == null) {
-                elements = new HashSet<Type>();
+            synchronized (elementsByTag) {
+                final PersistentSet<Type> elements = elementsByTag.get(tag);
+                elementsByTag.put(tag, elements != null ? elements.plus(element) : PersistentSet.<Type>empty().plus(element));
+                addTagIndex(tag, Collections.singleton(element));
             }
-            elements.add(element);
-            elementsByTag.put(tag, elements);
+        }
+    }
+
+    private void addTagIndex(String tag, Collection<Type> elements) {
+        tags.add(tag);
+        for (final Type element : elements) {
+            tagsByElement.add(element.getUniqueId(), tag);
+        }
+    }
+
+    /**
+     * Removes a tag from the indexes of the tags.
+     *
+     * @param tag      the tag.
+     * @param elements the elements that it had.
+     */
+    private void removeTagIndex(String tag, Collection<Type> elements) {
+        tags.remove(tag);
+        for (final Type element : elements) {
+            tagsByElement.remove(element.getUniqueId(), tag);
         }
     }
 
     public Set<Type> getElementsByTag(String tag) {
-        long now = System.currentTimeMillis();
-        String nextGroupTag = null;
-        if (elementsTagTime.size() > 0) {
-            Iterator<String> e = new HashMap<String, Set<Type>>(elementsByTag).keySet().iterator();
-            while (e.hasNext()) {
-                nextGroupTag = e.next();
-                if (elementsTagTime.get(nextGroupTag) != null && (now - elementsTagTime.get(nextGroupTag)) > getExpirationTime()) {
-                    // object has expired
-                    removeElementsByTag(nextGroupTag);
-                    nextGroupTag = null;
-                } else {
-                    if (tag.equals(nextGroupTag)) {
-                        return elementsByTag.get(nextGroupTag);
-                    }
+        return elementsByTag.get(tag);
+    }
+
+    public void removeElementsByTag(String tag) {
+        if (tag != null) {
+            synchronized (elementsByTag) {
+                final PersistentSet<Type> removed = elementsByTag.remove(tag);
+                tags.remove(tag);
+                if (removed != null) {
+                    removeTagIndex(tag, removed);
                 }
             }
         }
-        return null;
     }
 
-    public void removeElementsByTag(String tag) {
-        if (tag != null) {
-            elementsByTag.remove(tag);
-            elementsTagTime.remove(tag);
+    /**
+     * Removes all tags that start with a prefix. Only the tags with this prefix are visited.
+     *
+     * @param prefix the beginning of the tags to remove.
+     */
+    public void removeElementsByTagPrefix(String prefix) {
+        if (prefix != null) {
+            synchronized (elementsByTag) {
+                for (final String tag : new ArrayList<>(tags.subSet(prefix, true, prefix + Character.MAX_VALUE, true))) {
+                    removeElementsByTag(tag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all tags that contain an element, i.e. because the element has changed. Only these tags are visited.
+     *
+     * @param elementId the id of the element.
+     */
+    public void removeElementsByTagContaining(ElementId elementId) {
+        if (elementId != null) {
+            synchronized (elementsByTag) {
+                for (final String tag : tagsByElement.removeValue(elementId)) {
+                    removeElementsByTag(tag);
+                }
+            }
         }
     }
 
     public void removeElementsByTag(String tag, IElement<Long> element) {
-        if (tag != null) {
-            if (elementsByTag.get(tag) != null) {
-                elementsByTag.get(tag).remove(element);
+        if (tag != null && element != null) {
+            synchronized (elementsByTag) {
+                elementsByTag.update(tag, elements -> elements.minus(element));
+                tagsByElement.remove(element.getUniqueId(), tag);
             }
         }
     }
@@ -105,8 +362,108 @@ public abstract class ElementsByTagPool<ElementId, Type extends IElement<Element
     @Override
     public void reset() {
         super.reset();
-        elementsTagTime = new HashMap<String, Long>();
-        elementsByTag = new HashMap<String, Set<Type>>();
+        elementsExpiration = createIdQueue(this::getExpirationTime);
+        elementsUsage = createIdUsage();
+        elementsByUniqueName = new HashMap<String, ElementId>();
+        missingElements = new NegativeCache<ElementId>(createIdQueue(this::getNegativeExpirationTime), this::getMaximumSize);
+        missingUniqueNames = new NegativeCache<String>(this::getNegativeExpirationTime, this::getMaximumSize);
+        elementsByTag = new ExpiringMap<String, PersistentSet<Type>>(this::getExpirationTime, this::getMaximumSize, getMetrics(ELEMENTS_BY_TAG_METRICS));
+        tags = new ConcurrentSkipListSet<>();
+        tagsByElement = new ReverseIndex<>();
+        elementsByTag.setRemovalListener(this::removeTagIndex);
+        getMetrics(ELEMENTS_METRICS).setSize(elementsExpiration::size);
+    }
+
+    /**
+     * Creates a map indexed by the ids of users, groups or roles. Pools with primitive ids can override it to use a
+     * specialized map.
+     *
+     * @param map     the name of the map for the statistics.
+     * @param <Key>   the id type.
+     * @param <Value> the value type.
+     * @return an empty map that uses the expiration time and maximum size of the pool.
+     */
+    protected <Key, Value> ExpiringCache<Key, Value> createIdMap(String map) {
+        return new ExpiringMap<Key, Value>(this::getExpirationTime, this::getMaximumSize, getMetrics(map));
+    }
+
+    /**
+     * Creates the queue that orders the ids of the elements by write time. Pools with primitive ids can override it to
+     * use a specialized queue.
+     *
+     * @param expirationTime the expiration time of the ids.
+     * @return an empty queue.
+     */
+    protected ExpirationQueue<ElementId> createIdQueue(LongSupplier expirationTime) {
+        return new ExpirationQueue<ElementId>(expirationTime);
+    }
+
+    /**
+     * Creates the eviction policy of the elements. Pools with primitive ids can override it to use a specialized one.
+     *
+     * @return an empty policy that uses the maximum size of the pool.
+     */
+    protected SegmentedLru<ElementId> createIdUsage() {
+        return new SegmentedLru<ElementId>(this::getMaximumSize);
+    }
+
+    /**
+     * Gets the statistics of a map of the pool, creating them the first time.
+     *
+     * @param map the name of the map.
+     * @return the statistics.
+     */
+    protected CacheMetrics getMetrics(String map) {
+        // Called from reset() in the constructor, before the fields of the class are initialized.
+        if (metrics == null) {
+            metrics = new ConcurrentHashMap<>();
+        }
+        return metrics.computeIfAbsent(map, key -> new CacheMetrics());
+    }
+
+    /**
+     * Statistics of all the maps of the pool.
+     *
+     * @return the statistics by map name.
+     */
+    public Map<String, CacheMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Publishes the statistics of the pool as JMX beans.
+     *
+     * @param poolName the name of the pool in the bean names.
+     */
+    public void registerMBeans(String poolName) {
+        PoolMetricsExporter.register(poolName, getMetrics());
+    }
+
+    public void unregisterMBeans(String poolName) {
+        PoolMetricsExporter.unregister(poolName, getMetrics());
+    }
+    /**
+     * Expiration times and sizes are read on each access, so new settings are already used. Only the entries that
+     * exceed the new limits are removed here.
+     *
+     * @param configuration the new settings.
+     */
+    @Override
+    public void onConfigurationChanged(PoolConfiguration configuration) {
+        applyLimits();
+    }
+
+    /**
+     * Removes the entries that have expired or exceed the maximum size. Subclasses add here their own maps.
+     */
+    public void applyLimits() {
+        expireElements(System.currentTimeMillis());
+        final Collection<ElementId> victims = elementsUsage.trim();
+        for (final ElementId victim : victims) {
+            discardElement(victim);
+        }
+        getMetrics(ELEMENTS_METRICS).recordEvictions(victims.size());
+        elementsByTag.applyLimits();
     }
 
     /**
@@ -122,6 +479,19 @@ public abstract class ElementsByTagPool<ElementId, Type extends IElement<Element
 
     @Override
     public long getExpirationTime() {
-        return PoolConfigurationReader.getInstance().getStandardExpirationTime();
+        return PoolConfigurationReader.getInstance().getConfiguration().getStandardExpirationTime();
+    }
+
+    /**
+     * Maximum number of entries of each map of the pool.
+     *
+     * @return the number of entries, zero or negative for no limit.
+     */
+    public long getMaximumSize() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getStandardMaximumSize();
+    }
+
+    public long getNegativeExpirationTime() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getNegativeExpirationTime();
     }
 }
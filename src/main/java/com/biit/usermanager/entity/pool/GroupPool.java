@@ -23,24 +23,35 @@ package com.biit.usermanager.entity.pool;
 
 import com.biit.usermanager.entity.IGroup;
 import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.collection.PersistentSet;
 import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.hierarchy.MembershipGraph;
+import com.biit.usermanager.entity.pool.hierarchy.OrganizationTree;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationListener;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGroup<GroupId>> {
-    // Group --> List<User>
-    private Map<GroupId, Long> groupUsersTime; // group id -> time.
-    private Map<GroupId, Set<IUser<UserId>>> groupUsers; // Users by group.
+public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGroup<GroupId>> implements InvalidationListener {
+    private static final String GROUP_USERS_METRICS = "groupUsers";
+    private static final String USER_GROUPS_METRICS = "userGroups";
+    private static final String USER_PARENT_ORGANIZATIONS_METRICS = "userParentOrganizations";
 
-    // User --> List<Group>
-    private Map<UserId, Long> userGroupsTime;
-    private Map<UserId, Set<IGroup<GroupId>>> userGroups;
+    // Group <--> Users
+    private MembershipGraph<UserId, GroupId> memberships;
+
+    // Stored sets are never modified, new versions are put instead. Getters can return them without copying.
+    // User --> Parent organizations. Organizations are identified by Long in IAuthorizationService.
+    private ExpiringCache<UserId, PersistentSet<IGroup<Long>>> userParentOrganizations;
+
+    // Parent --> Children organizations
+    private OrganizationTree<GroupId> organizationTree;
 
     public GroupPool() {
         reset();
@@ -64,39 +75,102 @@ public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGrou
 
     public void addGroupUsers(GroupId groupId, Set<IUser<UserId>> users) {
         if (groupId != null && users != null) {
-            Set<IUser<UserId>> usersOfGroup = getGroupUsers(groupId);
-            if (usersOfGroup == null) {
-                usersOfGroup = new HashSet<IUser<UserId>>();
-            }
-
-            usersOfGroup.addAll(users);
-            groupUsersTime.put(groupId, System.currentTimeMillis());
-            groupUsers.put(groupId, usersOfGroup);
+            memberships.addUsers(groupId, users);
         }
     }
 
     public void addUserToGroup(IUser<UserId> user, IGroup<GroupId> group) {
         if (user != null && group != null) {
-            Set<IGroup<GroupId>> groups = getGroups(user.getUniqueId());
-            if (groups == null) {
-                groups = new HashSet<IGroup<GroupId>>();
-            }
-            groups.add(group);
-            userGroupsTime.put(user.getUniqueId(), System.currentTimeMillis());
-            userGroups.put(user.getUniqueId(), groups);
-
-            // Set<IUser<UserId>> users = new HashSet<IUser<UserId>>();
-            // users.add(user);
-            // addGroupUsers(group.getId(), users);
+            memberships.addGroups(user, Collections.singleton(group));
         }
     }
 
     public void addUserToGroups(IUser<UserId> user, Set<IGroup<GroupId>> groups) {
         if (user != null && groups != null) {
-            for (IGroup<GroupId> group : groups) {
-                addUserToGroup(user, group);
+            memberships.addGroups(user, groups);
+        }
+    }
+
+    /**
+     * Stores the groups of a user obtained at a given time, i.e. restored from a snapshot.
+     *
+     * @param userId    the user.
+     * @param groups    its groups.
+     * @param writeTime the time the groups were obtained.
+     */
+    public void setUserGroups(UserId userId, Set<IGroup<GroupId>> groups, long writeTime) {
+        if (userId != null && groups != null) {
+            memberships.setGroups(userId, groups, writeTime);
+        }
+    }
+
+    /**
+     * Visits the groups of the users that have not expired.
+     *
+     * @param visitor receives each user id, its groups and their write time.
+     */
+    public void forEachUserGroups(ExpiringCache.EntryVisitor<UserId, Set<IGroup<GroupId>>> visitor) {
+        memberships.forEachGroups(visitor);
+    }
+
+    /**
+     * Stores the children of an organization, and its relationship in the organization tree.
+     *
+     * @param parent   the parent organization.
+     * @param children its children.
+     */
+    public void addChildrenOrganizations(IGroup<GroupId> parent, Set<IGroup<GroupId>> children) {
+        if (parent != null && children != null) {
+            for (final IGroup<GroupId> child : children) {
+                addElement(child);
+                organizationTree.setParent(child.getUniqueId(), parent.getUniqueId());
+            }
+        }
+    }
+
+    public OrganizationTree<GroupId> getOrganizationTree() {
+        return organizationTree;
+    }
+
+    public boolean isAncestorOrganization(GroupId ancestorId, GroupId descendantId) {
+        return organizationTree.isAncestor(ancestorId, descendantId);
+    }
+
+    /**
+     * Gets the organizations that are below a parent organization in the known tree.
+     *
+     * @param parentId      the parent organization.
+     * @param organizations the organizations to filter, i.e. the organizations of a user.
+     * @return the organizations that are descendants of the parent.
+     */
+    public Set<IGroup<GroupId>> getDescendantOrganizations(GroupId parentId, Set<IGroup<GroupId>> organizations) {
+        final Set<IGroup<GroupId>> descendants = new HashSet<>();
+        if (parentId != null && organizations != null) {
+            final Map<GroupId, IGroup<GroupId>> organizationsById = new HashMap<>();
+            for (final IGroup<GroupId> organization : organizations) {
+                organizationsById.put(organization.getUniqueId(), organization);
+            }
+            for (final GroupId descendantId : organizationTree.filterDescendants(parentId, organizationsById.keySet())) {
+                descendants.add(organizationsById.get(descendantId));
             }
         }
+        return descendants;
+    }
+
+    public Set<IGroup<Long>> getUserParentOrganizations(UserId userId) {
+        return userParentOrganizations.get(userId);
+    }
+
+    public void setUserParentOrganizations(UserId userId, Set<IGroup<Long>> organizations) {
+        if (userId != null && organizations != null) {
+            userParentOrganizations.put(userId, PersistentSet.copyOf(organizations));
+        }
+    }
+
+    public void removeUserParentOrganizations(UserId userId) {
+        if (userId != null) {
+            userParentOrganizations.remove(userId);
+        }
     }
 
     /**
@@ -109,52 +183,43 @@ public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGrou
         return getElement(groupId);
     }
 
+    public IGroup<GroupId> getGroupByName(String groupName) {
+        return getElementByUniqueName(groupName);
+    }
+
     public Set<IGroup<GroupId>> getGroups(UserId groupId) {
-        if (groupId != null) {
-            long now = System.currentTimeMillis();
-            UserId nextGroupId = null;
-            if (userGroupsTime.size() > 0) {
-                Iterator<UserId> e = new HashMap<UserId, Long>(userGroupsTime).keySet().iterator();
-                while (e.hasNext()) {
-                    nextGroupId = e.next();
-                    if (userGroupsTime.get(nextGroupId) != null
-                            && (now - userGroupsTime.get(nextGroupId)) > getExpirationTime()) {
-                        // Object has expired.
-                        removeUserGroups(nextGroupId);
-                        nextGroupId = null;
-                    } else {
-                        if (groupId.equals(nextGroupId)) {
-                            return userGroups.get(groupId);
-                        }
-                    }
-                }
+        return memberships.getGroups(groupId);
+    }
+
+    /**
+     * Checks if a user is in a group, using the stored groups of the user or users of the group.
+     *
+     * @param userId  the user.
+     * @param groupId the group.
+     * @return null if the memberships of the user and the group are not stored.
+     */
+    public Boolean isInGroup(UserId userId, GroupId groupId) {
+        return memberships.isInGroup(userId, groupId);
+    }
+
+    /**
+     * Gets the groups of several users at once.
+     *
+     * @param users the users.
+     * @return the groups that are cached and the users whose groups are not.
+     */
+    public BulkResult<IUser<UserId>, Set<IGroup<GroupId>>> getGroups(Collection<IUser<UserId>> users) {
+        final BulkResult<IUser<UserId>, Set<IGroup<GroupId>>> result = new BulkResult<>();
+        if (users != null) {
+            for (final IUser<UserId> user : users) {
+                result.add(user, user != null ? getGroups(user.getUniqueId()) : null);
             }
         }
-        return null;
+        return result;
     }
 
     public Set<IUser<UserId>> getGroupUsers(GroupId groupId) {
-        if (groupId != null) {
-            long now = System.currentTimeMillis();
-            GroupId nextGroupId = null;
-            if (groupUsersTime.size() > 0) {
-                Iterator<GroupId> e = new HashMap<GroupId, Long>(groupUsersTime).keySet().iterator();
-                while (e.hasNext()) {
-                    nextGroupId = e.next();
-                    if (groupUsersTime.get(nextGroupId) != null
-                            && (now - groupUsersTime.get(nextGroupId)) > getExpirationTime()) {
-                        // Object has expired.
-                        removeGroupUsers(nextGroupId);
-                        nextGroupId = null;
-                    } else {
-                        if (groupId.equals(nextGroupId)) {
-                            return groupUsers.get(nextGroupId);
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return memberships.getUsers(groupId);
     }
 
     public void removeGroupByTag(String tag, IGroup<Long> group) {
@@ -171,17 +236,13 @@ public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGrou
 
     public void removeGroupUsers(GroupId groupId) {
         if (groupId != null) {
-            groupUsersTime.remove(groupId);
-            groupUsers.remove(groupId);
+            memberships.removeUsers(groupId);
         }
     }
 
     public void removeUser(IUser<UserId> user) {
-        if (user != null) {
-            removeUserGroups(user.getUniqueId());
-            for (GroupId groupId : groupUsers.keySet()) {
-                removeUserFromGroups(user.getUniqueId(), groupId);
-            }
+        if (user != null && user.getUniqueId() != null) {
+            memberships.removeUser(user.getUniqueId());
         }
     }
 
@@ -193,43 +254,60 @@ public class GroupPool<UserId, GroupId> extends ElementsByTagPool<GroupId, IGrou
 
     public void removeUserFromGroups(UserId userId, GroupId groupId) {
         if (userId != null && groupId != null) {
-            if (groupUsers.get(groupId) != null) {
-                List<IUser<UserId>> tempUsers = new ArrayList<IUser<UserId>>(groupUsers.get(groupId));
-                for (IUser<UserId> user : tempUsers) {
-                    if (user.getUniqueId().equals(userId)) {
-                        groupUsers.get(groupId).remove(user);
-                    }
-                }
-            }
-            if (userGroups.get(userId) != null) {
-                for (IGroup<GroupId> group : new HashSet<IGroup<GroupId>>(userGroups.get(userId))) {
-                    if (group.getUniqueId().equals(groupId)) {
-                        userGroups.get(userId).remove(group);
-                    }
-                }
-            }
+            memberships.removeMembership(userId, groupId);
         }
     }
 
     public void removeUserGroups(UserId userId) {
         if (userId != null) {
-            userGroupsTime.remove(userId);
-            userGroups.remove(userId);
+            memberships.removeGroups(userId);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onInvalidation(InvalidationEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case USER_CHANGED:
+            case USER_DELETED:
+                memberships.invalidateUser((UserId) event.getUserId());
+                break;
+            case MEMBERSHIP_CHANGED:
+                removeUserGroups((UserId) event.getUserId());
+                removeGroupUsers((GroupId) event.getGroupId());
+                removeUserParentOrganizations((UserId) event.getUserId());
+                break;
+            default:
+                break;
         }
     }
 
+    @Override
+    public void applyLimits() {
+        super.applyLimits();
+        memberships.applyLimits();
+        userParentOrganizations.applyLimits();
+    }
+
     @Override
     public long getExpirationTime() {
-        return PoolConfigurationReader.getInstance().getGroupPoolExpirationTime();
+        return PoolConfigurationReader.getInstance().getConfiguration().getGroupPoolExpirationTime();
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getGroupPoolMaximumSize();
     }
 
     @Override
     public void reset() {
         super.reset();
-        groupUsersTime = new HashMap<GroupId, Long>();
-        groupUsers = new HashMap<GroupId, Set<IUser<UserId>>>();
-        userGroups = new HashMap<UserId, Set<IGroup<GroupId>>>();
-        userGroupsTime = new HashMap<UserId, Long>();
+        memberships = new MembershipGraph<UserId, GroupId>(createIdMap(GROUP_USERS_METRICS), createIdMap(USER_GROUPS_METRICS));
+        userParentOrganizations = createIdMap(USER_PARENT_ORGANIZATIONS_METRICS);
+        organizationTree = new OrganizationTree<GroupId>();
     }
 
 }
@@ -0,0 +1,56 @@
+package com.biit.usermanager.entity.pool;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.eviction.LongSegmentedLru;
+import com.biit.usermanager.entity.pool.eviction.SegmentedLru;
+import com.biit.usermanager.entity.pool.expiration.ExpirationQueue;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.expiration.LongExpirationQueue;
+import com.biit.usermanager.entity.pool.expiration.LongExpiringMap;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Pool of users for services where all ids are {@link Long}. Ids of the stored elements, of the missing
+ * ones and of the maps indexed by ids are stored as primitives.
+ */
+public class LongUserPool extends UserPool<Long, Long> {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <Key, Value> ExpiringCache<Key, Value> createIdMap(String map) {
+        // All ids of this pool are Long.
+        return (ExpiringCache<Key, Value>) new LongExpiringMap<Value>(this::getExpirationTime, this::getMaximumSize, getMetrics(map));
+    }
+
+    @Override
+    protected ExpirationQueue<Long> createIdQueue(LongSupplier expirationTime) {
+        return new LongExpirationQueue(expirationTime);
+    }
+
+    @Override
+    protected SegmentedLru<Long> createIdUsage() {
+        return new LongSegmentedLru(this::getMaximumSize);
+    }
+}
@@ -24,24 +24,37 @@ package com.biit.usermanager.entity.pool;
 import com.biit.usermanager.entity.IGroup;
 import com.biit.usermanager.entity.IRole;
 import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.collection.PersistentSet;
+import com.biit.usermanager.entity.pool.collection.ReverseIndex;
 import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationListener;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId, IRole<RoleId>> {
+public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId, IRole<RoleId>> implements InvalidationListener {
+    private static final String ROLES_BY_USER_METRICS = "rolesByUser";
+    private static final String ROLES_BY_GROUP_METRICS = "rolesByGroup";
+    private static final String USER_ROLES_OF_GROUP_METRICS = "userRolesOfGroup";
 
-    private Map<UserId, Long> userTime; // user id -> time.
-    private Map<UserId, Set<IRole<RoleId>>> rolesByUser; // Roles by user.
 
-    private Map<GroupId, Long> groupTime; // Group Id -> time.
-    private Map<GroupId, Set<IRole<RoleId>>> rolesByGroup; // Roles by group.
+    // Stored sets and maps are never modified, new versions are put instead. Getters can return them without copying.
+    // Changes are synchronized, so a set and the index of its roles are updated together. Reads do not lock.
+    private ExpiringCache<UserId, PersistentSet<IRole<RoleId>>> rolesByUser; // Roles by user.
 
-    private Map<UserId, Long> userRoleOfGroupTime; // user id -> time.
-    private Map<UserId, Map<GroupId, Set<IRole<RoleId>>>> userRolesOfGroup; // IUser<UserId>->Group->Roles.
+    private ExpiringCache<GroupId, PersistentSet<IRole<RoleId>>> rolesByGroup; // Roles by group.
+
+    private ExpiringCache<UserId, Map<GroupId, PersistentSet<IRole<RoleId>>>> userRolesOfGroup; // IUser<UserId>->Group->Roles.
+
+    // Role -> keys of the maps above whose sets contain it.
+    private ReverseIndex<IRole<RoleId>, UserId> usersByRole;
+    private ReverseIndex<IRole<RoleId>, GroupId> groupsByRole;
+    private ReverseIndex<IRole<RoleId>, UserId> userGroupsByRole;
 
     public RolePool() {
         reset();
@@ -55,20 +68,11 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         }
     }
 
-    public void addGroupRoles(GroupId groupId, Set<IRole<RoleId>> roles) {
+    public synchronized void addGroupRoles(GroupId groupId, Set<IRole<RoleId>> roles) {
         if (groupId != null && roles != null) {
-            groupTime.put(groupId, System.currentTimeMillis());
-            Set<IRole<RoleId>> groupRoles = rolesByGroup.get(groupId);
-            if (groupRoles == null) {
-                groupRoles = new HashSet<IRole<RoleId>>();
-                rolesByGroup.put(groupId, groupRoles);
-            }
-
-            for (IRole<RoleId> role : roles) {
-                if (!groupRoles.contains(role)) {
-                    groupRoles.add(role);
-                }
-            }
+            final PersistentSet<IRole<RoleId>> groupRoles = rolesByGroup.get(groupId);
+            rolesByGroup.put(groupId, groupRoles != null ? groupRoles.plusAll(roles) : PersistentSet.copyOf(roles));
+            groupsByRole.addAll(roles, groupId);
         }
     }
 
@@ -84,21 +88,11 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         }
     }
 
-    public void addUserRoles(IUser<UserId> user, Set<IRole<RoleId>> roles) {
+    public synchronized void addUserRoles(IUser<UserId> user, Set<IRole<RoleId>> roles) {
         if (user != null && roles != null && roles.size() > 0) {
-            userTime.put(user.getUniqueId(), System.currentTimeMillis());
-            Set<IRole<RoleId>> userRoles = rolesByUser.get(user.getUniqueId());
-            if (userRoles == null) {
-                userRoles = new HashSet<IRole<RoleId>>();
-            }
-
-            for (IRole<RoleId> role : roles) {
-                if (!userRoles.contains(role)) {
-                    userRoles.add(role);
-                }
-            }
-
-            rolesByUser.put(user.getUniqueId(), userRoles);
+            final PersistentSet<IRole<RoleId>> userRoles = rolesByUser.get(user.getUniqueId());
+            rolesByUser.put(user.getUniqueId(), userRoles != null ? userRoles.plusAll(roles) : PersistentSet.copyOf(roles));
+            usersByRole.addAll(roles, user.getUniqueId());
         }
     }
 
@@ -108,27 +102,15 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         }
     }
 
-    public void addUserRolesOfGroup(UserId userId, GroupId groupId, Set<IRole<RoleId>> roles) {
+    public synchronized void addUserRolesOfGroup(UserId userId, GroupId groupId, Set<IRole<RoleId>> roles) {
         if (userId != null && groupId != null && roles != null) {
-            userRoleOfGroupTime.put(userId, System.currentTimeMillis());
-
-            Map<GroupId, Set<IRole<RoleId>>> userAndGroupRoles = userRolesOfGroup.get(userId);
-            if (userAndGroupRoles == null) {
-                userAndGroupRoles = new HashMap<GroupId, Set<IRole<RoleId>>>();
-                userRolesOfGroup.put(userId, userAndGroupRoles);
-            }
-
-            Set<IRole<RoleId>> groupRoles = userAndGroupRoles.get(groupId);
-            if (groupRoles == null) {
-                groupRoles = new HashSet<IRole<RoleId>>();
-            }
-
-            for (IRole<RoleId> role : roles) {
-                if (!groupRoles.contains(role)) {
-                    groupRoles.add(role);
-                }
-            }
-            userRolesOfGroup.get(userId).put(groupId, groupRoles);
+            final Map<GroupId, PersistentSet<IRole<RoleId>>> previous = userRolesOfGroup.get(userId);
+            // A user has few groups, the map is copied but the sets are shared.
+            final Map<GroupId, PersistentSet<IRole<RoleId>>> userAndGroupRoles = previous != null ? new HashMap<>(previous) : new HashMap<>();
+            final PersistentSet<IRole<RoleId>> groupRoles = userAndGroupRoles.get(groupId);
+            userAndGroupRoles.put(groupId, groupRoles != null ? groupRoles.plusAll(roles) : PersistentSet.copyOf(roles));
+            userRolesOfGroup.put(userId, userAndGroupRoles);
+            userGroupsByRole.addAll(roles, userId);
         }
     }
 
@@ -139,27 +121,7 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
      * @return
      */
     public Set<IRole<RoleId>> getGroupRoles(GroupId groupId) {
-        if (groupId != null) {
-            long now = System.currentTimeMillis();
-            GroupId nextGroupId = null;
-            if (groupTime.size() > 0) {
-                Iterator<GroupId> e = new HashMap<GroupId, Long>(groupTime).keySet().iterator();
-                while (e.hasNext()) {
-                    nextGroupId = e.next();
-                    if (groupTime.get(nextGroupId) != null
-                            && (now - groupTime.get(nextGroupId)) > getExpirationTime()) {
-                        // object has expired
-                        removeGroupRoles(nextGroupId);
-                        nextGroupId = null;
-                    } else {
-                        if (groupId.equals(nextGroupId)) {
-                            return rolesByGroup.get(nextGroupId);
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return rolesByGroup.get(groupId);
     }
 
     /**
@@ -172,29 +134,37 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         return getGroupRoles(group.getUniqueId());
     }
 
+    public IRole<RoleId> getRoleById(RoleId roleId) {
+        return getElement(roleId);
+    }
+
+    public IRole<RoleId> getRoleByName(String roleName) {
+        return getElementByUniqueName(roleName);
+    }
+
     public Set<IRole<RoleId>> getUserRoles(IUser<UserId> user) {
         if (user != null) {
-            long now = System.currentTimeMillis();
-            UserId userId = null;
-            if (userTime.size() > 0) {
-                Iterator<UserId> e = new HashMap<UserId, Long>(userTime).keySet().iterator();
-                while (e.hasNext()) {
-                    userId = e.next();
-                    if (userTime.get(userId) != null && (now - userTime.get(userId)) > getExpirationTime()) {
-                        // object has expired
-                        removeUserRoles(userId);
-                        userId = null;
-                    } else {
-                        if (user.getUniqueId().equals(userId)) {
-                            return rolesByUser.get(userId);
-                        }
-                    }
-                }
-            }
+            return rolesByUser.get(user.getUniqueId());
         }
         return null;
     }
 
+    /**
+     * Gets the roles of several users at once.
+     *
+     * @param users the users.
+     * @return the roles that are cached and the users whose roles are not.
+     */
+    public BulkResult<IUser<UserId>, Set<IRole<RoleId>>> getUserRoles(Collection<IUser<UserId>> users) {
+        final BulkResult<IUser<UserId>, Set<IRole<RoleId>>> result = new BulkResult<>();
+        if (users != null) {
+            for (final IUser<UserId> user : users) {
+                result.add(user, getUserRoles(user));
+            }
+        }
+        return result;
+    }
+
     public Set<IRole<RoleId>> getUserRolesOfGroup(IUser<UserId> user, IGroup<GroupId> group) {
         if (user != null && group != null) {
             return getUserRolesOfGroup(user.getUniqueId(), group.getUniqueId());
@@ -204,41 +174,58 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
 
     public Set<IRole<RoleId>> getUserRolesOfGroup(UserId userId, GroupId groupId) {
         if (userId != null && groupId != null) {
-            long now = System.currentTimeMillis();
-            UserId nextId = null;
-            if (userRoleOfGroupTime.size() > 0) {
-                Iterator<UserId> e = new HashMap<UserId, Long>(userRoleOfGroupTime).keySet().iterator();
-                while (e.hasNext()) {
-                    nextId = e.next();
-                    if (userRoleOfGroupTime.get(nextId) != null
-                            && (now - userRoleOfGroupTime.get(nextId)) > getExpirationTime()) {
-                        // object has expired
-                        removeUserRolesOfGroup(nextId);
-                        nextId = null;
-                    } else {
-                        if (userId.equals(nextId)) {
-                            Map<GroupId, Set<IRole<RoleId>>> userAndGroupRoles = userRolesOfGroup.get(nextId);
-                            if (userAndGroupRoles != null) {
-                                return userAndGroupRoles.get(groupId);
-                            }
-                        }
-                    }
-                }
+            final Map<GroupId, PersistentSet<IRole<RoleId>>> userAndGroupRoles = userRolesOfGroup.get(userId);
+            if (userAndGroupRoles != null) {
+                return userAndGroupRoles.get(groupId);
             }
         }
         return null;
     }
 
-    public void removeGroupRoles(GroupId groupId) {
+    /**
+     * Gets the users whose cached roles include a role.
+     *
+     * @param role the role.
+     * @return the ids of the users. Users whose roles are not cached are not included.
+     */
+    public Set<UserId> getUsersWithRole(IRole<RoleId> role) {
+        final Set<UserId> users = new HashSet<>();
+        for (final UserId userId : usersByRole.get(role)) {
+            final Set<IRole<RoleId>> roles = rolesByUser.get(userId);
+            if (roles != null && roles.contains(role)) {
+                users.add(userId);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Gets the groups whose cached roles include a role.
+     *
+     * @param role the role.
+     * @return the ids of the groups. Groups whose roles are not cached are not included.
+     */
+    public Set<GroupId> getGroupsWithRole(IRole<RoleId> role) {
+        final Set<GroupId> groups = new HashSet<>();
+        for (final GroupId groupId : groupsByRole.get(role)) {
+            final Set<IRole<RoleId>> roles = rolesByGroup.get(groupId);
+            if (roles != null && roles.contains(role)) {
+                groups.add(groupId);
+            }
+        }
+        return groups;
+    }
+
+    public synchronized void removeGroupRoles(GroupId groupId) {
         if (groupId != null) {
-            groupTime.remove(groupId);
-            rolesByGroup.remove(groupId);
+            groupsByRole.removeAll(rolesByGroup.remove(groupId), groupId);
         }
     }
 
-    public void removeGroupRole(IRole<RoleId> role, GroupId groupId) {
-        if (groupId != null && rolesByGroup.get(groupId) != null) {
-            rolesByGroup.get(groupId).remove(role);
+    public synchronized void removeGroupRole(IRole<RoleId> role, GroupId groupId) {
+        if (groupId != null) {
+            rolesByGroup.update(groupId, groupRoles -> groupRoles.minus(role));
+            groupsByRole.remove(role, groupId);
         }
     }
 
@@ -258,28 +245,42 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         removeRoles(roles);
     }
 
-    public void removeRoles(Set<IRole<RoleId>> roles) {
-        for (IRole<RoleId> role : roles) {
-            for (Set<IRole<RoleId>> userRoles : rolesByUser.values()) {
-                userRoles.remove(role);
-            }
-            for (Set<IRole<RoleId>> groupRoles : rolesByGroup.values()) {
-                groupRoles.remove(role);
-            }
-            for (Map<GroupId, Set<IRole<RoleId>>> rolesByUserAndGroup : userRolesOfGroup.values()) {
-                for (Set<IRole<RoleId>> userGroupRoles : rolesByUserAndGroup.values()) {
-                    userGroupRoles.remove(role);
+    /**
+     * Removes some roles from the roles of users and groups. Only the users and groups that have them are visited.
+     *
+     * @param roles the roles to remove.
+     */
+    public synchronized void removeRoles(Set<IRole<RoleId>> roles) {
+        final Set<UserId> users = new HashSet<>();
+        final Set<GroupId> groups = new HashSet<>();
+        final Set<UserId> usersWithGroups = new HashSet<>();
+        for (final IRole<RoleId> role : roles) {
+            users.addAll(usersByRole.removeValue(role));
+            groups.addAll(groupsByRole.removeValue(role));
+            usersWithGroups.addAll(userGroupsByRole.removeValue(role));
+        }
+        // New versions keep the write time of the old ones, so removing a role does not extend their validity.
+        for (final UserId userId : users) {
+            rolesByUser.update(userId, userRoles -> userRoles.minusAll(roles));
+        }
+        for (final GroupId groupId : groups) {
+            rolesByGroup.update(groupId, groupRoles -> groupRoles.minusAll(roles));
+        }
+        for (final UserId userId : usersWithGroups) {
+            userRolesOfGroup.update(userId, rolesByUserAndGroup -> {
+                final Map<GroupId, PersistentSet<IRole<RoleId>>> updated = new HashMap<>();
+                for (final Map.Entry<GroupId, PersistentSet<IRole<RoleId>>> groupRoles : rolesByUserAndGroup.entrySet()) {
+                    updated.put(groupRoles.getKey(), groupRoles.getValue().minusAll(roles));
                 }
-            }
+                return updated;
+            });
         }
     }
 
-    public void removeUserRole(IUser<UserId> user, IRole<RoleId> role) {
+    public synchronized void removeUserRole(IUser<UserId> user, IRole<RoleId> role) {
         if (user != null && role != null) {
-            Set<IRole<RoleId>> userRoles = rolesByUser.get(user.getUniqueId());
-            if (userRoles != null) {
-                userRoles.remove(role);
-            }
+            rolesByUser.update(user.getUniqueId(), userRoles -> userRoles.minus(role));
+            usersByRole.remove(role, user.getUniqueId());
         }
     }
 
@@ -289,40 +290,112 @@ public class RolePool<UserId, GroupId, RoleId> extends ElementsByTagPool<RoleId,
         }
     }
 
-    public void removeUserRoles(UserId userId) {
+    public synchronized void removeUserRoles(UserId userId) {
         if (userId != null) {
-            userTime.remove(userId);
-            rolesByUser.remove(userId);
+            usersByRole.removeAll(rolesByUser.remove(userId), userId);
         }
     }
 
-    public void removeUserRolesOfGroup(UserId userId) {
+    public synchronized void removeUserRolesOfGroup(UserId userId) {
         if (userId != null) {
-            userRoleOfGroupTime.remove(userId);
-            userRolesOfGroup.remove(userId);
+            final Map<GroupId, PersistentSet<IRole<RoleId>>> removed = userRolesOfGroup.remove(userId);
+            if (removed != null) {
+                removeUserGroupsIndex(userId, removed);
+            }
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onInvalidation(InvalidationEvent event) {
+        switch (event.getType()) {
+            case USER_DELETED:
+            case ROLE_GRANTED:
+            case ROLE_REVOKED:
+            case MEMBERSHIP_CHANGED:
+                removeUserRoles((UserId) event.getUserId());
+                removeUserRolesOfGroup((UserId) event.getUserId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void applyLimits() {
+        super.applyLimits();
+        rolesByUser.applyLimits();
+        rolesByGroup.applyLimits();
+        userRolesOfGroup.applyLimits();
+    }
+
     @Override
     public long getExpirationTime() {
-        return PoolConfigurationReader.getInstance().getRolePoolExpirationTime();
+        return PoolConfigurationReader.getInstance().getConfiguration().getRolePoolExpirationTime();
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getRolePoolMaximumSize();
     }
 
     @Override
     public void reset() {
         super.reset();
-        userTime = new HashMap<UserId, Long>();
-        groupTime = new HashMap<GroupId, Long>();
-        rolesByUser = new HashMap<UserId, Set<IRole<RoleId>>>();
-        rolesByGroup = new HashMap<GroupId, Set<IRole<RoleId>>>();
-        userRoleOfGroupTime = new HashMap<UserId, Long>();
-        userRolesOfGroup = new HashMap<UserId, Map<GroupId, Set<IRole<RoleId>>>>();
+        rolesByUser = createIdMap(ROLES_BY_USER_METRICS);
+        rolesByGroup = createIdMap(ROLES_BY_GROUP_METRICS);
+        userRolesOfGroup = createIdMap(USER_ROLES_OF_GROUP_METRICS);
+        usersByRole = new ReverseIndex<>();
+        groupsByRole = new ReverseIndex<>();
+        userGroupsByRole = new ReverseIndex<>();
+        // Entries that expire or are evicted leave the indexes too.
+        rolesByUser.setRemovalListener((userId, roles) -> usersByRole.removeAll(roles, userId));
+        rolesByGroup.setRemovalListener((groupId, roles) -> groupsByRole.removeAll(roles, groupId));
+        userRolesOfGroup.setRemovalListener(this::removeUserGroupsIndex);
+    }
+
+    /**
+     * Removes a user from the index of the roles it has in its groups.
+     *
+     * @param userId              the user.
+     * @param rolesByUserAndGroup its roles by group.
+     */
+    private void removeUserGroupsIndex(UserId userId, Map<GroupId, PersistentSet<IRole<RoleId>>> rolesByUserAndGroup) {
+        for (final PersistentSet<IRole<RoleId>> groupRoles : rolesByUserAndGroup.values()) {
+            userGroupsByRole.removeAll(groupRoles, userId);
+        }
     }
 
     public void setUserRoles(IUser<UserId> user, Set<IRole<RoleId>> roles) {
-        if (user != null && roles != null) {
-            userTime.put(user.getUniqueId(), System.currentTimeMillis());
-            rolesByUser.put(user.getUniqueId(), roles);
+        if (user != null) {
+            setUserRoles(user.getUniqueId(), roles, System.currentTimeMillis());
         }
     }
+
+    /**
+     * Stores the roles of a user obtained at a given time, i.e. restored from a snapshot.
+     *
+     * @param userId    the user.
+     * @param roles     its roles.
+     * @param writeTime the time the roles were obtained.
+     */
+    public synchronized void setUserRoles(UserId userId, Set<IRole<RoleId>> roles, long writeTime) {
+        if (userId != null && roles != null) {
+            final PersistentSet<IRole<RoleId>> previous = rolesByUser.get(userId);
+            rolesByUser.put(userId, PersistentSet.copyOf(roles), writeTime);
+            if (previous != null) {
+                usersByRole.removeAll(previous, userId);
+            }
+            usersByRole.addAll(roles, userId);
+        }
+    }
+
+    /**
+     * Visits the roles of the users that have not expired.
+     *
+     * @param visitor receives each user id, its roles and their write time.
+     */
+    public void forEachUserRoles(ExpiringCache.EntryVisitor<UserId, Set<IRole<RoleId>>> visitor) {
+        rolesByUser.forEach(visitor::visit);
+    }
 }
@@ -24,16 +24,23 @@ package com.biit.usermanager.entity.pool;
 import com.biit.logger.BiitPoolLogger;
 import com.biit.usermanager.entity.IUser;
 import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationListener;
+import com.biit.usermanager.entity.pool.expiration.NegativeCache;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
-public class UserPool<UserId, RoleId> extends ElementsByTagPool<UserId, IUser<UserId>> {
+public class UserPool<UserId, RoleId> extends ElementsByTagPool<UserId, IUser<UserId>> implements InvalidationListener {
+    private static final String USERS_OF_ROLE_METRICS = "usersOfRole";
 
-    private Map<RoleId, List<IUser<UserId>>> usersOfRole;
-    private Map<RoleId, Long> usersOfRoleTime; // User id -> getElementsTime().
+
+    private ExpiringCache<RoleId, List<IUser<UserId>>> usersOfRole;
+    private Map<String, UserId> usersByEmail; // Normalized email -> user id.
+    private NegativeCache<String> missingEmails; // Normalized emails that do not exist.
 
     public UserPool() {
         reset();
@@ -43,32 +50,52 @@ public class UserPool<UserId, RoleId> extends ElementsByTagPool<UserId, IUser<Us
         addElement(user);
     }
 
+    @Override
+    public void addElement(IUser<UserId> user, long writeTime) {
+        if (user != null) {
+            // Email can be changed from previous version of the user.
+            removeEmailIndex(getElementsById().get(user.getUniqueId()));
+        }
+        super.addElement(user, writeTime);
+        if (user != null && user.getEmailAddress() != null) {
+            usersByEmail.put(normalizeEmail(user.getEmailAddress()), user.getUniqueId());
+            missingEmails.remove(normalizeEmail(user.getEmailAddress()));
+        }
+    }
+
+    /**
+     * Marks an email as not existing in the backend. The mark is removed when a user with this email is added or after
+     * the negative expiration time.
+     *
+     * @param emailAddress the email that does not exist.
+     */
+    public void addMissingEmailAddress(String emailAddress) {
+        if (emailAddress != null) {
+            missingEmails.add(normalizeEmail(emailAddress));
+        }
+    }
+
+    public boolean isMissingEmailAddress(String emailAddress) {
+        return emailAddress != null && missingEmails.contains(normalizeEmail(emailAddress));
+    }
+
     public void addUsersOfRole(RoleId roleId, List<IUser<UserId>> usersOfRoles) {
         if (roleId != null && usersOfRoles != null) {
             usersOfRole.put(roleId, usersOfRoles);
-            usersOfRoleTime.put(roleId, System.currentTimeMillis());
         }
     }
 
+    /**
+     * Gets a user by its email. Emails are compared ignoring case and surrounding spaces.
+     *
+     * @param emailAddress the email of the user.
+     * @return the user or null if not stored or expired.
+     */
     public IUser<UserId> getUserByEmailAddress(String emailAddress) {
         if (emailAddress != null) {
-            long now = System.currentTimeMillis();
-            UserId userId = null;
-            if (!getElementsTime().isEmpty()) {
-                for (UserId id : new HashMap<>(getElementsTime()).keySet()) {
-                    userId = id;
-                    if (getElementsTime().get(userId) != null
-                            && (now - getElementsTime().get(userId)) > getExpirationTime()) {
-                        // object has expired
-                        removeElement(userId);
-                        userId = null;
-                    } else {
-                        if (getElementsById().get(userId) != null
-                                && getElementsById().get(userId).getEmailAddress().equals(emailAddress)) {
-                            return getElementsById().get(userId);
-                        }
-                    }
-                }
+            final UserId userId = usersByEmail.get(normalizeEmail(emailAddress));
+            if (userId != null) {
+                return getElement(userId);
             }
         }
         return null;
@@ -79,52 +106,11 @@ public class UserPool<UserId, RoleId> extends ElementsByTagPool<UserId, IUser<Us
     }
 
     public IUser<UserId> getUserByScreenName(String screenName) {
-        if (screenName != null) {
-            long now = System.currentTimeMillis();
-            UserId userId = null;
-            if (getElementsTime().size() > 0) {
-                Iterator<UserId> e = new HashMap<UserId, Long>(getElementsTime()).keySet().iterator();
-                while (e.hasNext()) {
-                    userId = e.next();
-                    if (getElementsTime().get(userId) != null
-                            && (now - getElementsTime().get(userId)) > getExpirationTime()) {
-                        // object has expired
-                        removeElement(userId);
-                        userId = null;
-                    } else {
-                        if (getElementsById().get(userId) != null
-                                && getElementsById().get(userId).getUniqueName().equals(screenName)) {
-                            return getElementsById().get(userId);
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return getElementByUniqueName(screenName);
     }
 
     public List<IUser<UserId>> getUsersOfRole(RoleId roleId) {
-        if (roleId != null) {
-            long now = System.currentTimeMillis();
-            RoleId storedObject = null;
-            if (usersOfRoleTime.size() > 0) {
-                Iterator<RoleId> e = new HashMap<RoleId, Long>(usersOfRoleTime).keySet().iterator();
-                while (e.hasNext()) {
-                    storedObject = e.next();
-                    if (usersOfRoleTime.get(storedObject) != null
-                            && (now - usersOfRoleTime.get(storedObject)) > getExpirationTime()) {
-                        // object has expired
-                        removeUsersOfRole(storedObject);
-                        storedObject = null;
-                    } else {
-                        if (storedObject.equals(roleId)) {
-                            return usersOfRole.get(storedObject);
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return usersOfRole.get(roleId);
     }
 
     public IUser<UserId> removeUser(IUser<UserId> user) {
@@ -140,22 +126,82 @@ public class UserPool<UserId, RoleId> extends ElementsByTagPool<UserId, IUser<Us
         return null;
     }
 
+    @Override
+    protected void onElementRemoved(IUser<UserId> user) {
+        removeEmailIndex(user);
+    }
+
+    private void removeEmailIndex(IUser<UserId> user) {
+        if (user != null && user.getEmailAddress() != null) {
+            usersByEmail.remove(normalizeEmail(user.getEmailAddress()), user.getUniqueId());
+        }
+    }
+
+    private static String normalizeEmail(String emailAddress) {
+        return emailAddress.trim().toLowerCase(Locale.ROOT);
+    }
+
     public void removeUsersOfRole(RoleId roleId) {
         if (roleId != null) {
             usersOfRole.remove(roleId);
-            usersOfRoleTime.remove(roleId);
+        }
+    }
+
+    /**
+     * Removes the lists of users of any role that contains the user.
+     *
+     * @param userId the user.
+     */
+    public void removeUsersOfRoleWithUser(UserId userId) {
+        if (userId != null) {
+            for (final RoleId roleId : usersOfRole.keySet()) {
+                final List<IUser<UserId>> users = usersOfRole.get(roleId);
+                if (users != null && users.stream().anyMatch(user -> userId.equals(user.getUniqueId()))) {
+                    usersOfRole.remove(roleId);
+                }
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onInvalidation(InvalidationEvent event) {
+        switch (event.getType()) {
+            case USER_CHANGED:
+            case USER_DELETED:
+                removeElement((UserId) event.getUserId());
+                removeUsersOfRoleWithUser((UserId) event.getUserId());
+                break;
+            case ROLE_GRANTED:
+            case ROLE_REVOKED:
+                removeUsersOfRole((RoleId) event.getRoleId());
+                break;
+            default:
+                break;
         }
     }
 
+    @Override
+    public void applyLimits() {
+        super.applyLimits();
+        usersOfRole.applyLimits();
+    }
+
     @Override
     public long getExpirationTime() {
-        return PoolConfigurationReader.getInstance().getUserPoolExpirationTime();
+        return PoolConfigurationReader.getInstance().getConfiguration().getUserPoolExpirationTime();
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getUserPoolMaximumSize();
     }
 
     @Override
     public void reset() {
         super.reset();
-        usersOfRole = new HashMap<RoleId, List<IUser<UserId>>>();
-        usersOfRoleTime = new HashMap<RoleId, Long>();
+        usersOfRole = createIdMap(USERS_OF_ROLE_METRICS);
+        usersByEmail = new HashMap<String, UserId>();
+        missingEmails = new NegativeCache<String>(this::getNegativeExpirationTime, this::getMaximumSize);
     }
 }
@@ -0,0 +1,606 @@
+package com.biit.usermanager.entity.pool.activity;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.BulkResult;
+import com.biit.usermanager.entity.pool.loader.SingleFlight;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import com.biit.usermanager.security.IActivity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread safe cache of activity decisions by user and by user and organization. Reads never block: a lookup is a
+ * {@link ConcurrentHashMap} read plus a bit test on an immutable {@link ActivityPermissions}. Writes replace the
+ * permissions of the user atomically with a compare and set, so concurrent decisions of the same user are never lost.
+ * <p>
+ * Decisions of a user expire together, once the expiration time has passed since the first of them was stored. Complete
+ * permissions expire on their own, counting from the start of the load that got them. If a maximum size is set, the
+ * oldest users are removed first when it is reached.
+ * <p>
+ * A load that was running when its user was removed does not store its result, as it may come from the state before
+ * the change.
+ *
+ * @param <User>         the user type.
+ * @param <Organization> the organization type.
+ */
+public class ActivityDecisionCache<User, Organization> {
+
+    // Users are distributed among these counters of removals. A few unrelated users share each one.
+    private static final int GENERATION_STRIPES = 64;
+
+    private final ActivityRegistry activityRegistry;
+    private final LongSupplier expirationTime;
+    private final LongSupplier maximumSize;
+    private final Map<User, Entry<Organization>> entries;
+    // Entries in creation order, that is also expiration order.
+    private final Queue<ExpirationRecord<User, Organization>> expirationQueue;
+    private final SingleFlight<List<Object>, Boolean> loads;
+    private final SingleFlight<List<Object>, ActivityPermissions> permissionLoads;
+    private final CacheMetrics metrics;
+    private final AtomicLongArray generations;
+
+    public ActivityDecisionCache(LongSupplier expirationTime) {
+        this(expirationTime, () -> 0);
+    }
+
+    /**
+     * Creates a cache with a limited number of users.
+     *
+     * @param expirationTime time in milliseconds that the decisions of a user are valid.
+     * @param maximumSize    maximum number of users. Zero or negative means no limit.
+     */
+    public ActivityDecisionCache(LongSupplier expirationTime, LongSupplier maximumSize) {
+        this.activityRegistry = ActivityRegistry.getInstance();
+        this.expirationTime = expirationTime;
+        this.maximumSize = maximumSize;
+        this.entries = new ConcurrentHashMap<>();
+        this.expirationQueue = new ConcurrentLinkedQueue<>();
+        this.loads = new SingleFlight<>();
+        this.permissionLoads = new SingleFlight<>();
+        this.metrics = new CacheMetrics();
+        this.metrics.setSize(entries::size);
+        this.generations = new AtomicLongArray(GENERATION_STRIPES);
+    }
+
+    /**
+     * Returns true or false if the activity is authorized and null if is not cached.
+     *
+     * @param user     the user.
+     * @param activity the activity.
+     * @return the decision or null.
+     */
+    public Boolean get(User user, IActivity activity) {
+        final Entry<Organization> entry = getEntry(user);
+        final ActivityPermissions permissions = entry != null ? valid(entry.permissions.get()) : null;
+        if (permissions == null) {
+            metrics.recordMiss();
+            return null;
+        }
+        return record(permissions.isAllowed(activityRegistry.getOrdinal(activity)));
+    }
+
+    /**
+     * Discards permissions that have expired, although their user has not.
+     *
+     * @param permissions the permissions of a user.
+     * @return the permissions, or null if they are null or have expired.
+     */
+    private ActivityPermissions valid(ActivityPermissions permissions) {
+        if (permissions == null || isExpired(permissions.getTime(), System.currentTimeMillis())) {
+            return null;
+        }
+        return permissions;
+    }
+
+    private Boolean record(Boolean decision) {
+        if (decision != null) {
+            metrics.recordHit();
+        } else {
+            metrics.recordMiss();
+        }
+        return decision;
+    }
+
+    /**
+     * Runs a loader measuring its time.
+     *
+     * @param loader the loader.
+     * @param <T>    the type of the result.
+     * @return the result of the loader.
+     * @throws Exception the exception of the loader.
+     */
+    private <T> T timed(Callable<T> loader) throws Exception {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final T result = loader.call();
+            success = true;
+            return result;
+        } finally {
+            metrics.recordLoad(System.nanoTime() - start, success);
+        }
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns true or false if the activity is authorized in the organization and null if is not cached.
+     *
+     * @param user         the user.
+     * @param organization the organization.
+     * @param activity     the activity.
+     * @return the decision or null.
+     */
+    public Boolean get(User user, Organization organization, IActivity activity) {
+        final Entry<Organization> entry = getEntry(user);
+        if (entry == null || organization == null) {
+            return record(null);
+        }
+        final Map<Organization, ActivityPermissions> organizations = entry.organizations.get();
+        if (organizations == null) {
+            return record(null);
+        }
+        final ActivityPermissions permissions = valid(organizations.get(organization));
+        if (permissions == null) {
+            return record(null);
+        }
+        return record(permissions.isAllowed(activityRegistry.getOrdinal(activity)));
+    }
+
+    /**
+     * Gets several decisions of a user at once. If organization is null, the decisions out of any organization are
+     * used.
+     *
+     * @param user         the user.
+     * @param organization the organization or null.
+     * @param activities   the activities.
+     * @return the decisions that are cached and the activities that are not.
+     */
+    public BulkResult<IActivity, Boolean> getAll(User user, Organization organization, Collection<IActivity> activities) {
+        final BulkResult<IActivity, Boolean> result = new BulkResult<>();
+        if (activities == null) {
+            return result;
+        }
+        final Entry<Organization> entry = getEntry(user);
+        ActivityPermissions permissions = null;
+        if (entry != null) {
+            if (organization == null) {
+                permissions = valid(entry.permissions.get());
+            } else if (entry.organizations.get() != null) {
+                permissions = valid(entry.organizations.get().get(organization));
+            }
+        }
+        for (final IActivity activity : activities) {
+            result.add(activity, record(permissions != null ? permissions.isAllowed(activityRegistry.getOrdinal(activity)) : null));
+        }
+        return result;
+    }
+
+    /**
+     * Gets a decision, computing it if it is not cached. Concurrent misses of the same decision compute it only once.
+     *
+     * @param user     the user.
+     * @param activity the activity.
+     * @param loader   computes the decision.
+     * @return the decision.
+     * @throws Exception if the loader fails. Failures are not cached.
+     */
+    public Boolean get(User user, IActivity activity, Callable<Boolean> loader) throws Exception {
+        final Boolean cached = get(user, activity);
+        if (cached != null) {
+            return cached;
+        }
+        if (user == null || activity == null) {
+            return loader.call();
+        }
+        return loads.load(Arrays.asList(user, activity.getTag()), () -> {
+            final long generation = getGeneration(user);
+            final Boolean authorized = timed(loader);
+            if (authorized != null) {
+                storeLoaded(user, generation, () -> put(user, activity, authorized));
+            }
+            return authorized;
+        });
+    }
+
+    /**
+     * Gets a decision in an organization, computing it if it is not cached. Concurrent misses of the same decision compute
+     * it only once.
+     *
+     * @param user         the user.
+     * @param organization the organization.
+     * @param activity     the activity.
+     * @param loader       computes the decision.
+     * @return the decision.
+     * @throws Exception if the loader fails. Failures are not cached.
+     */
+    public Boolean get(User user, Organization organization, IActivity activity, Callable<Boolean> loader) throws Exception {
+        final Boolean cached = get(user, organization, activity);
+        if (cached != null) {
+            return cached;
+        }
+        if (user == null || organization == null || activity == null) {
+            return loader.call();
+        }
+        return loads.load(Arrays.asList(user, organization, activity.getTag()), () -> {
+            final long generation = getGeneration(user);
+            final Boolean authorized = timed(loader);
+            if (authorized != null) {
+                storeLoaded(user, generation, () -> put(user, organization, activity, authorized));
+            }
+            return authorized;
+        });
+    }
+
+    /**
+     * Gets a decision. If it is not cached, all the activities allowed to the user are loaded at once and stored as
+     * complete permissions, so later checks of any activity are answered without loading again.
+     *
+     * @param user         the user.
+     * @param organization the organization, or null for the activities out of any organization.
+     * @param activity     the activity.
+     * @param loader       gets all the activities allowed to the user.
+     * @return the decision.
+     * @throws Exception if the loader fails. Failures are not cached.
+     */
+    public Boolean getFromPermissions(User user, Organization organization, IActivity activity,
+                                      Callable<? extends Collection<IActivity>> loader) throws Exception {
+        final Boolean cached = organization == null ? get(user, activity) : get(user, organization, activity);
+        if (cached != null) {
+            return cached;
+        }
+        return loadPermissions(user, organization, loader).isAllowed(activityRegistry.getOrdinal(activity));
+    }
+
+    /**
+     * Gets several decisions. If any of them is not cached, all the activities allowed to the user are loaded once
+     * and stored as complete permissions.
+     *
+     * @param user         the user.
+     * @param organization the organization, or null for the activities out of any organization.
+     * @param activities   the activities.
+     * @param loader       gets all the activities allowed to the user.
+     * @return the decision for each activity.
+     * @throws Exception if the loader fails. Failures are not cached.
+     */
+    public Map<IActivity, Boolean> getAllFromPermissions(User user, Organization organization, Collection<IActivity> activities,
+                                                         Callable<? extends Collection<IActivity>> loader) throws Exception {
+        final BulkResult<IActivity, Boolean> cached = getAll(user, organization, activities);
+        if (cached.isComplete()) {
+            return cached.getHits();
+        }
+        final ActivityPermissions permissions = loadPermissions(user, organization, loader);
+        final Map<IActivity, Boolean> decisions = new HashMap<>(cached.getHits());
+        for (final IActivity activity : cached.getMissing()) {
+            decisions.put(activity, permissions.isAllowed(activityRegistry.getOrdinal(activity)));
+        }
+        return decisions;
+    }
+
+    private ActivityPermissions loadPermissions(User user, Organization organization, Callable<? extends Collection<IActivity>> loader)
+            throws Exception {
+        if (user == null) {
+            return toPermissions(loader.call(), System.currentTimeMillis());
+        }
+        return permissionLoads.load(Arrays.asList(user, organization), () -> {
+            final long generation = getGeneration(user);
+            // The backend state is at least as old as the start of the load.
+            final long time = System.currentTimeMillis();
+            final ActivityPermissions permissions = toPermissions(timed(loader), time);
+            storeLoaded(user, generation, () -> storePermissions(user, organization, permissions));
+            return permissions;
+        });
+    }
+
+    /**
+     * Gets the permissions where a new decision is added. Permissions that have expired, although their entry has not,
+     * are replaced by empty ones with the time of the entry.
+     *
+     * @param entry   the entry, that has not expired.
+     * @param current the current permissions, or null.
+     * @return the permissions to add the decision to.
+     */
+    private ActivityPermissions renew(Entry<Organization> entry, ActivityPermissions current) {
+        if (current == null || isExpired(current.getTime(), System.currentTimeMillis())) {
+            return ActivityPermissions.EMPTY.withTime(entry.time);
+        }
+        return current;
+    }
+
+    private int getStripe(User user) {
+        return (user.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private long getGeneration(User user) {
+        return generations.get(getStripe(user));
+    }
+
+    /**
+     * Stores the result of a load, unless the user has been removed since the load started. If the user is removed
+     * while storing, the user is removed again.
+     *
+     * @param user       the user.
+     * @param generation the generation of the user when the load started.
+     * @param store      stores the result.
+     */
+    private void storeLoaded(User user, long generation, Runnable store) {
+        if (getGeneration(user) != generation) {
+            return;
+        }
+        store.run();
+        // remove() changes the generation before removing the entry, so one of both removes what has been stored.
+        if (getGeneration(user) != generation) {
+            entries.remove(user);
+        }
+    }
+
+    /**
+     * Stores complete permissions. If the entry of the user is older than them, it is replaced by a copy with their
+     * time, so they are not removed when the older decisions expire. The copied decisions keep their own time.
+     *
+     * @param user         the user.
+     * @param organization the organization, or null for the permissions out of any organization.
+     * @param permissions  the permissions.
+     */
+    private void storePermissions(User user, Organization organization, ActivityPermissions permissions) {
+        while (true) {
+            final Entry<Organization> entry = getOrCreateEntry(user);
+            final Entry<Organization> target = entry.time < permissions.getTime() ? entry.copy(permissions.getTime()) : entry;
+            if (organization == null) {
+                target.permissions.set(permissions);
+            } else {
+                target.organizations.compareAndSet(null, new ConcurrentHashMap<>());
+                target.organizations.get().put(organization, permissions);
+            }
+            if (target == entry) {
+                return;
+            }
+            if (entries.replace(user, entry, target)) {
+                expirationQueue.add(new ExpirationRecord<>(user, target));
+                return;
+            }
+        }
+    }
+
+    private ActivityPermissions toPermissions(Collection<IActivity> activities, long time) {
+        final List<Integer> ordinals = new ArrayList<>();
+        if (activities != null) {
+            for (final IActivity activity : activities) {
+                ordinals.add(activityRegistry.register(activity));
+            }
+        }
+        return ActivityPermissions.complete(ordinals, time);
+    }
+
+    /**
+     * Stores all the activities allowed to a user. Any other activity is denied until the permissions expire.
+     *
+     * @param user       the user.
+     * @param activities the allowed activities.
+     */
+    public void putPermissions(User user, Collection<IActivity> activities) {
+        if (user != null) {
+            storePermissions(user, null, toPermissions(activities, System.currentTimeMillis()));
+        }
+    }
+
+    public void putPermissions(User user, Organization organization, Collection<IActivity> activities) {
+        if (user != null && organization != null) {
+            storePermissions(user, organization, toPermissions(activities, System.currentTimeMillis()));
+        }
+    }
+
+    public void put(User user, IActivity activity, boolean authorized) {
+        final int ordinal = activityRegistry.register(activity);
+        if (user != null && ordinal >= 0) {
+            final Entry<Organization> entry = getOrCreateEntry(user);
+            final AtomicReference<ActivityPermissions> permissions = entry.permissions;
+            ActivityPermissions current;
+            do {
+                current = permissions.get();
+            } while (!permissions.compareAndSet(current, renew(entry, current).with(ordinal, authorized)));
+        }
+    }
+
+    public void put(User user, Organization organization, IActivity activity, boolean authorized) {
+        final int ordinal = activityRegistry.register(activity);
+        if (user != null && organization != null && ordinal >= 0) {
+            final Entry<Organization> entry = getOrCreateEntry(user);
+            entry.organizations.compareAndSet(null, new ConcurrentHashMap<>());
+            final Map<Organization, ActivityPermissions> organizations = entry.organizations.get();
+            while (true) {
+                final ActivityPermissions current = organizations.get(organization);
+                if (current == null) {
+                    if (organizations.putIfAbsent(organization, renew(entry, null).with(ordinal, authorized)) == null) {
+                        return;
+                    }
+                } else if (organizations.replace(organization, current, renew(entry, current).with(ordinal, authorized))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public void remove(User user) {
+        if (user != null) {
+            // Loads of the user that are running do not store their results.
+            generations.incrementAndGet(getStripe(user));
+            if (entries.remove(user) != null) {
+                metrics.recordRemoval();
+            }
+        }
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < GENERATION_STRIPES; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        entries.clear();
+        expirationQueue.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes the expired users and evicts the ones over the maximum size. Used when the expiration time or the
+     * maximum size change.
+     */
+    public void applyLimits() {
+        expire(System.currentTimeMillis());
+        evict();
+    }
+
+    private Entry<Organization> getEntry(User user) {
+        if (user == null) {
+            return null;
+        }
+        final Entry<Organization> entry = entries.get(user);
+        if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+            // object has expired
+            if (entries.remove(user, entry)) {
+                metrics.recordExpirations(1);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry<Organization> getOrCreateEntry(User user) {
+        final long now = System.currentTimeMillis();
+        while (true) {
+            final Entry<Organization> entry = entries.get(user);
+            if (entry != null && !isExpired(entry, now)) {
+                return entry;
+            }
+            final Entry<Organization> created = new Entry<>(now);
+            final boolean stored = entry == null ? entries.putIfAbsent(user, created) == null : entries.replace(user, entry, created);
+            if (stored) {
+                expirationQueue.add(new ExpirationRecord<>(user, created));
+                expire(now);
+                evict();
+                return created;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry<Organization> entry, long now) {
+        return isExpired(entry.time, now);
+    }
+
+    private boolean isExpired(long time, long now) {
+        return (now - time) > expirationTime.getAsLong();
+    }
+
+    /**
+     * Removes the expired entries from the head of the queue. Records of entries that have been removed or replaced
+     * are discarded without touching the map.
+     *
+     * @param now current time.
+     */
+    private void expire(long now) {
+        ExpirationRecord<User, Organization> head = expirationQueue.peek();
+        while (head != null && isExpired(head.entry, now)) {
+            final ExpirationRecord<User, Organization> polled = expirationQueue.poll();
+            if (polled == null) {
+                return;
+            }
+            if (isExpired(polled.entry, now)) {
+                if (entries.remove(polled.user, polled.entry)) {
+                    metrics.recordExpirations(1);
+                }
+            } else {
+                // Head already purged by other thread. Keep the record for later.
+                expirationQueue.add(polled);
+            }
+            head = expirationQueue.peek();
+        }
+    }
+
+    /**
+     * Removes the oldest users until the maximum size is satisfied.
+     */
+    private void evict() {
+        final long maximum = maximumSize.getAsLong();
+        while (maximum > 0 && entries.size() > maximum) {
+            final ExpirationRecord<User, Organization> eldest = expirationQueue.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (entries.remove(eldest.user, eldest.entry)) {
+                metrics.recordEvictions(1);
+            }
+        }
+    }
+
+    private static final class Entry<Organization> {
+        private final long time;
+        private final AtomicReference<ActivityPermissions> permissions;
+        private final AtomicReference<Map<Organization, ActivityPermissions>> organizations;
+
+        private Entry(long time) {
+            this.time = time;
+            this.permissions = new AtomicReference<>(ActivityPermissions.EMPTY.withTime(time));
+            this.organizations = new AtomicReference<>();
+        }
+
+        /**
+         * Copy with a later time. The decisions are shared, and keep their own time.
+         */
+        private Entry<Organization> copy(long newTime) {
+            final Entry<Organization> copy = new Entry<>(newTime);
+            copy.permissions.set(permissions.get());
+            final Map<Organization, ActivityPermissions> currentOrganizations = organizations.get();
+            if (currentOrganizations != null) {
+                copy.organizations.set(new ConcurrentHashMap<>(currentOrganizations));
+            }
+            return copy;
+        }
+    }
+
+    private static final class ExpirationRecord<User, Organization> {
+        private final User user;
+        private final Entry<Organization> entry;
+
+        private ExpirationRecord(User user, Entry<Organization> entry) {
+            this.user = user;
+            this.entry = entry;
+        }
+    }
+}
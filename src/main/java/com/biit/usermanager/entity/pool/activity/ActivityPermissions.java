@@ -0,0 +1,143 @@
+package com.biit.usermanager.entity.pool.activity;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of activity decisions encoded as two bitsets indexed by the {@link ActivityRegistry} ordinal: the
+ * activities whose decision is known, and the ones that are allowed.
+ * <p>
+ * Permissions can be complete, when they contain all the activities allowed to a user. In that case any activity that
+ * is not allowed is denied, and no decision is unknown.
+ * <p>
+ * Permissions keep the time when they were stored, that defines when they expire.
+ */
+public final class ActivityPermissions {
+
+    public static final ActivityPermissions EMPTY = new ActivityPermissions(new long[0], new long[0], false, 0);
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+
+    private final long[] known;
+    private final long[] allowed;
+    private final boolean complete;
+    private final long time;
+
+    private ActivityPermissions(long[] known, long[] allowed, boolean complete, long time) {
+        this.known = known;
+        this.allowed = allowed;
+        this.complete = complete;
+        this.time = time;
+    }
+
+    /**
+     * Creates complete permissions: the given activities are allowed and any other is denied.
+     *
+     * @param allowedOrdinals the ordinals of the allowed activities.
+     * @param time            the time when they were obtained.
+     * @return the permissions.
+     */
+    public static ActivityPermissions complete(Collection<Integer> allowedOrdinals, long time) {
+        int length = 0;
+        for (final int ordinal : allowedOrdinals) {
+            length = Math.max(length, wordIndex(ordinal) + 1);
+        }
+        final long[] words = new long[length];
+        for (final int ordinal : allowedOrdinals) {
+            if (ordinal >= 0) {
+                words[wordIndex(ordinal)] |= 1L << ordinal;
+            }
+        }
+        return new ActivityPermissions(words, words.clone(), true, time);
+    }
+
+    private static int wordIndex(int ordinal) {
+        return ordinal >> ADDRESS_BITS_PER_WORD;
+    }
+
+    private static boolean isSet(long[] words, int ordinal) {
+        final int index = wordIndex(ordinal);
+        return index < words.length && (words[index] & (1L << ordinal)) != 0;
+    }
+
+    public boolean isKnown(int ordinal) {
+        return complete || (ordinal >= 0 && isSet(known, ordinal));
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns a copy with the same decisions and another time. This instance is not modified.
+     *
+     * @param time the time when the decisions were stored.
+     * @return the new permissions.
+     */
+    public ActivityPermissions withTime(long time) {
+        return new ActivityPermissions(known, allowed, complete, time);
+    }
+
+    /**
+     * Gets the decision for an activity.
+     *
+     * @param ordinal the ordinal of the activity.
+     * @return true or false if the decision is known, null if not.
+     */
+    public Boolean isAllowed(int ordinal) {
+        if (!isKnown(ordinal)) {
+            return null;
+        }
+        return ordinal >= 0 && isSet(allowed, ordinal);
+    }
+
+    /**
+     * Returns a copy with the decision of an activity changed. This instance is not modified.
+     *
+     * @param ordinal    the ordinal of the activity.
+     * @param authorized the decision.
+     * @return the new permissions.
+     */
+    public ActivityPermissions with(int ordinal, boolean authorized) {
+        if (ordinal < 0) {
+            return this;
+        }
+        final int length = Math.max(known.length, wordIndex(ordinal) + 1);
+        final long[] newKnown = Arrays.copyOf(known, length);
+        final long[] newAllowed = Arrays.copyOf(allowed, length);
+        final long mask = 1L << ordinal;
+        newKnown[wordIndex(ordinal)] |= mask;
+        if (authorized) {
+            newAllowed[wordIndex(ordinal)] |= mask;
+        } else {
+            newAllowed[wordIndex(ordinal)] &= ~mask;
+        }
+        return new ActivityPermissions(newKnown, newAllowed, complete, time);
+    }
+}
@@ -0,0 +1,88 @@
+package com.biit.usermanager.entity.pool.activity;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.security.IActivity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns a dense ordinal to each activity tag, so activity permissions can be stored as bits. Ordinals are shared by
+ * all pools and never change while the application is running.
+ */
+public final class ActivityRegistry {
+
+    private static volatile ActivityRegistry instance;
+
+    private final Map<String, Integer> ordinalsByTag;
+    private final AtomicInteger nextOrdinal;
+
+    private ActivityRegistry() {
+        ordinalsByTag = new ConcurrentHashMap<>();
+        nextOrdinal = new AtomicInteger();
+    }
+
+    public static ActivityRegistry getInstance() {
+        if (instance == null) {
+            synchronized (ActivityRegistry.class) {
+                if (instance == null) {
+                    instance = new ActivityRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the ordinal of an activity, registering it if it is new.
+     *
+     * @param activity the activity.
+     * @return the ordinal, or -1 if the activity has no tag.
+     */
+    public int register(IActivity activity) {
+        if (activity == null || activity.getTag() == null) {
+            return -1;
+        }
+        return ordinalsByTag.computeIfAbsent(activity.getTag(), tag -> nextOrdinal.getAndIncrement());
+    }
+
+    /**
+     * Gets the ordinal of an activity without registering it.
+     *
+     * @param activity the activity.
+     * @return the ordinal, or -1 if the activity has never been registered.
+     */
+    public int getOrdinal(IActivity activity) {
+        if (activity == null || activity.getTag() == null) {
+            return -1;
+        }
+        final Integer ordinal = ordinalsByTag.get(activity.getTag());
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public int size() {
+        return nextOrdinal.get();
+    }
+}
@@ -0,0 +1,468 @@
+package com.biit.usermanager.entity.pool.collection;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Immutable set stored as a hash array mapped trie. Adding or removing an element returns a new set that shares all
+ * nodes with the previous one except the path to the element, so the pools can publish a new version of a set
+ * without copying it, and readers can iterate a version while it is being replaced.
+ * <p>
+ * A set can be keyed, i.e. by the id of its elements. Then it holds one element by key, adding an element replaces the
+ * element with the same key, and elements can be found or removed by key.
+ * <p>
+ * Methods that modify the set in place throw {@link UnsupportedOperationException}.
+ *
+ * @param <E> the element type.
+ */
+public final class PersistentSet<E> extends AbstractSet<E> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int HASH_SHIFT = 16;
+    // Bitmap levels use shifts 0, 5, ..., 30, then a collision level.
+    private static final int MAXIMUM_DEPTH = 8;
+
+    private static final Function<Object, Object> IDENTITY = Function.identity();
+    private static final PersistentSet<?> EMPTY = new PersistentSet<>(BitmapNode.EMPTY, 0, IDENTITY);
+
+    private final Node root;
+    private final int size;
+    // Gets the key of an element. The identity for sets that are not keyed.
+    private final Function<Object, Object> key;
+
+    private PersistentSet(Node root, int size, Function<Object, Object> key) {
+        this.root = root;
+        this.size = size;
+        this.key = key;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> empty() {
+        return (PersistentSet<E>) EMPTY;
+    }
+
+    /**
+     * Gets an empty set that holds one element by key.
+     *
+     * @param key gets the key of an element, i.e. its id.
+     * @param <E> the element type.
+     * @return the set.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> emptyByKey(Function<? super E, ?> key) {
+        return new PersistentSet<>(BitmapNode.EMPTY, 0, (Function<Object, Object>) key);
+    }
+
+    /**
+     * Gets a persistent set with the elements of a collection. A persistent set is returned as it is.
+     *
+     * @param elements the elements.
+     * @param <E>      the element type.
+     * @return the set.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentSet) {
+            return (PersistentSet<E>) elements;
+        }
+        return PersistentSet.<E>empty().plusAll(elements);
+    }
+
+    private static int hash(Object element) {
+        final int hash = element.hashCode();
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    /**
+     * Gets a set that also contains an element. In a keyed set, it replaces the element with the same key.
+     *
+     * @param element the element to add. Null elements are not allowed.
+     * @return the new set, or this set if the element was already present.
+     */
+    public PersistentSet<E> plus(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not allowed.");
+        }
+        final Object elementKey = key.apply(element);
+        final int hash = hash(elementKey);
+        final Object existing = root.find(elementKey, hash, 0, key);
+        // A keyed set keeps the last instance, i.e. the updated version of a user.
+        if (existing == element || (existing != null && key == IDENTITY)) {
+            return this;
+        }
+        return new PersistentSet<>(root.plus(element, elementKey, hash, 0, key), existing == null ? size + 1 : size, key);
+    }
+
+    public PersistentSet<E> plusAll(Collection<? extends E> elements) {
+        PersistentSet<E> result = this;
+        for (final E element : elements) {
+            result = result.plus(element);
+        }
+        return result;
+    }
+
+    /**
+     * Gets a set without an element.
+     *
+     * @param element the element to remove.
+     * @return the new set, or this set if the element was not present.
+     */
+    public PersistentSet<E> minus(Object element) {
+        return contains(element) ? minusKey(key.apply(element)) : this;
+    }
+
+    /**
+     * Gets a set without the element of a key.
+     *
+     * @param elementKey the key, i.e. the id of the element. For sets that are not keyed, the element.
+     * @return the new set, or this set if there is no element with this key.
+     */
+    public PersistentSet<E> minusKey(Object elementKey) {
+        if (elementKey == null) {
+            return this;
+        }
+        final Node updated = root.minus(elementKey, hash(elementKey), 0, key);
+        return updated == root ? this : new PersistentSet<>(updated, size - 1, key);
+    }
+
+    /**
+     * Gets the element of a key.
+     *
+     * @param elementKey the key, i.e. the id of the element. For sets that are not keyed, the element.
+     * @return the element or null if there is no element with this key.
+     */
+    @SuppressWarnings("unchecked")
+    public E getByKey(Object elementKey) {
+        return elementKey != null ? (E) root.find(elementKey, hash(elementKey), 0, key) : null;
+    }
+
+    public PersistentSet<E> minusAll(Collection<?> elements) {
+        PersistentSet<E> result = this;
+        for (final Object element : elements) {
+            result = result.minus(element);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        if (element == null) {
+            return false;
+        }
+        try {
+            return element.equals(getByKey(key.apply(element)));
+        } catch (ClassCastException e) {
+            // Not an element of a keyed set.
+            return false;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TrieIterator<>(root);
+    }
+
+    /**
+     * Node of the trie. Its entries are elements or child nodes.
+     */
+    private abstract static class Node {
+
+        /**
+         * Finds the element of a key.
+         *
+         * @param elementKey the key.
+         * @param hash       the hash of the key.
+         * @param shift      the level of this node.
+         * @param key        gets the key of an element.
+         * @return the element or null.
+         */
+        abstract Object find(Object elementKey, int hash, int shift, Function<Object, Object> key);
+
+        /**
+         * Adds an element, replacing the element with the same key.
+         */
+        abstract Node plus(Object element, Object elementKey, int hash, int shift, Function<Object, Object> key);
+
+        /**
+         * Removes the element of a key.
+         *
+         * @return the new node, or this node if there is no element with the key.
+         */
+        abstract Node minus(Object elementKey, int hash, int shift, Function<Object, Object> key);
+
+        abstract Object[] entries();
+
+        /**
+         * Gets the element of a node that has only one element and no children, so the parent can store it directly.
+         *
+         * @return the element or null.
+         */
+        Object singleElement() {
+            final Object[] entries = entries();
+            return entries.length == 1 && !(entries[0] instanceof Node) ? entries[0] : null;
+        }
+    }
+
+    /**
+     * Node that stores the entries of 32 possible positions, indexed by 5 bits of the hash.
+     */
+    private static final class BitmapNode extends Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] entries;
+
+        private BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(Object elementKey, int hash, int shift, Function<Object, Object> key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final Object entry = entries[index(bit)];
+            if (entry instanceof Node) {
+                return ((Node) entry).find(elementKey, hash, shift + BITS, key);
+            }
+            return key.apply(entry).equals(elementKey) ? entry : null;
+        }
+
+        @Override
+        Node plus(Object element, Object elementKey, int hash, int shift, Function<Object, Object> key) {
+            final int bit = bit(hash, shift);
+            final int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                final Object[] updated = new Object[entries.length + 1];
+                System.arraycopy(entries, 0, updated, 0, index);
+                updated[index] = element;
+                System.arraycopy(entries, index, updated, index + 1, entries.length - index);
+                return new BitmapNode(bitmap | bit, updated);
+            }
+            final Object entry = entries[index];
+            final Object replacement;
+            if (entry instanceof Node) {
+                replacement = ((Node) entry).plus(element, elementKey, hash, shift + BITS, key);
+            } else if (key.apply(entry).equals(elementKey)) {
+                replacement = element;
+            } else {
+                replacement = branch(entry, hash(key.apply(entry)), element, hash, shift + BITS);
+            }
+            if (replacement == entry) {
+                return this;
+            }
+            return replace(index, replacement);
+        }
+
+        @Override
+        Node minus(Object elementKey, int hash, int shift, Function<Object, Object> key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = index(bit);
+            final Object entry = entries[index];
+            if (entry instanceof Node) {
+                final Node child = ((Node) entry).minus(elementKey, hash, shift + BITS, key);
+                if (child == entry) {
+                    return this;
+                }
+                final Object single = child.singleElement();
+                return replace(index, single != null ? single : child);
+            }
+            if (!key.apply(entry).equals(elementKey)) {
+                return this;
+            }
+            final Object[] updated = new Object[entries.length - 1];
+            System.arraycopy(entries, 0, updated, 0, index);
+            System.arraycopy(entries, index + 1, updated, index, entries.length - index - 1);
+            return new BitmapNode(bitmap ^ bit, updated);
+        }
+
+        private BitmapNode replace(int index, Object replacement) {
+            final Object[] updated = entries.clone();
+            updated[index] = replacement;
+            return new BitmapNode(bitmap, updated);
+        }
+
+        @Override
+        Object[] entries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Node that stores the elements that have the same hash.
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private final Object[] elements;
+
+        private CollisionNode(int hash, Object[] elements) {
+            this.hash = hash;
+            this.elements = elements;
+        }
+
+        private int indexOf(Object elementKey, Function<Object, Object> key) {
+            for (int i = 0; i < elements.length; i++) {
+                if (key.apply(elements[i]).equals(elementKey)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object elementKey, int elementHash, int shift, Function<Object, Object> key) {
+            final int index = hash == elementHash ? indexOf(elementKey, key) : -1;
+            return index >= 0 ? elements[index] : null;
+        }
+
+        @Override
+        Node plus(Object element, Object elementKey, int elementHash, int shift, Function<Object, Object> key) {
+            if (hash != elementHash) {
+                return branch(this, hash, element, elementHash, shift);
+            }
+            final int index = indexOf(elementKey, key);
+            if (index >= 0) {
+                final Object[] updated = elements.clone();
+                updated[index] = element;
+                return new CollisionNode(hash, updated);
+            }
+            final Object[] updated = new Object[elements.length + 1];
+            System.arraycopy(elements, 0, updated, 0, elements.length);
+            updated[elements.length] = element;
+            return new CollisionNode(hash, updated);
+        }
+
+        @Override
+        Node minus(Object elementKey, int elementHash, int shift, Function<Object, Object> key) {
+            final int index = hash == elementHash ? indexOf(elementKey, key) : -1;
+            if (index < 0) {
+                return this;
+            }
+            final Object[] updated = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, updated, 0, index);
+            System.arraycopy(elements, index + 1, updated, index, elements.length - index - 1);
+            return new CollisionNode(hash, updated);
+        }
+
+        @Override
+        Object[] entries() {
+            return elements;
+        }
+    }
+
+    /**
+     * Creates the node that holds two entries with different positions at a level.
+     *
+     * @param first       an element, or a collision node.
+     * @param firstHash   its hash.
+     * @param second      an element.
+     * @param secondHash  its hash.
+     * @param shift       the level of the new node.
+     * @return the node.
+     */
+    private static Node branch(Object first, int firstHash, Object second, int secondHash, int shift) {
+        if (firstHash == secondHash) {
+            return new CollisionNode(firstHash, new Object[]{first, second});
+        }
+        final int firstBit = BitmapNode.bit(firstHash, shift);
+        final int secondBit = BitmapNode.bit(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new BitmapNode(firstBit, new Object[]{branch(first, firstHash, second, secondHash, shift + BITS)});
+        }
+        return new BitmapNode(firstBit | secondBit,
+                Integer.compareUnsigned(firstBit, secondBit) < 0 ? new Object[]{first, second} : new Object[]{second, first});
+    }
+
+    /**
+     * Visits the elements depth first, keeping the position in each level of the trie.
+     */
+    private static final class TrieIterator<E> implements Iterator<E> {
+        private final Object[][] stack = new Object[MAXIMUM_DEPTH][];
+        private final int[] positions = new int[MAXIMUM_DEPTH];
+        private int depth;
+        private Object next;
+
+        private TrieIterator(Node root) {
+            stack[0] = root.entries();
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] >= stack[depth].length) {
+                    depth--;
+                    continue;
+                }
+                final Object entry = stack[depth][positions[depth]++];
+                if (entry instanceof Node) {
+                    depth++;
+                    stack[depth] = ((Node) entry).entries();
+                    positions[depth] = 0;
+                } else {
+                    next = entry;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final E element = (E) next;
+            advance();
+            return element;
+        }
+    }
+}
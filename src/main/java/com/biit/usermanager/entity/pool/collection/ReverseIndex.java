@@ -0,0 +1,106 @@
+package com.biit.usermanager.entity.pool.collection;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index from a value to the holders that contain it, i.e. from a role to the users that have it. Used to find the
+ * entries of a map affected by a value without visiting all of them.
+ * <p>
+ * The index can keep holders that no longer contain the value, so the holders must be checked against the indexed
+ * map. Holders whose entries expire or are evicted are removed by a removal listener of the map.
+ *
+ * @param <Value>  the indexed value.
+ * @param <Holder> the key of the entries that contain the value.
+ */
+public class ReverseIndex<Value, Holder> {
+    private final Map<Value, Set<Holder>> holdersByValue = new HashMap<>();
+
+    public synchronized void add(Value value, Holder holder) {
+        if (value != null && holder != null) {
+            holdersByValue.computeIfAbsent(value, key -> new HashSet<>()).add(holder);
+        }
+    }
+
+    public synchronized void addAll(Collection<? extends Value> values, Holder holder) {
+        if (values != null) {
+            for (final Value value : values) {
+                add(value, holder);
+            }
+        }
+    }
+
+    public synchronized void remove(Object value, Holder holder) {
+        final Set<Holder> holders = holdersByValue.get(value);
+        if (holders != null) {
+            holders.remove(holder);
+            if (holders.isEmpty()) {
+                holdersByValue.remove(value);
+            }
+        }
+    }
+
+    public synchronized void removeAll(Collection<?> values, Holder holder) {
+        if (values != null) {
+            for (final Object value : values) {
+                remove(value, holder);
+            }
+        }
+    }
+
+    /**
+     * Gets the holders of a value.
+     *
+     * @param value the value.
+     * @return a copy of the holders. Empty if there are none.
+     */
+    public synchronized Set<Holder> get(Object value) {
+        final Set<Holder> holders = holdersByValue.get(value);
+        return holders != null ? new HashSet<>(holders) : Collections.emptySet();
+    }
+
+    /**
+     * Removes a value from the index.
+     *
+     * @param value the value.
+     * @return the holders that it had. Empty if there were none.
+     */
+    public synchronized Set<Holder> removeValue(Object value) {
+        final Set<Holder> holders = holdersByValue.remove(value);
+        return holders != null ? holders : Collections.emptySet();
+    }
+
+    public synchronized int size() {
+        return holdersByValue.size();
+    }
+
+    public synchronized void clear() {
+        holdersByValue.clear();
+    }
+}
@@ -0,0 +1,246 @@
+package com.biit.usermanager.entity.pool.config;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Settings of the pools, parsed once. Instances are immutable: a new one is created each time the configuration files
+ * change, so reading a setting is a field access.
+ */
+public final class PoolConfiguration {
+
+    private long standardExpirationTime;
+    private long userPoolExpirationTime;
+    private long groupPoolExpirationTime;
+    private long rolePoolExpirationTime;
+    private long activityPoolExpirationTime;
+    private long negativeExpirationTime;
+    private long standardMaximumSize;
+    private long userPoolMaximumSize;
+    private long groupPoolMaximumSize;
+    private long rolePoolMaximumSize;
+    private long activityPoolMaximumSize;
+    private int warmUpParallelism;
+    private int warmUpBatchSize;
+    private double warmUpCoverage;
+
+    private PoolConfiguration() {
+    }
+
+    public long getStandardExpirationTime() {
+        return standardExpirationTime;
+    }
+
+    public long getUserPoolExpirationTime() {
+        return userPoolExpirationTime;
+    }
+
+    public long getGroupPoolExpirationTime() {
+        return groupPoolExpirationTime;
+    }
+
+    public long getRolePoolExpirationTime() {
+        return rolePoolExpirationTime;
+    }
+
+    public long getActivityPoolExpirationTime() {
+        return activityPoolExpirationTime;
+    }
+
+    public long getNegativeExpirationTime() {
+        return negativeExpirationTime;
+    }
+
+    public long getStandardMaximumSize() {
+        return standardMaximumSize;
+    }
+
+    public long getUserPoolMaximumSize() {
+        return userPoolMaximumSize;
+    }
+
+    public long getGroupPoolMaximumSize() {
+        return groupPoolMaximumSize;
+    }
+
+    public long getRolePoolMaximumSize() {
+        return rolePoolMaximumSize;
+    }
+
+    public long getActivityPoolMaximumSize() {
+        return activityPoolMaximumSize;
+    }
+
+    public int getWarmUpParallelism() {
+        return warmUpParallelism;
+    }
+
+    public int getWarmUpBatchSize() {
+        return warmUpBatchSize;
+    }
+
+    public double getWarmUpCoverage() {
+        return warmUpCoverage;
+    }
+
+    private Object[] values() {
+        return new Object[]{standardExpirationTime, userPoolExpirationTime, groupPoolExpirationTime, rolePoolExpirationTime,
+                activityPoolExpirationTime, negativeExpirationTime, standardMaximumSize, userPoolMaximumSize, groupPoolMaximumSize,
+                rolePoolMaximumSize, activityPoolMaximumSize, warmUpParallelism, warmUpBatchSize, warmUpCoverage};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PoolConfiguration && Arrays.equals(values(), ((PoolConfiguration) o).values());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values());
+    }
+
+    @Override
+    public String toString() {
+        return "PoolConfiguration{expiration=" + standardExpirationTime + ", userExpiration=" + userPoolExpirationTime
+                + ", groupExpiration=" + groupPoolExpirationTime + ", roleExpiration=" + rolePoolExpirationTime
+                + ", activityExpiration=" + activityPoolExpirationTime + ", negativeExpiration=" + negativeExpirationTime
+                + ", maximumSize=" + standardMaximumSize + ", userMaximumSize=" + userPoolMaximumSize
+                + ", groupMaximumSize=" + groupPoolMaximumSize + ", roleMaximumSize=" + rolePoolMaximumSize
+                + ", activityMaximumSize=" + activityPoolMaximumSize + ", warmUpParallelism=" + warmUpParallelism
+                + ", warmUpBatchSize=" + warmUpBatchSize + ", warmUpCoverage=" + warmUpCoverage + "}";
+    }
+
+    /**
+     * Creates configurations. Pool settings not set use the standard ones.
+     */
+    public static final class Builder {
+        private long standardExpirationTime;
+        private Long userPoolExpirationTime;
+        private Long groupPoolExpirationTime;
+        private Long rolePoolExpirationTime;
+        private Long activityPoolExpirationTime;
+        private long negativeExpirationTime;
+        private long standardMaximumSize;
+        private Long userPoolMaximumSize;
+        private Long groupPoolMaximumSize;
+        private Long rolePoolMaximumSize;
+        private Long activityPoolMaximumSize;
+        private int warmUpParallelism;
+        private int warmUpBatchSize;
+        private double warmUpCoverage;
+
+        public Builder setStandardExpirationTime(long expirationTime) {
+            this.standardExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setUserPoolExpirationTime(Long expirationTime) {
+            this.userPoolExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setGroupPoolExpirationTime(Long expirationTime) {
+            this.groupPoolExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setRolePoolExpirationTime(Long expirationTime) {
+            this.rolePoolExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setActivityPoolExpirationTime(Long expirationTime) {
+            this.activityPoolExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setNegativeExpirationTime(long expirationTime) {
+            this.negativeExpirationTime = expirationTime;
+            return this;
+        }
+
+        public Builder setStandardMaximumSize(long maximumSize) {
+            this.standardMaximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setUserPoolMaximumSize(Long maximumSize) {
+            this.userPoolMaximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setGroupPoolMaximumSize(Long maximumSize) {
+            this.groupPoolMaximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setRolePoolMaximumSize(Long maximumSize) {
+            this.rolePoolMaximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setActivityPoolMaximumSize(Long maximumSize) {
+            this.activityPoolMaximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setWarmUpParallelism(int parallelism) {
+            this.warmUpParallelism = parallelism;
+            return this;
+        }
+
+        public Builder setWarmUpBatchSize(int batchSize) {
+            this.warmUpBatchSize = batchSize;
+            return this;
+        }
+
+        public Builder setWarmUpCoverage(double coverage) {
+            this.warmUpCoverage = coverage;
+            return this;
+        }
+
+        public PoolConfiguration build() {
+            final PoolConfiguration built = new PoolConfiguration();
+            built.standardExpirationTime = standardExpirationTime;
+            built.userPoolExpirationTime = orStandard(userPoolExpirationTime, standardExpirationTime);
+            built.groupPoolExpirationTime = orStandard(groupPoolExpirationTime, standardExpirationTime);
+            built.rolePoolExpirationTime = orStandard(rolePoolExpirationTime, standardExpirationTime);
+            built.activityPoolExpirationTime = orStandard(activityPoolExpirationTime, standardExpirationTime);
+            built.negativeExpirationTime = negativeExpirationTime;
+            built.standardMaximumSize = standardMaximumSize;
+            built.userPoolMaximumSize = orStandard(userPoolMaximumSize, standardMaximumSize);
+            built.groupPoolMaximumSize = orStandard(groupPoolMaximumSize, standardMaximumSize);
+            built.rolePoolMaximumSize = orStandard(rolePoolMaximumSize, standardMaximumSize);
+            built.activityPoolMaximumSize = orStandard(activityPoolMaximumSize, standardMaximumSize);
+            built.warmUpParallelism = warmUpParallelism;
+            built.warmUpBatchSize = warmUpBatchSize;
+            built.warmUpCoverage = warmUpCoverage;
+            return built;
+        }
+
+        private static long orStandard(Long value, long standard) {
+            return value != null ? value : standard;
+        }
+    }
+}
@@ -21,11 +21,29 @@ package com.biit.usermanager.entity.pool.config;
  * #L%
  */
 
+import com.biit.logger.BiitPoolLogger;
 import com.biit.utils.configuration.ConfigurationReader;
 import com.biit.utils.configuration.PropertiesSourceFile;
 import com.biit.utils.configuration.SystemVariablePropertiesSourceFile;
 import com.biit.utils.configuration.exceptions.PropertyNotFoundException;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Reads the settings of the pools. The properties are parsed once into an immutable {@link PoolConfiguration} that is
+ * read through a volatile field. The configuration files are watched, and when they change the settings are read
+ * again and the {@link PoolConfigurationListener}s are notified.
+ */
 public final class PoolConfigurationReader extends ConfigurationReader {
 
     private static final String CONFIG_FILE = "settings.conf";
@@ -37,11 +55,32 @@ public final class PoolConfigurationReader extends ConfigurationReader {
     private static final String GROUP_POOL_EXPIRATION_TIME = "usermanager.group.pool.expiration";
     private static final String ROLE_POOL_EXPIRATION_TIME = "usermanager.role.pool.expiration";
     private static final String ACTIVITY_POOL_EXPIRATION_TIME = "usermanager.activity.pool.expiration";
+    private static final String NEGATIVE_EXPIRATION_TIME = "usermanager.pool.negative.expiration";
+    private static final String MAXIMUM_SIZE = "usermanager.pool.maxsize";
+    private static final String USER_POOL_MAXIMUM_SIZE = "usermanager.user.pool.maxsize";
+    private static final String GROUP_POOL_MAXIMUM_SIZE = "usermanager.group.pool.maxsize";
+    private static final String ROLE_POOL_MAXIMUM_SIZE = "usermanager.role.pool.maxsize";
+    private static final String ACTIVITY_POOL_MAXIMUM_SIZE = "usermanager.activity.pool.maxsize";
+    private static final String WARM_UP_PARALLELISM = "usermanager.warmup.parallelism";
+    private static final String WARM_UP_BATCH_SIZE = "usermanager.warmup.batch";
+    private static final String WARM_UP_COVERAGE = "usermanager.warmup.coverage";
 
     // Default
     private static final String DEFAULT_EXPIRATION_TIME = "300000";
+    private static final String DEFAULT_NEGATIVE_EXPIRATION_TIME = "30000";
+    // No limit.
+    private static final String DEFAULT_MAXIMUM_SIZE = "0";
+    private static final String DEFAULT_WARM_UP_PARALLELISM = "8";
+    private static final String DEFAULT_WARM_UP_BATCH_SIZE = "100";
+    // Ready without waiting for the warm-up.
+    private static final String DEFAULT_WARM_UP_COVERAGE = "0";
+
+    private static volatile PoolConfigurationReader instance;
 
-    private static PoolConfigurationReader instance;
+    private volatile PoolConfiguration configuration;
+    // Pools are not kept alive only because they listen to changes.
+    private final Set<PoolConfigurationListener> listeners = Collections.newSetFromMap(new WeakHashMap<>());
+    private final List<FileWatcher> watchers = new ArrayList<>();
 
     private PoolConfigurationReader() {
         super();
@@ -51,11 +90,19 @@ public final class PoolConfigurationReader extends ConfigurationReader {
         addProperty(GROUP_POOL_EXPIRATION_TIME, DEFAULT_EXPIRATION_TIME);
         addProperty(ROLE_POOL_EXPIRATION_TIME, DEFAULT_EXPIRATION_TIME);
         addProperty(ACTIVITY_POOL_EXPIRATION_TIME, DEFAULT_EXPIRATION_TIME);
+        addProperty(NEGATIVE_EXPIRATION_TIME, DEFAULT_NEGATIVE_EXPIRATION_TIME);
+        // Pool sizes not defined use the standard one.
+        addProperty(MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE);
+        addProperty(WARM_UP_PARALLELISM, DEFAULT_WARM_UP_PARALLELISM);
+        addProperty(WARM_UP_BATCH_SIZE, DEFAULT_WARM_UP_BATCH_SIZE);
+        addProperty(WARM_UP_COVERAGE, DEFAULT_WARM_UP_COVERAGE);
 
         addPropertiesSource(new PropertiesSourceFile(CONFIG_FILE));
         addPropertiesSource(new SystemVariablePropertiesSourceFile(SYSTEM_VARIABLE_CONFIG, CONFIG_FILE));
 
         readConfigurations();
+        configuration = parseConfiguration();
+        watchConfigurationFiles();
     }
 
     public static PoolConfigurationReader getInstance() {
@@ -69,6 +116,122 @@ public final class PoolConfigurationReader extends ConfigurationReader {
         return instance;
     }
 
+    /**
+     * Current settings.
+     *
+     * @return the settings, that never change.
+     */
+    public PoolConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Reads again the configuration files. If any setting has changed, the listeners are notified.
+     */
+    public void reload() {
+        final PoolConfiguration reloaded;
+        synchronized (this) {
+            readConfigurations();
+            reloaded = parseConfiguration();
+            if (reloaded.equals(configuration)) {
+                return;
+            }
+            configuration = reloaded;
+        }
+        BiitPoolLogger.info(this.getClass(), "Pool settings changed: " + reloaded + ".");
+        final List<PoolConfigurationListener> currentListeners;
+        synchronized (listeners) {
+            currentListeners = new ArrayList<>(listeners);
+        }
+        for (final PoolConfigurationListener listener : currentListeners) {
+            try {
+                listener.onConfigurationChanged(reloaded);
+            } catch (RuntimeException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+    }
+
+    /**
+     * Notifies a listener of the changes of the settings. Only a weak reference to the listener is kept.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(PoolConfigurationListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(PoolConfigurationListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Watches the configuration file of the classpath, if it is a file, and the one of the folder defined by the
+     * system variable.
+     */
+    private void watchConfigurationFiles() {
+        final List<Path> files = new ArrayList<>();
+        final URL resource = PoolConfigurationReader.class.getClassLoader().getResource(CONFIG_FILE);
+        if (resource != null && "file".equals(resource.getProtocol())) {
+            try {
+                files.add(Paths.get(resource.toURI()));
+            } catch (URISyntaxException | RuntimeException e) {
+                BiitPoolLogger.warning(this.getClass(), "Cannot watch '" + resource + "'.");
+            }
+        }
+        final String folder = System.getenv(SYSTEM_VARIABLE_CONFIG);
+        if (folder != null) {
+            files.add(Paths.get(folder, CONFIG_FILE));
+        }
+        for (final Path file : files) {
+            if (file.getParent() == null || !Files.isDirectory(file.getParent())) {
+                continue;
+            }
+            try {
+                watchers.add(new FileWatcher(file, this::reload));
+            } catch (IOException e) {
+                BiitPoolLogger.warning(this.getClass(), "Cannot watch '" + file + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops watching the configuration files, i.e. when the application is stopped.
+     */
+    public void stopWatching() {
+        for (final FileWatcher watcher : watchers) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+        watchers.clear();
+    }
+
+    private PoolConfiguration parseConfiguration() {
+        return new PoolConfiguration.Builder()
+                .setStandardExpirationTime(parseLong(EXPIRATION_TIME, DEFAULT_EXPIRATION_TIME))
+                .setUserPoolExpirationTime(parseLong(USER_POOL_EXPIRATION_TIME))
+                .setGroupPoolExpirationTime(parseLong(GROUP_POOL_EXPIRATION_TIME))
+                .setRolePoolExpirationTime(parseLong(ROLE_POOL_EXPIRATION_TIME))
+                .setActivityPoolExpirationTime(parseLong(ACTIVITY_POOL_EXPIRATION_TIME))
+                .setNegativeExpirationTime(parseLong(NEGATIVE_EXPIRATION_TIME, DEFAULT_NEGATIVE_EXPIRATION_TIME))
+                .setStandardMaximumSize(parseLong(MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE))
+                .setUserPoolMaximumSize(parseLong(USER_POOL_MAXIMUM_SIZE))
+                .setGroupPoolMaximumSize(parseLong(GROUP_POOL_MAXIMUM_SIZE))
+                .setRolePoolMaximumSize(parseLong(ROLE_POOL_MAXIMUM_SIZE))
+                .setActivityPoolMaximumSize(parseLong(ACTIVITY_POOL_MAXIMUM_SIZE))
+                .setWarmUpParallelism(parseLong(WARM_UP_PARALLELISM, DEFAULT_WARM_UP_PARALLELISM).intValue())
+                .setWarmUpBatchSize(parseLong(WARM_UP_BATCH_SIZE, DEFAULT_WARM_UP_BATCH_SIZE).intValue())
+                .setWarmUpCoverage(parseDouble(WARM_UP_COVERAGE, DEFAULT_WARM_UP_COVERAGE))
+                .build();
+    }
+
     private String getPropertyLogException(String propertyId) {
         try {
             return getProperty(propertyId);
@@ -77,44 +240,112 @@ public final class PoolConfigurationReader extends ConfigurationReader {
         }
     }
 
-    public Long getStandardExpirationTime() {
+    /**
+     * Parses a property.
+     *
+     * @param propertyId the property.
+     * @return the value or null if not defined or not a number.
+     */
+    private Long parseLong(String propertyId) {
         try {
-            return Long.parseLong(getPropertyLogException(EXPIRATION_TIME));
+            return Long.parseLong(getPropertyLogException(propertyId));
         } catch (Exception e) {
-            return Long.parseLong(DEFAULT_EXPIRATION_TIME);
+            return null;
         }
     }
 
-    public Long getUserPoolExpirationTime() {
+    private Long parseLong(String propertyId, String defaultValue) {
+        final Long value = parseLong(propertyId);
+        return value != null ? value : Long.parseLong(defaultValue);
+    }
+
+    private double parseDouble(String propertyId, String defaultValue) {
         try {
-            return Long.parseLong(getPropertyLogException(USER_POOL_EXPIRATION_TIME));
+            return Double.parseDouble(getPropertyLogException(propertyId));
         } catch (Exception e) {
-            return getStandardExpirationTime();
+            return Double.parseDouble(defaultValue);
         }
     }
 
+    public Long getStandardExpirationTime() {
+        return configuration.getStandardExpirationTime();
+    }
+
+    public Long getUserPoolExpirationTime() {
+        return configuration.getUserPoolExpirationTime();
+    }
+
     public Long getGroupPoolExpirationTime() {
-        try {
-            return Long.parseLong(getPropertyLogException(GROUP_POOL_EXPIRATION_TIME));
-        } catch (Exception e) {
-            return getStandardExpirationTime();
-        }
+        return configuration.getGroupPoolExpirationTime();
     }
 
     public Long getRolePoolExpirationTime() {
-        try {
-            return Long.parseLong(getPropertyLogException(ROLE_POOL_EXPIRATION_TIME));
-        } catch (Exception e) {
-            return getStandardExpirationTime();
-        }
+        return configuration.getRolePoolExpirationTime();
     }
 
     public Long getActivityPoolExpirationTime() {
-        try {
-            return Long.parseLong(getPropertyLogException(ACTIVITY_POOL_EXPIRATION_TIME));
-        } catch (Exception e) {
-            return getStandardExpirationTime();
-        }
+        return configuration.getActivityPoolExpirationTime();
+    }
+
+    /**
+     * Time that a user, organization or role that does not exist in the backend is remembered as missing.
+     *
+     * @return the time in milliseconds.
+     */
+    public Long getNegativeExpirationTime() {
+        return configuration.getNegativeExpirationTime();
+    }
+
+    /**
+     * Maximum number of entries of each map of a pool. Zero means no limit.
+     *
+     * @return the number of entries.
+     */
+    public Long getStandardMaximumSize() {
+        return configuration.getStandardMaximumSize();
+    }
+
+    public Long getUserPoolMaximumSize() {
+        return configuration.getUserPoolMaximumSize();
+    }
+
+    public Long getGroupPoolMaximumSize() {
+        return configuration.getGroupPoolMaximumSize();
+    }
+
+    public Long getRolePoolMaximumSize() {
+        return configuration.getRolePoolMaximumSize();
+    }
+
+    public Long getActivityPoolMaximumSize() {
+        return configuration.getActivityPoolMaximumSize();
+    }
+
+    /**
+     * Maximum number of backend calls running at the same time while warming up the pools.
+     *
+     * @return the number of calls.
+     */
+    public Integer getWarmUpParallelism() {
+        return configuration.getWarmUpParallelism();
+    }
+
+    /**
+     * Number of users whose roles and groups are asked in the same backend call while warming up the pools.
+     *
+     * @return the number of users.
+     */
+    public Integer getWarmUpBatchSize() {
+        return configuration.getWarmUpBatchSize();
+    }
+
+    /**
+     * Fraction of users, from 0 to 1, that must be warmed up before the pools are ready. Zero means ready at once.
+     *
+     * @return the fraction of users.
+     */
+    public Double getWarmUpCoverage() {
+        return configuration.getWarmUpCoverage();
     }
 
 }
@@ -0,0 +1,211 @@
+package com.biit.usermanager.entity.pool.eviction;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Set of {@code long} keys in insertion order, the primitive counterpart of a {@link java.util.LinkedHashSet}. Keys are
+ * nodes of a doubly linked list stored in arrays, found through an open-addressing table of node indexes.
+ */
+final class LongLinkedSet {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_LOAD_PERCENTAGE = 75;
+    private static final int PERCENTAGE = 100;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 32;
+    private static final int NONE = -1;
+    // Table slots hold the node index plus one. Zero is an empty slot.
+    private static final int EMPTY = 0;
+    // Marks a removed slot, so probing continues over it.
+    private static final int REMOVED = -1;
+
+    private long[] nodeKeys;
+    private int[] previous;
+    // Also links the free nodes.
+    private int[] next;
+    private int first;
+    private int last;
+    private int freeNodes;
+    private int usedNodes;
+    private int size;
+
+    // Twice the capacity of the nodes.
+    private int[] table;
+    private int removedSlots;
+
+    LongLinkedSet() {
+        clear();
+    }
+
+    private static int hash(long key) {
+        final long hash = key * HASH_MULTIPLIER;
+        return (int) (hash ^ (hash >>> HASH_SHIFT));
+    }
+
+    /**
+     * Finds the table slot of a key.
+     *
+     * @param key the key.
+     * @return the slot or -1 if not stored.
+     */
+    private int find(long key) {
+        final int mask = table.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            final int entry = table[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != REMOVED && nodeKeys[entry - 1] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(int node) {
+        final int mask = table.length - 1;
+        int slot = hash(nodeKeys[node]) & mask;
+        while (table[slot] != EMPTY && table[slot] != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == REMOVED) {
+            removedSlots--;
+        }
+        table[slot] = node + 1;
+    }
+
+    /**
+     * Rebuilds the table from the list, without removed slots.
+     */
+    private void rehash() {
+        table = new int[nodeKeys.length * 2];
+        removedSlots = 0;
+        for (int node = first; node != NONE; node = next[node]) {
+            insert(node);
+        }
+    }
+
+    private int allocateNode() {
+        if (freeNodes != NONE) {
+            final int node = freeNodes;
+            freeNodes = next[node];
+            return node;
+        }
+        if (usedNodes == nodeKeys.length) {
+            nodeKeys = Arrays.copyOf(nodeKeys, usedNodes * 2);
+            previous = Arrays.copyOf(previous, usedNodes * 2);
+            next = Arrays.copyOf(next, usedNodes * 2);
+            rehash();
+        }
+        return usedNodes++;
+    }
+
+    boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Adds a key at the end of the order.
+     *
+     * @param key the key.
+     * @return false if it was already stored.
+     */
+    boolean add(long key) {
+        if (find(key) >= 0) {
+            return false;
+        }
+        if ((size + removedSlots + 1) * PERCENTAGE > table.length * MAXIMUM_LOAD_PERCENTAGE) {
+            rehash();
+        }
+        final int node = allocateNode();
+        nodeKeys[node] = key;
+        previous[node] = last;
+        next[node] = NONE;
+        if (last == NONE) {
+            first = node;
+        } else {
+            next[last] = node;
+        }
+        last = node;
+        size++;
+        insert(node);
+        return true;
+    }
+
+    boolean remove(long key) {
+        final int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        final int node = table[slot] - 1;
+        table[slot] = REMOVED;
+        removedSlots++;
+        if (previous[node] == NONE) {
+            first = next[node];
+        } else {
+            next[previous[node]] = next[node];
+        }
+        if (next[node] == NONE) {
+            last = previous[node];
+        } else {
+            previous[next[node]] = previous[node];
+        }
+        next[node] = freeNodes;
+        freeNodes = node;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes the first key of the order. The set must not be empty.
+     *
+     * @return the key.
+     */
+    long pollFirst() {
+        final long key = nodeKeys[first];
+        remove(key);
+        return key;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        nodeKeys = new long[INITIAL_CAPACITY];
+        previous = new int[INITIAL_CAPACITY];
+        next = new int[INITIAL_CAPACITY];
+        first = NONE;
+        last = NONE;
+        freeNodes = NONE;
+        usedNodes = 0;
+        size = 0;
+        table = new int[INITIAL_CAPACITY * 2];
+        removedSlots = 0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.biit.usermanager.entity.pool.eviction;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link SegmentedLru} specialized for {@code long} keys. Segments are {@link LongLinkedSet}s, so recording a read or a
+ * write allocates nothing.
+ */
+public class LongSegmentedLru extends SegmentedLru<Long> {
+
+    private static final int PROTECTED_PERCENTAGE = 80;
+    private static final int PERCENTAGE = 100;
+
+    private final LongSupplier maximumSize;
+    // Iteration order is least recently used first.
+    private final LongLinkedSet probation;
+    private final LongLinkedSet protectedSegment;
+
+    /**
+     * Creates the policy.
+     *
+     * @param maximumSize maximum number of keys. Zero or negative means no limit.
+     */
+    public LongSegmentedLru(LongSupplier maximumSize) {
+        super(maximumSize);
+        this.maximumSize = maximumSize;
+        this.probation = new LongLinkedSet();
+        this.protectedSegment = new LongLinkedSet();
+    }
+
+    /**
+     * A stored key has been read.
+     *
+     * @param key the key.
+     */
+    public synchronized void recordAccess(long key) {
+        if (protectedSegment.remove(key)) {
+            protectedSegment.add(key);
+        } else if (probation.remove(key)) {
+            protectedSegment.add(key);
+            final long maximum = maximumSize.getAsLong();
+            final long protectedMaximum = Math.max(1, maximum * PROTECTED_PERCENTAGE / PERCENTAGE);
+            if (maximum > 0 && protectedSegment.size() > protectedMaximum) {
+                // Demote the least recently used protected key.
+                probation.add(protectedSegment.pollFirst());
+            }
+        }
+    }
+
+    @Override
+    public void recordAccess(Long key) {
+        if (key != null) {
+            recordAccess(key.longValue());
+        }
+    }
+
+    /**
+     * A key has been stored.
+     *
+     * @param key the key.
+     * @return the keys that must be evicted to keep the maximum size.
+     */
+    public synchronized List<Long> recordWrite(long key) {
+        if (probation.contains(key) || protectedSegment.contains(key)) {
+            recordAccess(key);
+            return Collections.emptyList();
+        }
+        probation.add(key);
+        return trim();
+    }
+
+    @Override
+    public List<Long> recordWrite(Long key) {
+        return key != null ? recordWrite(key.longValue()) : Collections.<Long>emptyList();
+    }
+
+    @Override
+    public synchronized List<Long> trim() {
+        final long maximum = maximumSize.getAsLong();
+        if (maximum <= 0 || size() <= maximum) {
+            return Collections.emptyList();
+        }
+        final List<Long> victims = new ArrayList<>();
+        while (size() > maximum) {
+            victims.add(probation.isEmpty() ? protectedSegment.pollFirst() : probation.pollFirst());
+        }
+        return victims;
+    }
+
+    public synchronized void remove(long key) {
+        if (!probation.remove(key)) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    @Override
+    public void remove(Long key) {
+        if (key != null) {
+            remove(key.longValue());
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+    }
+}
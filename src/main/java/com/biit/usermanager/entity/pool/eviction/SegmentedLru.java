@@ -0,0 +1,132 @@
+package com.biit.usermanager.entity.pool.eviction;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Segmented LRU eviction policy. New keys enter a probation segment and are promoted to a protected segment when they
+ * are read again. Victims are always taken from the least recently used side of the probation segment, so a burst of
+ * keys that are used only once (i.e. a scan) cannot displace the keys that are frequently used.
+ *
+ * @param <Key> the key type.
+ */
+public class SegmentedLru<Key> {
+
+    private static final int PROTECTED_PERCENTAGE = 80;
+    private static final int PERCENTAGE = 100;
+
+    private final LongSupplier maximumSize;
+    // Iteration order is least recently used first.
+    private final LinkedHashSet<Key> probation;
+    private final LinkedHashSet<Key> protectedSegment;
+
+    /**
+     * Creates the policy.
+     *
+     * @param maximumSize maximum number of keys. Zero or negative means no limit.
+     */
+    public SegmentedLru(LongSupplier maximumSize) {
+        this.maximumSize = maximumSize;
+        this.probation = new LinkedHashSet<>();
+        this.protectedSegment = new LinkedHashSet<>();
+    }
+
+    /**
+     * A stored key has been read.
+     *
+     * @param key the key.
+     */
+    public synchronized void recordAccess(Key key) {
+        if (protectedSegment.remove(key)) {
+            protectedSegment.add(key);
+        } else if (probation.remove(key)) {
+            protectedSegment.add(key);
+            final long maximum = maximumSize.getAsLong();
+            final long protectedMaximum = Math.max(1, maximum * PROTECTED_PERCENTAGE / PERCENTAGE);
+            if (maximum > 0 && protectedSegment.size() > protectedMaximum) {
+                // Demote the least recently used protected key.
+                final Iterator<Key> eldest = protectedSegment.iterator();
+                probation.add(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * A key has been stored.
+     *
+     * @param key the key.
+     * @return the keys that must be evicted to keep the maximum size.
+     */
+    public synchronized List<Key> recordWrite(Key key) {
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        if (probation.contains(key) || protectedSegment.contains(key)) {
+            recordAccess(key);
+            return Collections.emptyList();
+        }
+        probation.add(key);
+        return trim();
+    }
+
+    /**
+     * Removes keys until the maximum size is satisfied, i.e. after the maximum size has been reduced.
+     *
+     * @return the keys that must be evicted.
+     */
+    public synchronized List<Key> trim() {
+        final long maximum = maximumSize.getAsLong();
+        if (maximum <= 0 || size() <= maximum) {
+            return Collections.emptyList();
+        }
+        final List<Key> victims = new ArrayList<>();
+        while (size() > maximum) {
+            final Iterator<Key> eldest = probation.isEmpty() ? protectedSegment.iterator() : probation.iterator();
+            victims.add(eldest.next());
+            eldest.remove();
+        }
+        return victims;
+    }
+
+    public synchronized void remove(Key key) {
+        if (!probation.remove(key)) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+    }
+}
@@ -0,0 +1,194 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the last write time of a set of keys ordered by deadline. All keys of a queue share the same expiration time,
+ * therefore the write order is also the expiration order: expired keys are always at the head of the queue and can be
+ * retrieved without visiting the ones that are still alive.
+ * <p>
+ * Keys written with a time older than the last one, i.e. restored from a snapshot, break this order. They are also
+ * kept in a queue ordered by time, so they expire on time too.
+ *
+ * @param <Key> the key type.
+ */
+public class ExpirationQueue<Key> {
+
+    private final LongSupplier expirationTime;
+    // Insertion order is the write order. A touched key is moved to the tail.
+    private final LinkedHashMap<Key, Long> timeByKey;
+    // Keys written with a time older than the newest one. Entries of keys written again or removed are discarded when
+    // polled.
+    private final PriorityQueue<TimedKey<Key>> olderKeys;
+    private long newestTime = Long.MIN_VALUE;
+
+    public ExpirationQueue(LongSupplier expirationTime) {
+        this.expirationTime = expirationTime;
+        this.timeByKey = new LinkedHashMap<>();
+        this.olderKeys = new PriorityQueue<>(Comparator.comparingLong(TimedKey::getTime));
+    }
+
+    /**
+     * Sets the write time of a key to now.
+     *
+     * @param key the key.
+     */
+    public void touch(Key key) {
+        touch(key, System.currentTimeMillis());
+    }
+
+    /**
+     * Sets the write time of a key and moves it to the tail of the queue.
+     *
+     * @param key  the key.
+     * @param time the write time.
+     */
+    public synchronized void touch(Key key, long time) {
+        if (key != null) {
+            timeByKey.remove(key);
+            timeByKey.put(key, time);
+            if (time < newestTime) {
+                olderKeys.add(new TimedKey<>(key, time));
+            } else {
+                newestTime = time;
+            }
+        }
+    }
+
+    public synchronized Long getTime(Key key) {
+        return timeByKey.get(key);
+    }
+
+    public synchronized boolean contains(Key key) {
+        return timeByKey.containsKey(key);
+    }
+
+    /**
+     * Checks if a key has been stored more time than the expiration time.
+     *
+     * @param key the key to check.
+     * @param now current time.
+     * @return true if the key exists and has expired.
+     */
+    public synchronized boolean isExpired(Key key, long now) {
+        final Long time = timeByKey.get(key);
+        return time != null && (now - time) > expirationTime.getAsLong();
+    }
+
+    public synchronized Long remove(Key key) {
+        if (key == null) {
+            return null;
+        }
+        return timeByKey.remove(key);
+    }
+
+    /**
+     * Removes from the queue all keys that have expired. Only the expired keys and the first alive one are visited.
+     *
+     * @param now current time.
+     * @return the expired keys, in expiration order.
+     */
+    public synchronized List<Key> pollExpired(long now) {
+        List<Key> expired = null;
+        final long expiration = expirationTime.getAsLong();
+        final Iterator<Map.Entry<Key, Long>> iterator = timeByKey.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Key, Long> head = iterator.next();
+            if ((now - head.getValue()) <= expiration) {
+                break;
+            }
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(head.getKey());
+            iterator.remove();
+        }
+        while (!olderKeys.isEmpty() && (now - olderKeys.peek().getTime()) > expiration) {
+            final TimedKey<Key> older = olderKeys.poll();
+            if (timeByKey.remove(older.getKey(), older.getTime())) {
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(older.getKey());
+            }
+        }
+        return expired == null ? Collections.<Key>emptyList() : expired;
+    }
+
+    /**
+     * Removes the key with the oldest write time.
+     *
+     * @return the removed key or null if the queue is empty.
+     */
+    public synchronized Key pollEldest() {
+        final Iterator<Key> iterator = timeByKey.keySet().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        final Key eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    public synchronized int size() {
+        return timeByKey.size();
+    }
+
+    public synchronized void clear() {
+        timeByKey.clear();
+        olderKeys.clear();
+        newestTime = Long.MIN_VALUE;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime.getAsLong();
+    }
+
+    private static final class TimedKey<Key> {
+        private final Key key;
+        private final long time;
+
+        private TimedKey(Key key, long time) {
+            this.key = key;
+            this.time = time;
+        }
+
+        private Key getKey() {
+            return key;
+        }
+
+        private long getTime() {
+            return time;
+        }
+    }
+}
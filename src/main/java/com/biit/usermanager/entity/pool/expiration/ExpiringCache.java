@@ -0,0 +1,147 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Map whose entries are discarded when they have not been written during the expiration time, and that optionally
+ * limits its number of entries.
+ *
+ * @param <Key>   the key type.
+ * @param <Value> the value type.
+ */
+public interface ExpiringCache<Key, Value> {
+
+    /**
+     * Receives the entries of the map with their write time.
+     *
+     * @param <Key>   the key type.
+     * @param <Value> the value type.
+     */
+    interface EntryVisitor<Key, Value> {
+        void visit(Key key, Value value, long writeTime);
+    }
+
+    /**
+     * Receives the entries discarded by the map because they have expired or have been evicted.
+     *
+     * @param <Key>   the key type.
+     * @param <Value> the value type.
+     */
+    interface RemovalListener<Key, Value> {
+        void onRemoval(Key key, Value value);
+    }
+
+    /**
+     * Gets the value of a key if it has not expired.
+     *
+     * @param key the key.
+     * @return the value or null if not stored or expired.
+     */
+    Value get(Key key);
+
+    /**
+     * Stores a value and updates its write time.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    void put(Key key, Value value);
+
+    /**
+     * Stores a value written at a given time, i.e. restored from a snapshot. It expires when that time is older than
+     * the expiration time.
+     *
+     * @param key       the key.
+     * @param value     the value.
+     * @param writeTime the time the value was obtained.
+     */
+    void put(Key key, Value value, long writeTime);
+
+    /**
+     * Replaces the value of a stored key by a new version, i.e. a set without some items. The write time is kept and
+     * neither a write nor an access is recorded, so the entry expires and is evicted as if it had not been changed.
+     *
+     * @param key    the key.
+     * @param update gets the new version from the stored value. Must not return null.
+     * @return the new value or null if the key is not stored or has expired.
+     */
+    Value update(Key key, UnaryOperator<Value> update);
+
+    Value remove(Key key);
+
+    boolean containsKey(Key key);
+
+    /**
+     * Copy of the stored keys, that can be modified while iterating.
+     *
+     * @return a set of keys.
+     */
+    Set<Key> keySet();
+
+    /**
+     * Copy of the stored values, that can be modified while iterating.
+     *
+     * @return the values.
+     */
+    Collection<Value> values();
+
+    /**
+     * Visits the entries that have not expired, without counting them as accesses.
+     *
+     * @param visitor receives each entry and its write time.
+     */
+    void forEach(EntryVisitor<Key, Value> visitor);
+
+    int size();
+
+    void clear();
+
+    /**
+     * Removes all entries that have expired.
+     *
+     * @param now current time.
+     */
+    void expire(long now);
+
+    /**
+     * Removes the entries that have expired and evicts the ones over the maximum size. Used when the expiration time or
+     * the maximum size change.
+     */
+    void applyLimits();
+
+    CacheMetrics getMetrics();
+
+    /**
+     * Sets who is told about the entries that expire or are evicted, i.e. to clean an index of the map. Entries that
+     * are removed, replaced or cleared are not reported. The listener is called holding the lock of the map.
+     *
+     * @param listener the listener, or null for none.
+     */
+    void setRemovalListener(RemovalListener<Key, Value> listener);
+}
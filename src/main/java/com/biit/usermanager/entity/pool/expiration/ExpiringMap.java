@@ -0,0 +1,279 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.eviction.SegmentedLru;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Map whose entries are discarded when they have not been written during the expiration time. Lookups are a single
+ * hash access; expired entries are purged from an {@link ExpirationQueue}, so each expiration is paid only once.
+ * Optionally, the number of entries is limited and the less used ones are evicted following a {@link SegmentedLru}
+ * policy.
+ *
+ * @param <Key>   the key type.
+ * @param <Value> the value type.
+ */
+public class ExpiringMap<Key, Value> implements ExpiringCache<Key, Value> {
+
+    private final ExpirationQueue<Key> expiration;
+    private final SegmentedLru<Key> usage;
+    private final Map<Key, Value> values;
+    private final CacheMetrics metrics;
+    private RemovalListener<Key, Value> removalListener;
+
+    public ExpiringMap(LongSupplier expirationTime) {
+        this(expirationTime, () -> 0);
+    }
+
+    /**
+     * Creates a map with a limited size.
+     *
+     * @param expirationTime time in milliseconds that an entry is valid.
+     * @param maximumSize    maximum number of entries. Zero or negative means no limit.
+     */
+    public ExpiringMap(LongSupplier expirationTime, LongSupplier maximumSize) {
+        this(expirationTime, maximumSize, new CacheMetrics());
+    }
+
+    /**
+     * Creates a map with a limited size that reports its usage.
+     *
+     * @param expirationTime time in milliseconds that an entry is valid.
+     * @param maximumSize    maximum number of entries. Zero or negative means no limit.
+     * @param metrics        where hits, misses, expirations, removals and evictions are counted.
+     */
+    public ExpiringMap(LongSupplier expirationTime, LongSupplier maximumSize, CacheMetrics metrics) {
+        this.expiration = new ExpirationQueue<>(expirationTime);
+        this.usage = new SegmentedLru<>(maximumSize);
+        this.values = new HashMap<>();
+        this.metrics = metrics;
+        metrics.setSize(this::size);
+    }
+
+    @Override
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public synchronized void setRemovalListener(RemovalListener<Key, Value> listener) {
+        this.removalListener = listener;
+    }
+
+    /**
+     * Gets the value of a key if it has not expired.
+     *
+     * @param key the key.
+     * @return the value or null if not stored or expired.
+     */
+    @Override
+    public synchronized Value get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        expire(now);
+        if (expiration.isExpired(key, now)) {
+            notifyRemoval(key, discard(key));
+            metrics.recordExpirations(1);
+            metrics.recordMiss();
+            return null;
+        }
+        final Value value = values.get(key);
+        if (value != null) {
+            usage.recordAccess(key);
+            metrics.recordHit();
+        } else {
+            metrics.recordMiss();
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value and updates its write time.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    @Override
+    public void put(Key key, Value value) {
+        put(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores a value written at a given time, i.e. restored from a snapshot. It expires when that time is older than
+     * the expiration time.
+     *
+     * @param key       the key.
+     * @param value     the value.
+     * @param writeTime the time the value was obtained.
+     */
+    @Override
+    public synchronized void put(Key key, Value value, long writeTime) {
+        if (key != null && value != null) {
+            expire(System.currentTimeMillis());
+            values.put(key, value);
+            expiration.touch(key, writeTime);
+            final Collection<Key> victims = usage.recordWrite(key);
+            for (final Key victim : victims) {
+                notifyRemoval(victim, discard(victim));
+            }
+            metrics.recordEvictions(victims.size());
+        }
+    }
+
+    @Override
+    public synchronized Value update(Key key, UnaryOperator<Value> update) {
+        if (key == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        expire(now);
+        final Value current = values.get(key);
+        if (current == null || expiration.isExpired(key, now)) {
+            return null;
+        }
+        final Value updated = Objects.requireNonNull(update.apply(current), "Null values are not allowed.");
+        values.put(key, updated);
+        return updated;
+    }
+
+    @Override
+    public synchronized Value remove(Key key) {
+        final Value removed = discard(key);
+        if (removed != null) {
+            metrics.recordRemoval();
+        }
+        return removed;
+    }
+
+    private Value discard(Key key) {
+        if (key == null) {
+            return null;
+        }
+        expiration.remove(key);
+        usage.remove(key);
+        return values.remove(key);
+    }
+
+    private void notifyRemoval(Key key, Value value) {
+        if (removalListener != null && value != null) {
+            removalListener.onRemoval(key, value);
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(Key key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Copy of the stored keys, that can be modified while iterating.
+     *
+     * @return a set of keys.
+     */
+    @Override
+    public synchronized Set<Key> keySet() {
+        expire(System.currentTimeMillis());
+        return new HashSet<>(values.keySet());
+    }
+
+    /**
+     * Copy of the stored values, that can be modified while iterating.
+     *
+     * @return the values.
+     */
+    @Override
+    public synchronized Collection<Value> values() {
+        expire(System.currentTimeMillis());
+        return new ArrayList<>(values.values());
+    }
+
+    /**
+     * Visits the entries that have not expired, without counting them as accesses.
+     *
+     * @param visitor receives each entry and its write time.
+     */
+    @Override
+    public synchronized void forEach(EntryVisitor<Key, Value> visitor) {
+        expire(System.currentTimeMillis());
+        for (final Map.Entry<Key, Value> entry : values.entrySet()) {
+            final Long writeTime = expiration.getTime(entry.getKey());
+            if (writeTime != null) {
+                visitor.visit(entry.getKey(), entry.getValue(), writeTime);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return values.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        expiration.clear();
+        usage.clear();
+        values.clear();
+    }
+
+    /**
+     * Removes the entries that have expired and evicts the ones over the maximum size. Used when the expiration time or
+     * the maximum size change.
+     */
+    @Override
+    public synchronized void applyLimits() {
+        expire(System.currentTimeMillis());
+        final Collection<Key> victims = usage.trim();
+        for (final Key victim : victims) {
+            notifyRemoval(victim, discard(victim));
+        }
+        metrics.recordEvictions(victims.size());
+    }
+
+    /**
+     * Removes all entries that have expired.
+     *
+     * @param now current time.
+     */
+    @Override
+    public synchronized void expire(long now) {
+        final Collection<Key> expired = expiration.pollExpired(now);
+        for (final Key key : expired) {
+            usage.remove(key);
+            notifyRemoval(key, values.remove(key));
+        }
+        metrics.recordExpirations(expired.size());
+    }
+}
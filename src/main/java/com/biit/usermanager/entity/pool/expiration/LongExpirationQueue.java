@@ -0,0 +1,234 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link ExpirationQueue} specialized for {@code long} keys. Keys and write times are stored in parallel arrays of an
+ * open-addressing table and the order in a {@link LongWriteOrder}, so writing a key allocates nothing.
+ */
+public class LongExpirationQueue extends ExpirationQueue<Long> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_LOAD_PERCENTAGE = 75;
+    private static final int PERCENTAGE = 100;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 32;
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    // Removed slots are kept, so probing continues over them.
+    private static final byte REMOVED = 2;
+
+    private final LongWriteOrder order = new LongWriteOrder(this::isCurrent);
+    private final LongConsumer discard = this::discard;
+    private final LongConsumer expire = this::expire;
+
+    private long[] keys;
+    private long[] times;
+    private byte[] states;
+    private int size;
+    private int removedSlots;
+    // Keys removed by the current poll.
+    private long discarded;
+    private List<Long> expired;
+
+    public LongExpirationQueue(LongSupplier expirationTime) {
+        super(expirationTime);
+        initialize();
+    }
+
+    private void initialize() {
+        keys = new long[INITIAL_CAPACITY];
+        times = new long[INITIAL_CAPACITY];
+        states = new byte[INITIAL_CAPACITY];
+        size = 0;
+        removedSlots = 0;
+        order.clear();
+    }
+
+    private static int hash(long key) {
+        final long hash = key * HASH_MULTIPLIER;
+        return (int) (hash ^ (hash >>> HASH_SHIFT));
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key the key.
+     * @return the slot or -1 if not stored.
+     */
+    private int find(long key) {
+        final int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (states[slot] == EMPTY) {
+                return -1;
+            }
+            if (states[slot] == USED && keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private int insertionSlot(long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (states[slot] == USED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the table without removed slots, doubling its capacity if it is more than half full.
+     */
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final long[] oldTimes = times;
+        final byte[] oldStates = states;
+        final int capacity = size * 2 >= oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+        keys = new long[capacity];
+        times = new long[capacity];
+        states = new byte[capacity];
+        removedSlots = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] == USED) {
+                final int slot = insertionSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                times[slot] = oldTimes[i];
+                states[slot] = USED;
+            }
+        }
+    }
+
+    private void removeSlot(int slot) {
+        states[slot] = REMOVED;
+        size--;
+        removedSlots++;
+    }
+
+    private boolean isCurrent(long key, long time) {
+        final int slot = find(key);
+        return slot >= 0 && times[slot] == time;
+    }
+
+    private void discard(long key) {
+        removeSlot(find(key));
+        discarded = key;
+    }
+
+    private void expire(long key) {
+        discard(key);
+        if (expired == null) {
+            expired = new ArrayList<>();
+        }
+        expired.add(key);
+    }
+
+    /**
+     * Sets the write time of a key.
+     *
+     * @param key  the key.
+     * @param time the write time.
+     */
+    public synchronized void touch(long key, long time) {
+        int slot = find(key);
+        if (slot < 0) {
+            if ((size + removedSlots + 1) * PERCENTAGE > keys.length * MAXIMUM_LOAD_PERCENTAGE) {
+                rehash();
+            }
+            slot = insertionSlot(key);
+            if (states[slot] == REMOVED) {
+                removedSlots--;
+            }
+            keys[slot] = key;
+            states[slot] = USED;
+            size++;
+        } else if (times[slot] == time) {
+            return;
+        }
+        times[slot] = time;
+        order.append(key, time);
+    }
+
+    @Override
+    public void touch(Long key, long time) {
+        if (key != null) {
+            touch(key.longValue(), time);
+        }
+    }
+
+    @Override
+    public synchronized Long getTime(Long key) {
+        final int slot = key != null ? find(key) : -1;
+        return slot >= 0 ? times[slot] : null;
+    }
+
+    @Override
+    public synchronized boolean contains(Long key) {
+        return key != null && find(key) >= 0;
+    }
+
+    @Override
+    public synchronized boolean isExpired(Long key, long now) {
+        final int slot = key != null ? find(key) : -1;
+        return slot >= 0 && (now - times[slot]) > getExpirationTime();
+    }
+
+    @Override
+    public synchronized Long remove(Long key) {
+        final int slot = key != null ? find(key) : -1;
+        if (slot < 0) {
+            return null;
+        }
+        removeSlot(slot);
+        return times[slot];
+    }
+
+    @Override
+    public synchronized List<Long> pollExpired(long now) {
+        order.pollExpired(now, getExpirationTime(), expire);
+        final List<Long> expiredKeys = expired;
+        expired = null;
+        return expiredKeys == null ? Collections.<Long>emptyList() : expiredKeys;
+    }
+
+    @Override
+    public synchronized Long pollEldest() {
+        return order.pollEldest(discard) ? discarded : null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        initialize();
+    }
+}
@@ -0,0 +1,402 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.eviction.LongSegmentedLru;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ExpiringCache} specialized for {@code long} keys. Keys, values and write times are stored in parallel arrays
+ * of an open-addressing table, so an entry costs a few array slots instead of several objects, and reading or writing
+ * with a primitive key allocates nothing.
+ * <p>
+ * The write order is kept in a {@link LongWriteOrder}, that is also the expiration order. Entries written with an older
+ * time, i.e. restored from a snapshot, expire on time too. When the map is full, the less used entries are evicted
+ * following a {@link LongSegmentedLru} policy, as in {@link ExpiringMap}.
+ *
+ * @param <Value> the value type.
+ */
+public class LongExpiringMap<Value> implements ExpiringCache<Long, Value> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_LOAD_PERCENTAGE = 75;
+    private static final int PERCENTAGE = 100;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 32;
+    // Marks a removed slot, so probing continues over it.
+    private static final Object REMOVED = new Object();
+
+    private final LongSupplier expirationTime;
+    private final LongSupplier maximumSize;
+    private final CacheMetrics metrics;
+    private final LongWriteOrder order = new LongWriteOrder(this::isCurrent);
+    private final LongSegmentedLru usage;
+    private final LongConsumer discard = this::discard;
+    private RemovalListener<Long, Value> removalListener;
+
+    private long[] keys;
+    // Null for empty slots.
+    private Object[] values;
+    private long[] writeTimes;
+    private int size;
+    private int removedSlots;
+
+    public LongExpiringMap(LongSupplier expirationTime) {
+        this(expirationTime, () -> 0);
+    }
+
+    public LongExpiringMap(LongSupplier expirationTime, LongSupplier maximumSize) {
+        this(expirationTime, maximumSize, new CacheMetrics());
+    }
+
+    /**
+     * Creates a map with a limited size that reports its usage.
+     *
+     * @param expirationTime time in milliseconds that an entry is valid.
+     * @param maximumSize    maximum number of entries. Zero or negative means no limit.
+     * @param metrics        where hits, misses, expirations, removals and evictions are counted.
+     */
+    public LongExpiringMap(LongSupplier expirationTime, LongSupplier maximumSize, CacheMetrics metrics) {
+        this.expirationTime = expirationTime;
+        this.maximumSize = maximumSize;
+        this.metrics = metrics;
+        this.usage = new LongSegmentedLru(maximumSize);
+        initialize();
+        metrics.setSize(this::size);
+    }
+
+    private void initialize() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        writeTimes = new long[INITIAL_CAPACITY];
+        size = 0;
+        removedSlots = 0;
+        order.clear();
+        usage.clear();
+    }
+
+    @Override
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public synchronized void setRemovalListener(RemovalListener<Long, Value> listener) {
+        this.removalListener = listener;
+    }
+
+    private static int hash(long key) {
+        final long hash = key * HASH_MULTIPLIER;
+        return (int) (hash ^ (hash >>> HASH_SHIFT));
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key the key.
+     * @return the slot or -1 if not stored.
+     */
+    private int find(long key) {
+        final int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            final Object value = values[slot];
+            if (value == null) {
+                return -1;
+            }
+            if (value != REMOVED && keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean isExpired(int slot, long now) {
+        return (now - writeTimes[slot]) > expirationTime.getAsLong();
+    }
+
+    /**
+     * Gets the value of a key if it has not expired.
+     *
+     * @param key the key.
+     * @return the value or null if not stored or expired.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Value get(long key) {
+        final long now = System.currentTimeMillis();
+        expire(now);
+        final int slot = find(key);
+        if (slot < 0) {
+            metrics.recordMiss();
+            return null;
+        }
+        if (isExpired(slot, now)) {
+            notifyRemoval(key, removeSlot(slot));
+            metrics.recordExpirations(1);
+            metrics.recordMiss();
+            return null;
+        }
+        usage.recordAccess(key);
+        metrics.recordHit();
+        return (Value) values[slot];
+    }
+
+    @Override
+    public Value get(Long key) {
+        return key != null ? get(key.longValue()) : null;
+    }
+
+    public void put(long key, Value value) {
+        put(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores a value written at a given time.
+     *
+     * @param key       the key.
+     * @param value     the value.
+     * @param writeTime the time the value was obtained.
+     */
+    public synchronized void put(long key, Value value, long writeTime) {
+        if (value == null) {
+            return;
+        }
+        expire(System.currentTimeMillis());
+        int slot = find(key);
+        final boolean stored = slot >= 0;
+        if (!stored) {
+            if ((size + removedSlots + 1) * PERCENTAGE > keys.length * MAXIMUM_LOAD_PERCENTAGE) {
+                rehash();
+            }
+            slot = insertionSlot(key);
+            if (values[slot] == REMOVED) {
+                removedSlots--;
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        // With the same write time, the record in the write order is still valid.
+        if (!stored || writeTimes[slot] != writeTime) {
+            writeTimes[slot] = writeTime;
+            order.append(key, writeTime);
+        }
+        evict(usage.recordWrite(key));
+    }
+
+    @Override
+    public void put(Long key, Value value) {
+        if (key != null) {
+            put(key.longValue(), value);
+        }
+    }
+
+    @Override
+    public void put(Long key, Value value, long writeTime) {
+        if (key != null) {
+            put(key.longValue(), value, writeTime);
+        }
+    }
+
+    private int insertionSlot(long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && values[slot] != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the table without removed slots, doubling its capacity if it is more than half full.
+     */
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final long[] oldTimes = writeTimes;
+        final int capacity = size * 2 >= oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        writeTimes = new long[capacity];
+        removedSlots = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null && oldValues[i] != REMOVED) {
+                final int slot = insertionSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                writeTimes[slot] = oldTimes[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value removeSlot(int slot) {
+        final Value removed = (Value) values[slot];
+        usage.remove(keys[slot]);
+        values[slot] = REMOVED;
+        size--;
+        removedSlots++;
+        return removed;
+    }
+
+    /**
+     * Replaces the value of a stored key, keeping its write time.
+     *
+     * @param key    the key.
+     * @param update gets the new version from the stored value. Must not return null.
+     * @return the new value or null if the key is not stored or has expired.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Value update(long key, UnaryOperator<Value> update) {
+        final long now = System.currentTimeMillis();
+        expire(now);
+        final int slot = find(key);
+        if (slot < 0 || isExpired(slot, now)) {
+            return null;
+        }
+        final Value updated = Objects.requireNonNull(update.apply((Value) values[slot]), "Null values are not allowed.");
+        values[slot] = updated;
+        return updated;
+    }
+
+    @Override
+    public Value update(Long key, UnaryOperator<Value> update) {
+        return key != null ? update(key.longValue(), update) : null;
+    }
+
+    public synchronized Value remove(long key) {
+        final int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        metrics.recordRemoval();
+        return removeSlot(slot);
+    }
+
+    @Override
+    public Value remove(Long key) {
+        return key != null ? remove(key.longValue()) : null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return key != null && containsKey(key.longValue());
+    }
+
+    private boolean isCurrent(long key, long writeTime) {
+        final int slot = find(key);
+        return slot >= 0 && writeTimes[slot] == writeTime;
+    }
+
+    private void discard(long key) {
+        notifyRemoval(key, removeSlot(find(key)));
+    }
+
+    private void notifyRemoval(long key, Value value) {
+        if (removalListener != null) {
+            removalListener.onRemoval(key, value);
+        }
+    }
+
+    @Override
+    public synchronized void expire(long now) {
+        metrics.recordExpirations(order.pollExpired(now, expirationTime.getAsLong(), discard));
+    }
+
+    /**
+     * Removes the entries chosen by the eviction policy.
+     *
+     * @param victims the keys of the entries.
+     */
+    private void evict(List<Long> victims) {
+        for (int i = 0; i < victims.size(); i++) {
+            discard(victims.get(i));
+        }
+        metrics.recordEvictions(victims.size());
+    }
+
+    @Override
+    public synchronized void applyLimits() {
+        expire(System.currentTimeMillis());
+        evict(usage.trim());
+    }
+
+    @Override
+    public synchronized Set<Long> keySet() {
+        expire(System.currentTimeMillis());
+        final Set<Long> keySet = new HashSet<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null && values[i] != REMOVED) {
+                keySet.add(keys[i]);
+            }
+        }
+        return keySet;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Collection<Value> values() {
+        expire(System.currentTimeMillis());
+        final Collection<Value> valueList = new ArrayList<>(size);
+        for (final Object value : values) {
+            if (value != null && value != REMOVED) {
+                valueList.add((Value) value);
+            }
+        }
+        return valueList;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void forEach(EntryVisitor<Long, Value> visitor) {
+        final long now = System.currentTimeMillis();
+        expire(now);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null && values[i] != REMOVED && !isExpired(i, now)) {
+                visitor.visit(keys[i], (Value) values[i], writeTimes[i]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        initialize();
+    }
+}
@@ -0,0 +1,259 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.function.LongConsumer;
+
+/**
+ * Write order of a table with {@code long} keys, that is also its expiration and eviction order. Records of keys and
+ * times are kept in a ring, in write order. Records written with a time older than the newest one, i.e. restored from
+ * a snapshot, break this order, so they are also kept in a heap ordered by time.
+ * <p>
+ * Records are never updated. The table tells which ones are still the last write of their key, and the others are
+ * discarded when they are polled or when there is no space left. Tables do not append a record equal to the current one
+ * of its key, so a key written many times with the same time cannot fill the ring.
+ */
+final class LongWriteOrder {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Tells if a record is the last write of its key.
+     */
+    interface Records {
+        boolean isCurrent(long key, long time);
+    }
+
+    private final Records records;
+
+    // Ring in write order.
+    private long[] ringKeys;
+    private long[] ringTimes;
+    private int ringHead;
+    private int ringSize;
+
+    // Binary min-heap by time of the records older than the newest one.
+    private long[] heapKeys;
+    private long[] heapTimes;
+    private int heapSize;
+    private long newestTime;
+
+    LongWriteOrder(Records records) {
+        this.records = records;
+        clear();
+    }
+
+    void append(long key, long time) {
+        if (ringSize == ringKeys.length) {
+            compactRing();
+        }
+        final int tail = (ringHead + ringSize) % ringKeys.length;
+        ringKeys[tail] = key;
+        ringTimes[tail] = time;
+        ringSize++;
+        if (time < newestTime) {
+            pushHeap(key, time);
+        } else {
+            newestTime = time;
+        }
+    }
+
+    /**
+     * Polls the records that have expired.
+     *
+     * @param now        current time.
+     * @param expiration expiration time.
+     * @param expired    called with the key of each current record polled. Must remove the entry from the table.
+     * @return the number of current records polled.
+     */
+    int pollExpired(long now, long expiration, LongConsumer expired) {
+        int polled = 0;
+        while (ringSize > 0 && (now - ringTimes[ringHead]) > expiration) {
+            final long key = ringKeys[ringHead];
+            final long time = ringTimes[ringHead];
+            pollRing();
+            if (records.isCurrent(key, time)) {
+                expired.accept(key);
+                polled++;
+            }
+        }
+        while (heapSize > 0 && (now - heapTimes[0]) > expiration) {
+            final long key = heapKeys[0];
+            final long time = heapTimes[0];
+            pollHeap();
+            if (records.isCurrent(key, time)) {
+                expired.accept(key);
+                polled++;
+            }
+        }
+        return polled;
+    }
+
+    /**
+     * Polls the current record written first.
+     *
+     * @param eldest called with its key. Must remove the entry from the table.
+     * @return false if there are no records left.
+     */
+    boolean pollEldest(LongConsumer eldest) {
+        while (ringSize > 0) {
+            final long key = ringKeys[ringHead];
+            final long time = ringTimes[ringHead];
+            pollRing();
+            if (records.isCurrent(key, time)) {
+                eldest.accept(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        ringKeys = new long[INITIAL_CAPACITY];
+        ringTimes = new long[INITIAL_CAPACITY];
+        ringHead = 0;
+        ringSize = 0;
+        heapKeys = new long[INITIAL_CAPACITY];
+        heapTimes = new long[INITIAL_CAPACITY];
+        heapSize = 0;
+        newestTime = Long.MIN_VALUE;
+    }
+
+    private void pollRing() {
+        ringHead = (ringHead + 1) % ringKeys.length;
+        ringSize--;
+    }
+
+    /**
+     * Drops the records that are not current. The ring grows if at least half of them are.
+     */
+    private void compactRing() {
+        int current = 0;
+        for (int i = 0; i < ringSize; i++) {
+            final int index = (ringHead + i) % ringKeys.length;
+            if (records.isCurrent(ringKeys[index], ringTimes[index])) {
+                current++;
+            }
+        }
+        final int capacity = current * 2 >= ringKeys.length ? ringKeys.length * 2 : ringKeys.length;
+        final long[] compactedKeys = new long[capacity];
+        final long[] compactedTimes = new long[capacity];
+        int compactedSize = 0;
+        for (int i = 0; i < ringSize; i++) {
+            final int index = (ringHead + i) % ringKeys.length;
+            if (records.isCurrent(ringKeys[index], ringTimes[index])) {
+                compactedKeys[compactedSize] = ringKeys[index];
+                compactedTimes[compactedSize] = ringTimes[index];
+                compactedSize++;
+            }
+        }
+        ringKeys = compactedKeys;
+        ringTimes = compactedTimes;
+        ringHead = 0;
+        ringSize = compactedSize;
+    }
+
+    private void pushHeap(long key, long time) {
+        if (heapSize == heapKeys.length) {
+            compactHeap();
+        }
+        heapKeys[heapSize] = key;
+        heapTimes[heapSize] = time;
+        heapSize++;
+        siftUp(heapSize - 1);
+    }
+
+    private void pollHeap() {
+        heapSize--;
+        heapKeys[0] = heapKeys[heapSize];
+        heapTimes[0] = heapTimes[heapSize];
+        siftDown(0);
+    }
+
+    /**
+     * Drops the records that are not current and rebuilds the heap. It grows if at least half of them are.
+     */
+    private void compactHeap() {
+        int current = 0;
+        for (int i = 0; i < heapSize; i++) {
+            if (records.isCurrent(heapKeys[i], heapTimes[i])) {
+                current++;
+            }
+        }
+        final int capacity = current * 2 >= heapKeys.length ? heapKeys.length * 2 : heapKeys.length;
+        final long[] compactedKeys = new long[capacity];
+        final long[] compactedTimes = new long[capacity];
+        int compactedSize = 0;
+        for (int i = 0; i < heapSize; i++) {
+            if (records.isCurrent(heapKeys[i], heapTimes[i])) {
+                compactedKeys[compactedSize] = heapKeys[i];
+                compactedTimes[compactedSize] = heapTimes[i];
+                compactedSize++;
+            }
+        }
+        heapKeys = compactedKeys;
+        heapTimes = compactedTimes;
+        heapSize = compactedSize;
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void siftUp(int index) {
+        int child = index;
+        while (child > 0) {
+            final int parent = (child - 1) / 2;
+            if (heapTimes[parent] <= heapTimes[child]) {
+                return;
+            }
+            swap(parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int parent = index;
+        while (true) {
+            final int left = parent * 2 + 1;
+            if (left >= heapSize) {
+                return;
+            }
+            final int right = left + 1;
+            final int smallest = right < heapSize && heapTimes[right] < heapTimes[left] ? right : left;
+            if (heapTimes[parent] <= heapTimes[smallest]) {
+                return;
+            }
+            swap(parent, smallest);
+            parent = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        final long key = heapKeys[first];
+        final long time = heapTimes[first];
+        heapKeys[first] = heapKeys[second];
+        heapTimes[first] = heapTimes[second];
+        heapKeys[second] = key;
+        heapTimes[second] = time;
+    }
+}
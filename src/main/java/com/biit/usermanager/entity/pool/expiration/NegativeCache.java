@@ -0,0 +1,91 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers for a short time the keys that do not exist in the backend, to avoid querying them again on each request.
+ * If the cache is full, the oldest keys are forgotten first.
+ *
+ * @param <Key> the key type.
+ */
+public class NegativeCache<Key> {
+
+    private final ExpirationQueue<Key> missingKeys;
+    private final LongSupplier maximumSize;
+
+    public NegativeCache(LongSupplier expirationTime) {
+        this(expirationTime, () -> 0);
+    }
+
+    public NegativeCache(LongSupplier expirationTime, LongSupplier maximumSize) {
+        this(new ExpirationQueue<>(expirationTime), maximumSize);
+    }
+
+    /**
+     * Creates a cache that keeps the keys in a given queue, i.e. one specialized for the key type.
+     *
+     * @param missingKeys empty queue with the expiration time of the marks.
+     * @param maximumSize maximum number of keys. Zero or negative means no limit.
+     */
+    public NegativeCache(ExpirationQueue<Key> missingKeys, LongSupplier maximumSize) {
+        this.missingKeys = missingKeys;
+        this.maximumSize = maximumSize;
+    }
+
+    public void add(Key key) {
+        missingKeys.touch(key);
+        final long maximum = maximumSize.getAsLong();
+        while (maximum > 0 && missingKeys.size() > maximum) {
+            missingKeys.pollEldest();
+        }
+    }
+
+    /**
+     * Checks if a key has been marked as missing and the mark has not expired.
+     *
+     * @param key the key.
+     * @return true if the key is known to not exist.
+     */
+    public boolean contains(Key key) {
+        if (key == null) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        missingKeys.pollExpired(now);
+        return missingKeys.contains(key) && !missingKeys.isExpired(key, now);
+    }
+
+    public void remove(Key key) {
+        missingKeys.remove(key);
+    }
+
+    public int size() {
+        return missingKeys.size();
+    }
+
+    public void clear() {
+        missingKeys.clear();
+    }
+}
@@ -0,0 +1,261 @@
+package com.biit.usermanager.entity.pool.hierarchy;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.collection.PersistentSet;
+import com.biit.usermanager.entity.pool.collection.ReverseIndex;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Memberships between users and groups, stored in both directions. The users of a group and the groups of a user are
+ * sets keyed by id, so a membership is added, removed or checked without visiting the set.
+ * <p>
+ * The users of a group are stored only as obtained from the backend, because a partial list would be returned as the
+ * whole group. A change that cannot be applied to the other direction removes it, so both directions never disagree.
+ * Changes are synchronized and applied to both directions at once. Reads do not lock, as the stored sets are never
+ * modified.
+ *
+ * @param <UserId>  the id of the users.
+ * @param <GroupId> the id of the groups.
+ */
+public class MembershipGraph<UserId, GroupId> {
+
+    private final ExpiringCache<GroupId, PersistentSet<IUser<UserId>>> usersByGroup;
+    private final ExpiringCache<UserId, PersistentSet<IGroup<GroupId>>> groupsByUser;
+    // User -> groups whose stored users include it.
+    private final ReverseIndex<UserId, GroupId> groupsWithUser;
+
+    public MembershipGraph(ExpiringCache<GroupId, PersistentSet<IUser<UserId>>> usersByGroup,
+                           ExpiringCache<UserId, PersistentSet<IGroup<GroupId>>> groupsByUser) {
+        this.usersByGroup = usersByGroup;
+        this.groupsByUser = groupsByUser;
+        this.groupsWithUser = new ReverseIndex<>();
+        // Groups whose users expire or are evicted leave the index too.
+        usersByGroup.setRemovalListener(this::removeGroupIndex);
+    }
+
+    /**
+     * Removes a group from the index of the users it includes.
+     *
+     * @param groupId the group.
+     * @param users   its stored users.
+     */
+    private void removeGroupIndex(GroupId groupId, PersistentSet<IUser<UserId>> users) {
+        for (final IUser<UserId> user : users) {
+            groupsWithUser.remove(user.getUniqueId(), groupId);
+        }
+    }
+
+    private static <UserId> PersistentSet<IUser<UserId>> emptyUsers() {
+        return PersistentSet.emptyByKey(IUser::getUniqueId);
+    }
+
+    private static <GroupId> PersistentSet<IGroup<GroupId>> emptyGroups() {
+        return PersistentSet.emptyByKey(IGroup::getUniqueId);
+    }
+
+    public Set<IUser<UserId>> getUsers(GroupId groupId) {
+        return usersByGroup.get(groupId);
+    }
+
+    public Set<IGroup<GroupId>> getGroups(UserId userId) {
+        return groupsByUser.get(userId);
+    }
+
+    /**
+     * Checks if a user is in a group, using the groups of the user or the users of the group.
+     *
+     * @param userId  the user.
+     * @param groupId the group.
+     * @return null if neither the groups of the user nor the users of the group are stored.
+     */
+    public Boolean isInGroup(UserId userId, GroupId groupId) {
+        if (userId == null || groupId == null) {
+            return null;
+        }
+        final PersistentSet<IGroup<GroupId>> groups = groupsByUser.get(userId);
+        if (groups != null) {
+            return groups.getByKey(groupId) != null;
+        }
+        final PersistentSet<IUser<UserId>> users = usersByGroup.get(groupId);
+        if (users != null) {
+            return users.getByKey(userId) != null;
+        }
+        return null;
+    }
+
+    /**
+     * Adds users to a group. The stored groups of these users that do not include the group are outdated and removed.
+     *
+     * @param groupId the group.
+     * @param users   its users.
+     */
+    public synchronized void addUsers(GroupId groupId, Collection<IUser<UserId>> users) {
+        final PersistentSet<IUser<UserId>> current = usersByGroup.get(groupId);
+        PersistentSet<IUser<UserId>> updated = current != null ? current : emptyUsers();
+        for (final IUser<UserId> user : users) {
+            if (user != null && user.getUniqueId() != null) {
+                updated = updated.plus(user);
+                groupsWithUser.add(user.getUniqueId(), groupId);
+                final PersistentSet<IGroup<GroupId>> groups = groupsByUser.get(user.getUniqueId());
+                if (groups != null && groups.getByKey(groupId) == null) {
+                    groupsByUser.remove(user.getUniqueId());
+                }
+            }
+        }
+        usersByGroup.put(groupId, updated);
+    }
+
+    /**
+     * Adds groups to a user, and the user to the stored users of these groups. Sets that were already stored keep their
+     * write time, as the rest of their content has not been obtained again.
+     *
+     * @param user   the user.
+     * @param groups its groups.
+     */
+    public synchronized void addGroups(IUser<UserId> user, Collection<IGroup<GroupId>> groups) {
+        final UserId userId = user.getUniqueId();
+        final List<IGroup<GroupId>> added = new ArrayList<>();
+        for (final IGroup<GroupId> group : groups) {
+            if (group != null && group.getUniqueId() != null) {
+                added.add(group);
+                if (usersByGroup.update(group.getUniqueId(), users -> users.plus(user)) != null) {
+                    groupsWithUser.add(userId, group.getUniqueId());
+                }
+            }
+        }
+        if (groupsByUser.update(userId, current -> current.plusAll(added)) == null) {
+            groupsByUser.put(userId, MembershipGraph.<GroupId>emptyGroups().plusAll(added));
+        }
+    }
+
+    /**
+     * Stores the groups of a user obtained at a given time, i.e. restored from a snapshot. The stored users of these
+     * groups that do not include the user are outdated and removed.
+     *
+     * @param userId    the user.
+     * @param groups    its groups.
+     * @param writeTime the time the groups were obtained.
+     */
+    public synchronized void setGroups(UserId userId, Collection<IGroup<GroupId>> groups, long writeTime) {
+        PersistentSet<IGroup<GroupId>> updated = emptyGroups();
+        for (final IGroup<GroupId> group : groups) {
+            if (group != null && group.getUniqueId() != null) {
+                updated = updated.plus(group);
+                final PersistentSet<IUser<UserId>> users = usersByGroup.get(group.getUniqueId());
+                if (users != null && users.getByKey(userId) == null) {
+                    removeUsers(group.getUniqueId());
+                }
+            }
+        }
+        groupsByUser.put(userId, updated, writeTime);
+    }
+
+    /**
+     * Removes a membership from both directions.
+     *
+     * @param userId  the user.
+     * @param groupId the group.
+     */
+    public synchronized void removeMembership(UserId userId, GroupId groupId) {
+        groupsByUser.update(userId, groups -> groups.minusKey(groupId));
+        usersByGroup.update(groupId, users -> users.minusKey(userId));
+        groupsWithUser.remove(userId, groupId);
+    }
+
+    /**
+     * Removes a user from its groups. Only the groups that include the user are visited.
+     *
+     * @param userId the user.
+     */
+    public synchronized void removeUser(UserId userId) {
+        for (final GroupId groupId : removeGroupsOfUser(userId)) {
+            usersByGroup.update(groupId, users -> users.minusKey(userId));
+        }
+    }
+
+    /**
+     * Removes the stored groups of a user, and the stored users of the groups that include it, i.e. because the user
+     * has changed.
+     *
+     * @param userId the user.
+     */
+    public synchronized void invalidateUser(UserId userId) {
+        for (final GroupId groupId : removeGroupsOfUser(userId)) {
+            removeUsers(groupId);
+        }
+    }
+
+    /**
+     * Removes the stored groups of a user.
+     *
+     * @param userId the user.
+     * @return the ids of the groups that include the user in any direction.
+     */
+    private Set<GroupId> removeGroupsOfUser(UserId userId) {
+        final Set<GroupId> groupIds = new HashSet<>(groupsWithUser.removeValue(userId));
+        final PersistentSet<IGroup<GroupId>> groups = groupsByUser.remove(userId);
+        if (groups != null) {
+            for (final IGroup<GroupId> group : groups) {
+                groupIds.add(group.getUniqueId());
+            }
+        }
+        return groupIds;
+    }
+
+    public synchronized void removeGroups(UserId userId) {
+        groupsByUser.remove(userId);
+    }
+
+    public synchronized void removeUsers(GroupId groupId) {
+        final PersistentSet<IUser<UserId>> users = usersByGroup.remove(groupId);
+        if (users != null) {
+            removeGroupIndex(groupId, users);
+        }
+    }
+
+    /**
+     * Visits the groups of the users that have not expired.
+     *
+     * @param visitor receives each user id, its groups and their write time.
+     */
+    public void forEachGroups(ExpiringCache.EntryVisitor<UserId, Set<IGroup<GroupId>>> visitor) {
+        groupsByUser.forEach(visitor::visit);
+    }
+
+    /**
+     * Removes the entries that exceed the expiration time or the maximum size, and the memberships indexed for them.
+     */
+    public synchronized void applyLimits() {
+        usersByGroup.applyLimits();
+        groupsByUser.applyLimits();
+    }
+}
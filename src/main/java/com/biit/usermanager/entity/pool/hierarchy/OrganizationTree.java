@@ -0,0 +1,225 @@
+package com.biit.usermanager.entity.pool.hierarchy;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parent and child relationships between organizations. Each organization is numbered in pre-order, and stores the
+ * pre-order number of its last descendant. Then, an ancestor test is a comparison of two intervals, and the
+ * descendants of an organization are a consecutive range of the pre-order.
+ * <p>
+ * Changes are synchronized and only invalidate the numbering. It is rebuilt on the next read, and the read itself does
+ * not lock when the numbering is already valid.
+ *
+ * @param <GroupId> the id of the organizations.
+ */
+public class OrganizationTree<GroupId> {
+
+    private final Map<GroupId, GroupId> parents = new HashMap<>();
+    private final Map<GroupId, Set<GroupId>> children = new HashMap<>();
+    private volatile Numbering<GroupId> numbering;
+
+    /**
+     * Sets the parent of an organization. Ignored if it would create a cycle.
+     *
+     * @param child  the organization.
+     * @param parent its parent.
+     */
+    public synchronized void setParent(GroupId child, GroupId parent) {
+        if (child == null || parent == null || child.equals(parent) || parent.equals(parents.get(child))) {
+            return;
+        }
+        // Avoid cycles.
+        for (GroupId ancestor = parent; ancestor != null; ancestor = parents.get(ancestor)) {
+            if (ancestor.equals(child)) {
+                return;
+            }
+        }
+        detach(child);
+        parents.put(child, parent);
+        children.computeIfAbsent(parent, key -> new HashSet<>()).add(child);
+        children.computeIfAbsent(child, key -> new HashSet<>());
+        numbering = null;
+    }
+
+    public synchronized void setParent(Collection<GroupId> children, GroupId parent) {
+        for (final GroupId child : children) {
+            setParent(child, parent);
+        }
+    }
+
+    private void detach(GroupId child) {
+        final GroupId oldParent = parents.remove(child);
+        if (oldParent != null && children.get(oldParent) != null) {
+            children.get(oldParent).remove(child);
+        }
+    }
+
+    public synchronized GroupId getParent(GroupId child) {
+        return parents.get(child);
+    }
+
+    public synchronized Set<GroupId> getChildren(GroupId parent) {
+        final Set<GroupId> ids = children.get(parent);
+        return ids != null ? new HashSet<>(ids) : Collections.emptySet();
+    }
+
+    public boolean contains(GroupId organization) {
+        return getNumbering().preOrder.containsKey(organization);
+    }
+
+    /**
+     * Checks if an organization is an ancestor of other one, in constant time.
+     *
+     * @param ancestor   the possible ancestor.
+     * @param descendant the possible descendant.
+     * @return true if ancestor is a parent of descendant, or a parent of any of its parents.
+     */
+    public boolean isAncestor(GroupId ancestor, GroupId descendant) {
+        final Numbering<GroupId> current = getNumbering();
+        final Integer ancestorOrder = current.preOrder.get(ancestor);
+        final Integer descendantOrder = current.preOrder.get(descendant);
+        if (ancestorOrder == null || descendantOrder == null) {
+            return false;
+        }
+        return ancestorOrder < descendantOrder && descendantOrder <= current.lastDescendant[ancestorOrder];
+    }
+
+    /**
+     * Gets all the descendants of an organization in pre-order.
+     *
+     * @param organization the organization.
+     * @return the descendants, not including the organization.
+     */
+    public List<GroupId> getDescendants(GroupId organization) {
+        final Numbering<GroupId> current = getNumbering();
+        final Integer order = current.preOrder.get(organization);
+        if (order == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(current.organizations.subList(order + 1, current.lastDescendant[order] + 1));
+    }
+
+    /**
+     * Gets the descendants of an organization that are in a collection, i.e. the organizations of a user. Iterates the
+     * smaller of both.
+     *
+     * @param organization the organization.
+     * @param candidates   the organizations to check.
+     * @return the candidates that are descendants of the organization.
+     */
+    public Set<GroupId> filterDescendants(GroupId organization, Set<GroupId> candidates) {
+        final Set<GroupId> descendants = new HashSet<>();
+        final List<GroupId> range = getDescendants(organization);
+        if (candidates.size() < range.size()) {
+            for (final GroupId candidate : candidates) {
+                if (isAncestor(organization, candidate)) {
+                    descendants.add(candidate);
+                }
+            }
+        } else {
+            for (final GroupId descendant : range) {
+                if (candidates.contains(descendant)) {
+                    descendants.add(descendant);
+                }
+            }
+        }
+        return descendants;
+    }
+
+    public synchronized void clear() {
+        parents.clear();
+        children.clear();
+        numbering = null;
+    }
+
+    public int size() {
+        return getNumbering().organizations.size();
+    }
+
+    private Numbering<GroupId> getNumbering() {
+        final Numbering<GroupId> current = numbering;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (numbering == null) {
+                numbering = build();
+            }
+            return numbering;
+        }
+    }
+
+    private Numbering<GroupId> build() {
+        final List<GroupId> organizations = new ArrayList<>(children.size());
+        final Map<GroupId, Integer> preOrder = new HashMap<>();
+        final int[] lastDescendant = new int[children.size()];
+        final Deque<Iterator<GroupId>> stack = new ArrayDeque<>();
+        final Deque<Integer> openOrders = new ArrayDeque<>();
+        for (final GroupId root : children.keySet()) {
+            if (parents.containsKey(root)) {
+                continue;
+            }
+            stack.push(Collections.singletonList(root).iterator());
+            while (!stack.isEmpty()) {
+                final Iterator<GroupId> iterator = stack.peek();
+                if (iterator.hasNext()) {
+                    final GroupId organization = iterator.next();
+                    preOrder.put(organization, organizations.size());
+                    openOrders.push(organizations.size());
+                    organizations.add(organization);
+                    stack.push(children.getOrDefault(organization, Collections.emptySet()).iterator());
+                } else {
+                    stack.pop();
+                    if (!openOrders.isEmpty() && stack.size() == openOrders.size()) {
+                        lastDescendant[openOrders.pop()] = organizations.size() - 1;
+                    }
+                }
+            }
+        }
+        return new Numbering<>(organizations, preOrder, lastDescendant);
+    }
+
+    private static final class Numbering<GroupId> {
+        private final List<GroupId> organizations;
+        private final Map<GroupId, Integer> preOrder;
+        private final int[] lastDescendant;
+
+        private Numbering(List<GroupId> organizations, Map<GroupId, Integer> preOrder, int[] lastDescendant) {
+            this.organizations = organizations;
+            this.preOrder = preOrder;
+            this.lastDescendant = lastDescendant;
+        }
+    }
+}
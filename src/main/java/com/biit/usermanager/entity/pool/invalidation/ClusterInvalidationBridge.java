@@ -0,0 +1,115 @@
+package com.biit.usermanager.entity.pool.invalidation;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+import com.biit.usermanager.entity.pool.invalidation.transport.InvalidationTransport;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Connects the local {@link InvalidationBus} with the other nodes of a cluster. Local events are sent through an
+ * {@link InvalidationTransport}. Events received from other nodes are published in the local bus from a single
+ * background thread, in the order they arrive, so the node that made the change does not wait for them. Events are
+ * not sent back: the messages of this node are ignored and remote events are not forwarded again.
+ */
+public class ClusterInvalidationBridge implements InvalidationListener, AutoCloseable {
+
+    private final String nodeId;
+    private final InvalidationBus invalidationBus;
+    private final InvalidationTransport transport;
+    private final ExecutorService remoteEvents;
+    private final ThreadLocal<Boolean> applyingRemoteEvent = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public ClusterInvalidationBridge(InvalidationBus invalidationBus, InvalidationTransport transport) {
+        this(UUID.randomUUID().toString(), invalidationBus, transport);
+    }
+
+    public ClusterInvalidationBridge(String nodeId, InvalidationBus invalidationBus, InvalidationTransport transport) {
+        this.nodeId = nodeId;
+        this.invalidationBus = invalidationBus;
+        this.transport = transport;
+        this.remoteEvents = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "invalidation-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Starts receiving remote events and sending local ones.
+     *
+     * @throws IOException if the transport cannot be opened.
+     */
+    public void start() throws IOException {
+        transport.start(this::receive);
+        invalidationBus.subscribe(this);
+    }
+
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        if (applyingRemoteEvent.get()) {
+            return;
+        }
+        try {
+            transport.send(InvalidationMessageCodec.encode(nodeId, event));
+        } catch (IOException | RuntimeException e) {
+            BiitPoolLogger.errorMessage(this.getClass(), e);
+        }
+    }
+
+    private void receive(byte[] message) {
+        final InvalidationMessageCodec.Message decoded;
+        try {
+            decoded = InvalidationMessageCodec.decode(message);
+        } catch (IOException e) {
+            BiitPoolLogger.errorMessage(this.getClass(), e);
+            return;
+        }
+        if (nodeId.equals(decoded.getNodeId())) {
+            return;
+        }
+        remoteEvents.execute(() -> {
+            applyingRemoteEvent.set(Boolean.TRUE);
+            try {
+                invalidationBus.publish(decoded.getEvent());
+            } finally {
+                applyingRemoteEvent.set(Boolean.FALSE);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        invalidationBus.unsubscribe(this);
+        transport.close();
+        remoteEvents.shutdown();
+    }
+}
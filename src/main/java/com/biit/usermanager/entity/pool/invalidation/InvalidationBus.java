@@ -0,0 +1,66 @@
+package com.biit.usermanager.entity.pool.invalidation;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers invalidation events to the pools in the same process. Events are delivered synchronously, so when
+ * {@link #publish(InvalidationEvent)} returns the stale entries are already gone. A failing listener does not prevent
+ * the others from receiving the event.
+ */
+public class InvalidationBus {
+
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void subscribe(InvalidationListener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void unsubscribe(InvalidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void publish(InvalidationEvent event) {
+        if (event == null) {
+            return;
+        }
+        BiitPoolLogger.debug(this.getClass(), "Invalidating '" + event + "'.");
+        for (final InvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(event);
+            } catch (RuntimeException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+    }
+
+    public int getListenersCount() {
+        return listeners.size();
+    }
+}
@@ -0,0 +1,128 @@
+package com.biit.usermanager.entity.pool.invalidation;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.Objects;
+
+/**
+ * A change in the backend that makes some cached data stale. Only ids are stored, so an event can be created without
+ * the entities and sent to other nodes.
+ */
+public final class InvalidationEvent {
+
+    public enum Type {
+        // Attributes of a user have changed.
+        USER_CHANGED,
+        // A user has been deleted.
+        USER_DELETED,
+        // A role has been granted to a user, in general or in an organization.
+        ROLE_GRANTED,
+        // A role has been revoked from a user, in general or in an organization.
+        ROLE_REVOKED,
+        // A user has been added to or removed from a group or organization.
+        MEMBERSHIP_CHANGED
+    }
+
+    private final Type type;
+    private final Object userId;
+    private final Object groupId;
+    private final Object roleId;
+
+    public InvalidationEvent(Type type, Object userId, Object groupId, Object roleId) {
+        this.type = Objects.requireNonNull(type);
+        this.userId = userId;
+        this.groupId = groupId;
+        this.roleId = roleId;
+    }
+
+    public static InvalidationEvent userChanged(Object userId) {
+        return new InvalidationEvent(Type.USER_CHANGED, userId, null, null);
+    }
+
+    public static InvalidationEvent userDeleted(Object userId) {
+        return new InvalidationEvent(Type.USER_DELETED, userId, null, null);
+    }
+
+    /**
+     * A role granted to a user.
+     *
+     * @param userId  the user.
+     * @param roleId  the role.
+     * @param groupId the organization where the role is granted, or null if it is a general role.
+     * @return the event.
+     */
+    public static InvalidationEvent roleGranted(Object userId, Object roleId, Object groupId) {
+        return new InvalidationEvent(Type.ROLE_GRANTED, userId, groupId, roleId);
+    }
+
+    public static InvalidationEvent roleRevoked(Object userId, Object roleId, Object groupId) {
+        return new InvalidationEvent(Type.ROLE_REVOKED, userId, groupId, roleId);
+    }
+
+    public static InvalidationEvent membershipChanged(Object userId, Object groupId) {
+        return new InvalidationEvent(Type.MEMBERSHIP_CHANGED, userId, groupId, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Object getUserId() {
+        return userId;
+    }
+
+    public Object getGroupId() {
+        return groupId;
+    }
+
+    public Object getRoleId() {
+        return roleId;
+    }
+
+    public boolean isRoleChange() {
+        return type == Type.ROLE_GRANTED || type == Type.ROLE_REVOKED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvalidationEvent)) {
+            return false;
+        }
+        final InvalidationEvent that = (InvalidationEvent) o;
+        return type == that.type && Objects.equals(userId, that.userId) && Objects.equals(groupId, that.groupId)
+                && Objects.equals(roleId, that.roleId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, userId, groupId, roleId);
+    }
+
+    @Override
+    public String toString() {
+        return type + "{user=" + userId + ", group=" + groupId + ", role=" + roleId + "}";
+    }
+}
@@ -0,0 +1,136 @@
+package com.biit.usermanager.entity.pool.invalidation;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Converts invalidation events to compact binary messages and back. A message contains the node that sent it, the
+ * type of change and the ids of the affected user, group and role. Ids can be {@link Long}, {@link Integer} or
+ * {@link String}, and are read back with the same type, so they match the keys of the pools of the receiver.
+ */
+public final class InvalidationMessageCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte NULL_ID = 0;
+    private static final byte LONG_ID = 1;
+    private static final byte TEXT_ID = 2;
+    private static final byte INTEGER_ID = 3;
+
+    private InvalidationMessageCodec() {
+    }
+
+    public static byte[] encode(String nodeId, InvalidationEvent event) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(VERSION);
+            output.writeUTF(nodeId);
+            output.writeByte(event.getType().ordinal());
+            writeId(output, event.getUserId());
+            writeId(output, event.getGroupId());
+            writeId(output, event.getRoleId());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeId(DataOutputStream output, Object id) throws IOException {
+        if (id == null) {
+            output.writeByte(NULL_ID);
+        } else if (id instanceof Long) {
+            output.writeByte(LONG_ID);
+            output.writeLong((Long) id);
+        } else if (id instanceof Integer) {
+            output.writeByte(INTEGER_ID);
+            output.writeInt((Integer) id);
+        } else if (id instanceof String) {
+            output.writeByte(TEXT_ID);
+            output.writeUTF((String) id);
+        } else {
+            // Would be read back with another type, and never match the pools of the receiver.
+            throw new IOException("Unsupported id type '" + id.getClass().getName() + "'.");
+        }
+    }
+
+    /**
+     * Reads a message.
+     *
+     * @param message the bytes received.
+     * @return the node that sent the event and the event.
+     * @throws IOException if the message is not valid.
+     */
+    public static Message decode(byte[] message) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(message))) {
+            final byte version = input.readByte();
+            if (version != VERSION) {
+                throw new IOException("Invalid invalidation message version '" + version + "'.");
+            }
+            final String nodeId = input.readUTF();
+            final int type = input.readUnsignedByte();
+            if (type >= InvalidationEvent.Type.values().length) {
+                throw new IOException("Invalid invalidation type '" + type + "'.");
+            }
+            final Object userId = readId(input);
+            final Object groupId = readId(input);
+            final Object roleId = readId(input);
+            return new Message(nodeId, new InvalidationEvent(InvalidationEvent.Type.values()[type], userId, groupId, roleId));
+        }
+    }
+
+    private static Object readId(DataInputStream input) throws IOException {
+        final byte kind = input.readByte();
+        switch (kind) {
+            case NULL_ID:
+                return null;
+            case LONG_ID:
+                return input.readLong();
+            case INTEGER_ID:
+                return input.readInt();
+            case TEXT_ID:
+                return input.readUTF();
+            default:
+                throw new IOException("Invalid id type '" + kind + "'.");
+        }
+    }
+
+    public static final class Message {
+        private final String nodeId;
+        private final InvalidationEvent event;
+
+        private Message(String nodeId, InvalidationEvent event) {
+            this.nodeId = nodeId;
+            this.event = event;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public InvalidationEvent getEvent() {
+            return event;
+        }
+    }
+}
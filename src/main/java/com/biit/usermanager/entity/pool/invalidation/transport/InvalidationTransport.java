@@ -0,0 +1,53 @@
+package com.biit.usermanager.entity.pool.invalidation.transport;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Sends invalidation messages to the other nodes of a cluster, and receives theirs. Implementations only move bytes;
+ * the content is defined by {@link com.biit.usermanager.entity.pool.invalidation.InvalidationMessageCodec}.
+ * Delivery is best effort: a lost message leaves an entry stale only until it expires.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Starts receiving messages.
+     *
+     * @param receiver called with each received message, from a thread of the transport.
+     * @throws IOException if the transport cannot be opened.
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /**
+     * Sends a message to all nodes. Can also be delivered to this node.
+     *
+     * @param message the message.
+     * @throws IOException if the message cannot be sent.
+     */
+    void send(byte[] message) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,73 @@
+package com.biit.usermanager.entity.pool.invalidation.transport;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport between nodes in the same JVM, i.e. for tests. All transports created with the same channel name receive
+ * the messages sent by any of them.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private static final Map<String, List<LoopbackInvalidationTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<byte[]> receiver;
+
+    public LoopbackInvalidationTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        final List<LoopbackInvalidationTransport> transports = CHANNELS.get(channel);
+        if (transports != null) {
+            for (final LoopbackInvalidationTransport transport : transports) {
+                final Consumer<byte[]> transportReceiver = transport.receiver;
+                if (transportReceiver != null) {
+                    transportReceiver.accept(message.clone());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        final List<LoopbackInvalidationTransport> transports = CHANNELS.get(channel);
+        if (transports != null) {
+            transports.remove(this);
+        }
+        receiver = null;
+    }
+}
@@ -0,0 +1,152 @@
+package com.biit.usermanager.entity.pool.invalidation.transport;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Sends each message as a UDP datagram to a fixed list of peers, and receives the datagrams sent to a local address.
+ * Meant for tests with several nodes on localhost, or for small clusters on a trusted network. Messages are not
+ * authenticated, so other nodes can only be reached by binding to an address of that network.
+ */
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    private static final int MAXIMUM_MESSAGE_SIZE = 1024;
+
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private DatagramSocket socket;
+    private Thread receiverThread;
+
+    /**
+     * Creates a transport that only receives messages from localhost.
+     *
+     * @param port  the local port. Zero uses any free port, see {@link #getPort()}.
+     * @param peers the nodes that receive the messages.
+     */
+    public UdpInvalidationTransport(int port, List<InetSocketAddress> peers) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), peers);
+    }
+
+    /**
+     * Creates a transport that receives messages from other hosts.
+     *
+     * @param bindAddress the local address and port, i.e. the address of the node in the cluster network. Port zero uses
+     *                    any free port, see {@link #getPort()}.
+     * @param peers       the nodes that receive the messages.
+     */
+    public UdpInvalidationTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) {
+        this.bindAddress = bindAddress;
+        this.peers = new ArrayList<>(peers);
+    }
+
+    /**
+     * Creates a transport where all nodes are in localhost.
+     *
+     * @param port      the local port.
+     * @param peerPorts the ports of the other nodes.
+     * @return the transport.
+     */
+    public static UdpInvalidationTransport localhost(int port, int... peerPorts) {
+        final List<InetSocketAddress> peers = new ArrayList<>();
+        for (final int peerPort : peerPorts) {
+            peers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), peerPort));
+        }
+        return new UdpInvalidationTransport(port, peers);
+    }
+
+    public synchronized void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    public synchronized int getPort() {
+        return socket != null ? socket.getLocalPort() : bindAddress.getPort();
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver) throws IOException {
+        if (socket != null) {
+            return;
+        }
+        socket = new DatagramSocket(bindAddress);
+        final DatagramSocket receiverSocket = socket;
+        receiverThread = new Thread(() -> receive(receiverSocket, receiver), "invalidation-udp-" + socket.getLocalPort());
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    private void receive(DatagramSocket receiverSocket, Consumer<byte[]> receiver) {
+        final byte[] buffer = new byte[MAXIMUM_MESSAGE_SIZE];
+        while (!receiverSocket.isClosed()) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                receiverSocket.receive(packet);
+                final byte[] message = new byte[packet.getLength()];
+                System.arraycopy(packet.getData(), packet.getOffset(), message, 0, packet.getLength());
+                receiver.accept(message);
+            } catch (SocketException e) {
+                // Socket closed.
+                return;
+            } catch (IOException | RuntimeException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        if (message.length > MAXIMUM_MESSAGE_SIZE) {
+            throw new IOException("Invalidation message too long: " + message.length + " bytes.");
+        }
+        final DatagramSocket sender;
+        final List<InetSocketAddress> destinations;
+        synchronized (this) {
+            if (socket == null) {
+                throw new IOException("Transport not started.");
+            }
+            sender = socket;
+            destinations = new ArrayList<>(peers);
+        }
+        for (final InetSocketAddress peer : destinations) {
+            sender.send(new DatagramPacket(message, message.length, peer));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+    }
+}
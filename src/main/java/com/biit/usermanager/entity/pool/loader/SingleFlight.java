@@ -0,0 +1,101 @@
+package com.biit.usermanager.entity.pool.loader;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent loads of the same key. The first thread that misses a key runs the loader, and any other thread
+ * asking for the same key meanwhile waits for that result instead of loading it again. If the loader fails, the same
+ * exception is thrown to all waiting threads and nothing is remembered: the next request loads the key again.
+ * <p>
+ * The loader should store the value in the pool before returning, so threads that arrive once the load has finished
+ * find it there.
+ *
+ * @param <Key>   the key type.
+ * @param <Value> the value type.
+ */
+public class SingleFlight<Key, Value> {
+
+    private final ConcurrentMap<Key, CompletableFuture<Value>> inFlight;
+
+    public SingleFlight() {
+        inFlight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads a key, or waits for the load already in progress for the same key.
+     *
+     * @param key    the key.
+     * @param loader obtains the value from the backend.
+     * @return the loaded value.
+     * @throws Exception the exception thrown by the loader.
+     */
+    public Value load(Key key, Callable<Value> loader) throws Exception {
+        final CompletableFuture<Value> flight = new CompletableFuture<>();
+        final CompletableFuture<Value> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            final Value value = loader.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private Value await(CompletableFuture<Value> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Number of keys that are being loaded now.
+     *
+     * @return the number of loads in progress.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,182 @@
+package com.biit.usermanager.entity.pool.metrics;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of a cached map: hits, misses, expirations, explicit removals, evictions by size and loads from the
+ * backend. Counters are striped ({@link LongAdder}), so recording is cheap even when many threads use the same map.
+ */
+public class CacheMetrics implements CacheMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private static final double PERCENTILE_50 = 50d;
+    private static final double PERCENTILE_95 = 95d;
+    private static final double PERCENTILE_99 = 99d;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LatencyHistogram loadTimes = new LatencyHistogram();
+    private volatile LongSupplier size = () -> 0;
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordExpirations(int count) {
+        expirations.add(count);
+    }
+
+    public void recordRemoval() {
+        removals.increment();
+    }
+
+    public void recordEvictions(int count) {
+        evictions.add(count);
+    }
+
+    /**
+     * Records a load from the backend.
+     *
+     * @param nanos   the duration of the load.
+     * @param success false if the load has thrown an exception.
+     */
+    public void recordLoad(long nanos, boolean success) {
+        loadTimes.record(nanos);
+        if (!success) {
+            loadFailures.increment();
+        }
+    }
+
+    /**
+     * Sets how the current number of entries is obtained. Updated when the map is replaced, i.e. on a reset.
+     *
+     * @param size the size of the map.
+     */
+    public void setSize(LongSupplier size) {
+        this.size = size;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        final long currentHits = hits.sum();
+        final long total = currentHits + misses.sum();
+        return total == 0 ? 0 : (double) currentHits / total;
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public long getRemovals() {
+        return removals.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getSize() {
+        return size.getAsLong();
+    }
+
+    @Override
+    public long getLoads() {
+        return loadTimes.getCount();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public double getMeanLoadTime() {
+        return loadTimes.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTime50() {
+        return loadTimes.getPercentileNanos(PERCENTILE_50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTime95() {
+        return loadTimes.getPercentileNanos(PERCENTILE_95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTime99() {
+        return loadTimes.getPercentileNanos(PERCENTILE_99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaximumLoadTime() {
+        return loadTimes.getMaximumNanos() / NANOS_PER_MILLI;
+    }
+
+    public LatencyHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        expirations.reset();
+        removals.reset();
+        evictions.reset();
+        loadFailures.reset();
+        loadTimes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "{hits=" + getHits() + ", misses=" + getMisses() + ", expirations=" + getExpirations() + ", removals=" + getRemovals()
+                + ", evictions=" + getEvictions() + ", size=" + getSize() + ", loads=" + getLoads() + "}";
+    }
+}
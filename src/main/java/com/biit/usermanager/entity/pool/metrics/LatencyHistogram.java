@@ -0,0 +1,109 @@
+package com.biit.usermanager.entity.pool.metrics;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with power of two buckets in nanoseconds. Recording is lock free and does not allocate, and
+ * percentiles are approximated by the upper bound of the bucket where they fall.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+    private static final double PERCENTAGE = 100d;
+
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder total;
+    private final LongAccumulator maximum;
+
+    public LatencyHistogram() {
+        buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        count = new LongAdder();
+        total = new LongAdder();
+        maximum = new LongAccumulator(Math::max, 0);
+    }
+
+    public void record(long nanos) {
+        final long duration = Math.max(0, nanos);
+        // Bucket i contains the durations from 2^i to 2^(i+1) - 1.
+        buckets[Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(duration))].increment();
+        count.increment();
+        total.add(duration);
+        maximum.accumulate(duration);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanNanos() {
+        final long samples = count.sum();
+        return samples == 0 ? 0 : total.sum() / samples;
+    }
+
+    public long getMaximumNanos() {
+        return maximum.get();
+    }
+
+    /**
+     * Gets an approximation of a percentile.
+     *
+     * @param percentile between 0 and 100.
+     * @return the duration in nanoseconds.
+     */
+    public long getPercentileNanos(double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            samples += counts[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(samples * percentile / PERCENTAGE);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            accumulated += counts[i];
+            if (accumulated >= rank) {
+                return Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMaximumNanos());
+            }
+        }
+        return getMaximumNanos();
+    }
+
+    public void reset() {
+        for (final LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        total.reset();
+        maximum.reset();
+    }
+}
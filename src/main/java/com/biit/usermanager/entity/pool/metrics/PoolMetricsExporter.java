@@ -0,0 +1,82 @@
+package com.biit.usermanager.entity.pool.metrics;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Publishes {@link CacheMetrics} in the platform MBean server, with names as
+ * {@code com.biit.usermanager:type=Pool,pool=<pool>,map=<map>}.
+ */
+public final class PoolMetricsExporter {
+
+    public static final String DOMAIN = "com.biit.usermanager";
+
+    private PoolMetricsExporter() {
+    }
+
+    public static ObjectName getObjectName(String pool, String map) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Pool,pool=" + ObjectName.quote(pool) + ",map=" + ObjectName.quote(map));
+    }
+
+    /**
+     * Registers the metrics of all maps of a pool. Existing beans with the same name are replaced.
+     *
+     * @param pool    the name of the pool.
+     * @param metrics the metrics by map name.
+     */
+    public static void register(String pool, Map<String, CacheMetrics> metrics) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final Map.Entry<String, CacheMetrics> entry : metrics.entrySet()) {
+            try {
+                final ObjectName name = getObjectName(pool, entry.getKey());
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(entry.getValue(), name);
+            } catch (JMException e) {
+                BiitPoolLogger.errorMessage(PoolMetricsExporter.class, e);
+            }
+        }
+    }
+
+    public static void unregister(String pool, Map<String, CacheMetrics> metrics) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final String map : metrics.keySet()) {
+            try {
+                final ObjectName name = getObjectName(pool, map);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                BiitPoolLogger.errorMessage(PoolMetricsExporter.class, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IElement;
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.GroupPool;
+import com.biit.usermanager.entity.pool.RolePool;
+import com.biit.usermanager.entity.pool.UserPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshot of the users, groups, roles and memberships of the pools, to restart a node without asking everything to
+ * the backend again. The snapshot file is mapped when opened, and each entry is decoded and stored in its pool the
+ * first time it is requested. Entries keep the time they were obtained from the backend, so they expire as if the node
+ * had not been restarted.
+ * <p>
+ * Users that change after the snapshot is written must be invalidated with {@link #invalidateUser(Object)}, so their
+ * old entries are not restored.
+ *
+ * @param <UserId>  the user id type.
+ * @param <GroupId> the group id type.
+ * @param <RoleId>  the role id type.
+ */
+public class PoolSnapshot<UserId, GroupId, RoleId> {
+
+    private static final byte USER = 1;
+    private static final byte GROUP = 2;
+    private static final byte ROLE = 3;
+    private static final byte USER_ROLES = 4;
+    private static final byte USER_GROUPS = 5;
+
+    private final SnapshotFile file;
+    private final PoolSnapshotCodecs<UserId, GroupId, RoleId> codecs;
+    // Users changed after the snapshot was written.
+    private final Set<Object> invalidatedUsers = ConcurrentHashMap.newKeySet();
+
+    public PoolSnapshot(SnapshotFile file, PoolSnapshotCodecs<UserId, GroupId, RoleId> codecs) {
+        this.file = file;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param snapshotFile the file.
+     * @param codecs       the codecs used to write it.
+     * @param <UserId>     the user id type.
+     * @param <GroupId>    the group id type.
+     * @param <RoleId>     the role id type.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static <UserId, GroupId, RoleId> PoolSnapshot<UserId, GroupId, RoleId> open(Path snapshotFile,
+                                                                                       PoolSnapshotCodecs<UserId, GroupId, RoleId> codecs)
+            throws IOException {
+        return new PoolSnapshot<>(SnapshotFile.open(snapshotFile), codecs);
+    }
+
+    /**
+     * Writes the entries of the pools that have not expired. Groups and roles referenced by the memberships are
+     * written too, even if they are not stored in the pools by id.
+     *
+     * @param snapshotFile the file to create or replace.
+     * @param codecs       how ids and elements are written.
+     * @param userPool     the pool of users.
+     * @param groupPool    the pool of groups and memberships.
+     * @param rolePool     the pool of roles and roles of users.
+     * @param <UserId>     the user id type.
+     * @param <GroupId>    the group id type.
+     * @param <RoleId>     the role id type.
+     * @return the number of entries written.
+     * @throws IOException if the file cannot be written.
+     */
+    public static <UserId, GroupId, RoleId> int write(Path snapshotFile, PoolSnapshotCodecs<UserId, GroupId, RoleId> codecs,
+                                                      UserPool<UserId, ?> userPool, GroupPool<UserId, GroupId> groupPool,
+                                                      RolePool<UserId, ?, RoleId> rolePool) throws IOException {
+        // Copied first, so the pools are not locked while writing to disk.
+        final List<TimedEntry<UserId, IUser<UserId>>> users = new ArrayList<>();
+        userPool.forEachElement((id, user, time) -> users.add(new TimedEntry<>(id, user, time)));
+        final List<TimedEntry<GroupId, IGroup<GroupId>>> groups = new ArrayList<>();
+        groupPool.forEachElement((id, group, time) -> groups.add(new TimedEntry<>(id, group, time)));
+        final List<TimedEntry<RoleId, IRole<RoleId>>> roles = new ArrayList<>();
+        rolePool.forEachElement((id, role, time) -> roles.add(new TimedEntry<>(id, role, time)));
+        final List<TimedEntry<UserId, Set<IRole<RoleId>>>> userRoles = new ArrayList<>();
+        rolePool.forEachUserRoles((id, userRole, time) -> userRoles.add(new TimedEntry<>(id, userRole, time)));
+        final List<TimedEntry<UserId, Set<IGroup<GroupId>>>> userGroups = new ArrayList<>();
+        groupPool.forEachUserGroups((id, userGroup, time) -> userGroups.add(new TimedEntry<>(id, userGroup, time)));
+
+        try (SnapshotFileWriter writer = new SnapshotFileWriter(snapshotFile)) {
+            for (final TimedEntry<UserId, IUser<UserId>> user : users) {
+                writer.add(key(USER, codecs.getUserIdCodec(), user.key), user.writeTime, encode(codecs.getUserCodec(), user.value));
+            }
+            final Set<GroupId> writtenGroups = new HashSet<>();
+            for (final TimedEntry<GroupId, IGroup<GroupId>> group : groups) {
+                writtenGroups.add(group.key);
+                writer.add(key(GROUP, codecs.getGroupIdCodec(), group.key), group.writeTime, encode(codecs.getGroupCodec(), group.value));
+            }
+            final Set<RoleId> writtenRoles = new HashSet<>();
+            for (final TimedEntry<RoleId, IRole<RoleId>> role : roles) {
+                writtenRoles.add(role.key);
+                writer.add(key(ROLE, codecs.getRoleIdCodec(), role.key), role.writeTime, encode(codecs.getRoleCodec(), role.value));
+            }
+            for (final TimedEntry<UserId, Set<IRole<RoleId>>> userRole : userRoles) {
+                writer.add(key(USER_ROLES, codecs.getUserIdCodec(), userRole.key), userRole.writeTime,
+                        encodeIds(codecs.getRoleIdCodec(), userRole.value));
+                for (final IRole<RoleId> role : userRole.value) {
+                    if (writtenRoles.add(role.getUniqueId())) {
+                        writer.add(key(ROLE, codecs.getRoleIdCodec(), role.getUniqueId()), userRole.writeTime,
+                                encode(codecs.getRoleCodec(), role));
+                    }
+                }
+            }
+            for (final TimedEntry<UserId, Set<IGroup<GroupId>>> userGroup : userGroups) {
+                writer.add(key(USER_GROUPS, codecs.getUserIdCodec(), userGroup.key), userGroup.writeTime,
+                        encodeIds(codecs.getGroupIdCodec(), userGroup.value));
+                for (final IGroup<GroupId> group : userGroup.value) {
+                    if (writtenGroups.add(group.getUniqueId())) {
+                        writer.add(key(GROUP, codecs.getGroupIdCodec(), group.getUniqueId()), userGroup.writeTime,
+                                encode(codecs.getGroupCodec(), group));
+                    }
+                }
+            }
+            writer.commit();
+            return writer.size();
+        }
+    }
+
+    /**
+     * Restores a user in its pool, if it is in the snapshot and has not expired.
+     *
+     * @param userId the user.
+     * @param pool   where the user is stored.
+     * @return the user or null if not restored.
+     */
+    public IUser<UserId> restoreUser(UserId userId, UserPool<UserId, ?> pool) {
+        if (userId == null || invalidatedUsers.contains(userId)) {
+            return null;
+        }
+        final SnapshotEntry entry = find(USER, codecs.getUserIdCodec(), userId, pool.getExpirationTime());
+        if (entry == null) {
+            return null;
+        }
+        final IUser<UserId> user = codecs.getUserCodec().read(entry.getValue());
+        pool.addElement(user, entry.getWriteTime());
+        return user;
+    }
+
+    /**
+     * Restores a group in its pool, if it is in the snapshot and has not expired.
+     *
+     * @param groupId the group.
+     * @param pool    where the group is stored.
+     * @return the group or null if not restored.
+     */
+    public IGroup<GroupId> restoreGroup(GroupId groupId, GroupPool<?, GroupId> pool) {
+        final SnapshotEntry entry = find(GROUP, codecs.getGroupIdCodec(), groupId, pool.getExpirationTime());
+        if (entry == null) {
+            return null;
+        }
+        final IGroup<GroupId> group = codecs.getGroupCodec().read(entry.getValue());
+        pool.addElement(group, entry.getWriteTime());
+        return group;
+    }
+
+    /**
+     * Restores a role in its pool, if it is in the snapshot and has not expired.
+     *
+     * @param roleId the role.
+     * @param pool   where the role is stored.
+     * @return the role or null if not restored.
+     */
+    public IRole<RoleId> restoreRole(RoleId roleId, RolePool<?, ?, RoleId> pool) {
+        final SnapshotEntry entry = find(ROLE, codecs.getRoleIdCodec(), roleId, pool.getExpirationTime());
+        if (entry == null) {
+            return null;
+        }
+        final IRole<RoleId> role = codecs.getRoleCodec().read(entry.getValue());
+        pool.addElement(role, entry.getWriteTime());
+        return role;
+    }
+
+    /**
+     * Restores the roles of a user in the pool, if they are in the snapshot and have not expired.
+     *
+     * @param userId the user.
+     * @param pool   where the roles are stored.
+     * @return the roles or null if not restored.
+     */
+    public Set<IRole<RoleId>> restoreUserRoles(UserId userId, RolePool<UserId, ?, RoleId> pool) {
+        if (userId == null || invalidatedUsers.contains(userId)) {
+            return null;
+        }
+        final SnapshotEntry entry = find(USER_ROLES, codecs.getUserIdCodec(), userId, pool.getExpirationTime());
+        if (entry == null) {
+            return null;
+        }
+        final Set<IRole<RoleId>> roles = new HashSet<>();
+        for (final RoleId roleId : decodeIds(codecs.getRoleIdCodec(), entry.getValue())) {
+            IRole<RoleId> role = pool.getRoleById(roleId);
+            if (role == null) {
+                role = restoreRole(roleId, pool);
+            }
+            if (role == null) {
+                return null;
+            }
+            roles.add(role);
+        }
+        pool.setUserRoles(userId, roles, entry.getWriteTime());
+        return roles;
+    }
+
+    /**
+     * Restores the groups of a user in the pool, if they are in the snapshot and have not expired.
+     *
+     * @param userId the user.
+     * @param pool   where the groups are stored.
+     * @return the groups or null if not restored.
+     */
+    public Set<IGroup<GroupId>> restoreUserGroups(UserId userId, GroupPool<UserId, GroupId> pool) {
+        if (userId == null || invalidatedUsers.contains(userId)) {
+            return null;
+        }
+        final SnapshotEntry entry = find(USER_GROUPS, codecs.getUserIdCodec(), userId, pool.getExpirationTime());
+        if (entry == null) {
+            return null;
+        }
+        final Set<IGroup<GroupId>> groups = new HashSet<>();
+        for (final GroupId groupId : decodeIds(codecs.getGroupIdCodec(), entry.getValue())) {
+            IGroup<GroupId> group = pool.getGroupById(groupId);
+            if (group == null) {
+                group = restoreGroup(groupId, pool);
+            }
+            if (group == null) {
+                return null;
+            }
+            groups.add(group);
+        }
+        pool.setUserGroups(userId, groups, entry.getWriteTime());
+        return groups;
+    }
+
+    /**
+     * Stops restoring the entries of a user, because it has changed.
+     *
+     * @param userId the user.
+     */
+    public void invalidateUser(Object userId) {
+        if (userId != null) {
+            invalidatedUsers.add(userId);
+        }
+    }
+
+    public int size() {
+        return file.size();
+    }
+
+    public long getCreationTime() {
+        return file.getCreationTime();
+    }
+
+    private <Id> SnapshotEntry find(byte section, SnapshotCodec<Id> idCodec, Id id, long expirationTime) {
+        if (id == null) {
+            return null;
+        }
+        final SnapshotEntry entry = file.get(key(section, idCodec, id));
+        if (entry == null || entry.isExpired(expirationTime, System.currentTimeMillis())) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static <Id> byte[] key(byte section, SnapshotCodec<Id> idCodec, Id id) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(section);
+            idCodec.write(id, output);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Not thrown by a stream in memory.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> byte[] encode(SnapshotCodec<T> codec, T value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        codec.write(value, output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <Id, Element extends IElement<Id>> byte[] encodeIds(SnapshotCodec<Id> idCodec, Collection<Element> elements)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(elements.size());
+        for (final Element element : elements) {
+            idCodec.write(element.getUniqueId(), output);
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <Id> List<Id> decodeIds(SnapshotCodec<Id> idCodec, ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        final List<Id> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(idCodec.read(buffer));
+        }
+        return ids;
+    }
+
+    /**
+     * Entry of a pool copied to be written.
+     */
+    private static final class TimedEntry<Key, Value> {
+        private final Key key;
+        private final Value value;
+        private final long writeTime;
+
+        private TimedEntry(Key key, Value value, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+
+/**
+ * Codecs of the ids and elements of the pools.
+ *
+ * @param <UserId>  the user id type.
+ * @param <GroupId> the group id type.
+ * @param <RoleId>  the role id type.
+ */
+public class PoolSnapshotCodecs<UserId, GroupId, RoleId> {
+
+    private final SnapshotCodec<UserId> userIdCodec;
+    private final SnapshotCodec<GroupId> groupIdCodec;
+    private final SnapshotCodec<RoleId> roleIdCodec;
+    private final SnapshotCodec<IUser<UserId>> userCodec;
+    private final SnapshotCodec<IGroup<GroupId>> groupCodec;
+    private final SnapshotCodec<IRole<RoleId>> roleCodec;
+
+    public PoolSnapshotCodecs(SnapshotCodec<UserId> userIdCodec, SnapshotCodec<GroupId> groupIdCodec, SnapshotCodec<RoleId> roleIdCodec,
+                              SnapshotCodec<IUser<UserId>> userCodec, SnapshotCodec<IGroup<GroupId>> groupCodec,
+                              SnapshotCodec<IRole<RoleId>> roleCodec) {
+        this.userIdCodec = userIdCodec;
+        this.groupIdCodec = groupIdCodec;
+        this.roleIdCodec = roleIdCodec;
+        this.userCodec = userCodec;
+        this.groupCodec = groupCodec;
+        this.roleCodec = roleCodec;
+    }
+
+    public SnapshotCodec<UserId> getUserIdCodec() {
+        return userIdCodec;
+    }
+
+    public SnapshotCodec<GroupId> getGroupIdCodec() {
+        return groupIdCodec;
+    }
+
+    public SnapshotCodec<RoleId> getRoleIdCodec() {
+        return roleIdCodec;
+    }
+
+    public SnapshotCodec<IUser<UserId>> getUserCodec() {
+        return userCodec;
+    }
+
+    public SnapshotCodec<IGroup<GroupId>> getGroupCodec() {
+        return groupCodec;
+    }
+
+    public SnapshotCodec<IRole<RoleId>> getRoleCodec() {
+        return roleCodec;
+    }
+}
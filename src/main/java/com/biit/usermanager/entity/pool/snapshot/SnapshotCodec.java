@@ -0,0 +1,46 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts ids and elements to the bytes stored in a snapshot file. The library does not know the implementations of
+ * the elements, so the application provides a codec for each of them.
+ *
+ * @param <T> the type of the value.
+ */
+public interface SnapshotCodec<T> {
+
+    void write(T value, DataOutput output) throws IOException;
+
+    /**
+     * Reads a value. The buffer is a view of the mapped file, positioned at the beginning of the value.
+     *
+     * @param buffer the bytes of the value.
+     * @return the value.
+     */
+    T read(ByteBuffer buffer);
+}
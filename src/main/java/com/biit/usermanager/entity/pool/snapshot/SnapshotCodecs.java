@@ -0,0 +1,94 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs for common id types, and helpers to write the fields of an element.
+ */
+public final class SnapshotCodecs {
+
+    public static final SnapshotCodec<Long> LONG = new SnapshotCodec<Long>() {
+        @Override
+        public void write(Long value, DataOutput output) throws IOException {
+            output.writeLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    public static final SnapshotCodec<String> STRING = new SnapshotCodec<String>() {
+        @Override
+        public void write(String value, DataOutput output) throws IOException {
+            writeString(value, output);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            return readString(buffer);
+        }
+    };
+
+    private SnapshotCodecs() {
+    }
+
+    /**
+     * Writes a string that can be null.
+     *
+     * @param value  the string.
+     * @param output where it is written.
+     * @throws IOException if it cannot be written.
+     */
+    public static void writeString(String value, DataOutput output) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(String, DataOutput)}.
+     *
+     * @param buffer the bytes.
+     * @return the string or null.
+     */
+    public static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Value stored in a snapshot file, as a read-only view of the mapped file, and the time it was obtained from the
+ * backend.
+ */
+public final class SnapshotEntry {
+
+    private final long writeTime;
+    private final ByteBuffer value;
+
+    SnapshotEntry(long writeTime, ByteBuffer value) {
+        this.writeTime = writeTime;
+        this.value = value;
+    }
+
+    public long getWriteTime() {
+        return writeTime;
+    }
+
+    /**
+     * The bytes of the value. Not copied from the file.
+     *
+     * @return a buffer positioned at the beginning of the value.
+     */
+    public ByteBuffer getValue() {
+        return value;
+    }
+
+    /**
+     * Checks if the value is older than an expiration time.
+     *
+     * @param expirationTime the expiration time in milliseconds.
+     * @param now            current time.
+     * @return true if expired.
+     */
+    public boolean isExpired(long expirationTime, long now) {
+        return (now - writeTime) > expirationTime;
+    }
+}
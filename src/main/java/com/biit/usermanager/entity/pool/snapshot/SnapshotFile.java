@@ -0,0 +1,177 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only snapshot file mapped in memory. Opening the file only reads its header; entries are found through an
+ * on-disk hash table and their values are returned as views of the mapping, so the time to open does not depend on the
+ * number of entries and nothing is copied until a value is decoded.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <ul>
+ * <li>Header: magic, version, number of entries, table capacity (ints), table offset and creation time (longs).</li>
+ * <li>Records: key length (int), key, write time (long), value length (int), value.</li>
+ * <li>Hash table: one long per slot, with the hash of the key in the high half and the offset of the record in the
+ * low half. Zero is an empty slot. Collisions are resolved by linear probing.</li>
+ * </ul>
+ * A single mapping is used, so files are limited to 2 GB.
+ */
+public final class SnapshotFile {
+
+    static final int MAGIC = 0x55534E50;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_SIZE = Long.BYTES;
+
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int TABLE_OFFSET = 16;
+    private static final int CREATION_TIME_OFFSET = 24;
+    private static final int HASH_SHIFT = 32;
+    private static final long OFFSET_MASK = 0xFFFFFFFFL;
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+    private final int capacity;
+    private final int tableOffset;
+    private final long creationTime;
+
+    private SnapshotFile(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file.");
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported snapshot version '" + buffer.getInt(VERSION_OFFSET) + "'.");
+        }
+        this.entryCount = buffer.getInt(COUNT_OFFSET);
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.tableOffset = (int) buffer.getLong(TABLE_OFFSET);
+        this.creationTime = buffer.getLong(CREATION_TIME_OFFSET);
+        if (Integer.bitCount(capacity) != 1 || (long) tableOffset + (long) capacity * SLOT_SIZE > buffer.capacity()) {
+            throw new IOException("Corrupted snapshot file.");
+        }
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file the file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static SnapshotFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file too large.");
+            }
+            // The mapping stays valid after closing the channel.
+            return new SnapshotFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Finds an entry.
+     *
+     * @param key the key of the entry.
+     * @return the entry or null if not stored.
+     */
+    public SnapshotEntry get(byte[] key) {
+        final int hash = hash(key);
+        final int mask = capacity - 1;
+        for (int slot = hash & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            final long value = buffer.getLong(tableOffset + slot * SLOT_SIZE);
+            if (value == 0) {
+                return null;
+            }
+            if ((int) (value >>> HASH_SHIFT) == hash) {
+                final int offset = (int) (value & OFFSET_MASK);
+                if (keyEquals(offset, key)) {
+                    return readEntry(offset + Integer.BYTES + key.length);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+        if (buffer.getInt(offset) != key.length) {
+            return false;
+        }
+        final int start = offset + Integer.BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SnapshotEntry readEntry(int offset) {
+        final long writeTime = buffer.getLong(offset);
+        final int valueLength = buffer.getInt(offset + Long.BYTES);
+        final int valueStart = offset + Long.BYTES + Integer.BYTES;
+        // Absolute positions on a duplicate, so the mapping can be shared between threads.
+        final ByteBuffer value = buffer.duplicate();
+        value.position(valueStart);
+        value.limit(valueStart + valueLength);
+        return new SnapshotEntry(writeTime, value.slice().asReadOnlyBuffer());
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Time when the snapshot was written.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    static int hash(byte[] key) {
+        int hash = FNV_OFFSET_BASIS;
+        for (final byte b : key) {
+            hash ^= b & BYTE_MASK;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static long slot(int hash, long offset) {
+        return ((long) hash << HASH_SHIFT) | offset;
+    }
+}
@@ -0,0 +1,165 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link SnapshotFile}. Records are streamed to a temporary file next to the target, and only the hash and
+ * offset of each key are kept in memory. On {@link #commit()} the hash table is appended and the temporary file
+ * replaces the target, so readers never see a partial snapshot. Nodes that have mapped the previous file keep reading
+ * it.
+ */
+public class SnapshotFileWriter implements Closeable {
+
+    private static final int INITIAL_ENTRIES = 1024;
+    // Table capacity is at least twice the number of entries.
+    private static final int LOAD_FACTOR_INVERSE = 2;
+
+    private final Path target;
+    private final Path temporary;
+    private final DataOutputStream output;
+    private int[] hashes = new int[INITIAL_ENTRIES];
+    private int[] offsets = new int[INITIAL_ENTRIES];
+    private int entryCount;
+    private boolean committed;
+
+    /**
+     * Starts writing a snapshot.
+     *
+     * @param target the file to create or replace.
+     * @throws IOException if the temporary file cannot be created.
+     */
+    public SnapshotFileWriter(Path target) throws IOException {
+        this.target = target.toAbsolutePath();
+        this.temporary = Files.createTempFile(this.target.getParent(), this.target.getFileName().toString(), ".tmp");
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+        // Written again on commit.
+        output.write(new byte[SnapshotFile.HEADER_SIZE]);
+    }
+
+    /**
+     * Adds an entry. Keys must be unique.
+     *
+     * @param key       the key.
+     * @param writeTime the time the value was obtained.
+     * @param value     the value.
+     * @throws IOException if it cannot be written or the file becomes too large.
+     */
+    public void add(byte[] key, long writeTime, byte[] value) throws IOException {
+        final long offset = output.size();
+        if (offset + key.length + value.length + Integer.BYTES * 2 + Long.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot file too large.");
+        }
+        if (entryCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, entryCount * 2);
+            offsets = Arrays.copyOf(offsets, entryCount * 2);
+        }
+        hashes[entryCount] = SnapshotFile.hash(key);
+        offsets[entryCount] = (int) offset;
+        entryCount++;
+        output.writeInt(key.length);
+        output.write(key);
+        output.writeLong(writeTime);
+        output.writeInt(value.length);
+        output.write(value);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Writes the hash table and replaces the target file.
+     *
+     * @throws IOException if it cannot be written.
+     */
+    public void commit() throws IOException {
+        final int capacity = Integer.highestOneBit(Math.max(entryCount, 1) * LOAD_FACTOR_INVERSE - 1) << 1;
+        final long[] table = new long[capacity];
+        for (int i = 0; i < entryCount; i++) {
+            int slot = hashes[i] & (capacity - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = SnapshotFile.slot(hashes[i], offsets[i]);
+        }
+        // Aligned, so slots are read in a single access.
+        while (output.size() % SnapshotFile.SLOT_SIZE != 0) {
+            output.writeByte(0);
+        }
+        final long tableOffset = output.size();
+        if (tableOffset + (long) capacity * SnapshotFile.SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot file too large.");
+        }
+        for (final long slot : table) {
+            output.writeLong(slot);
+        }
+        output.close();
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(SnapshotFile.HEADER_SIZE);
+            header.putInt(SnapshotFile.MAGIC);
+            header.putInt(SnapshotFile.VERSION);
+            header.putInt(entryCount);
+            header.putInt(capacity);
+            header.putLong(tableOffset);
+            header.putLong(System.currentTimeMillis());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Discards the temporary file if the snapshot has not been committed.
+     *
+     * @throws IOException if the temporary file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            output.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -21,122 +21,217 @@ package com.biit.usermanager.security;
  * #L%
  */
 
+import com.biit.usermanager.entity.IElement;
 import com.biit.usermanager.entity.IGroup;
 import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.BulkResult;
+import com.biit.usermanager.entity.pool.activity.ActivityDecisionCache;
+import com.biit.usermanager.entity.pool.config.PoolConfiguration;
+import com.biit.usermanager.entity.pool.config.PoolConfigurationListener;
+import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationListener;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import com.biit.usermanager.entity.pool.metrics.PoolMetricsExporter;
 import com.biit.utils.annotations.FindBugsSuppressWarnings;
 
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
- * Defines if an activity is authorized by an user or not.
+ * Defines if an activity is authorized by an user or not. Can be shared between threads, and checking an activity
+ * never blocks.
  */
-public class AuthorizationPool<UserId, OrganizationId> {
+public class AuthorizationPool<UserId, OrganizationId> implements InvalidationListener, PoolConfigurationListener {
 
-    private static final long EXPIRATION_TIME = 300000; // 300 seconds
+    private static final String DECISIONS_METRICS = "decisions";
 
-    // user id -> time.
-    private Map<IUser<UserId>, Long> time;
-    // Form, user id -> activity -> allowed.
-    private Map<IUser<UserId>, Map<IActivity, Boolean>> activitiesByUser;
-    private Map<IUser<UserId>, Map<IGroup<OrganizationId>, Map<IActivity, Boolean>>> activitiesByOrganization;
+    private final ActivityDecisionCache<UserId, OrganizationId> decisions;
 
     public AuthorizationPool() {
+        decisions = new ActivityDecisionCache<>(this::getExpirationTime, this::getMaximumSize);
         reset();
+        PoolConfigurationReader.getInstance().addListener(this);
     }
 
     public void addUser(IUser<UserId> user, IActivity activity, Boolean authorized) {
         if (user != null && activity != null && authorized != null) {
-            activitiesByUser.computeIfAbsent(user, k -> new Hashtable<>());
-
-            time.put(user, System.currentTimeMillis());
-            activitiesByUser.get(user).put(activity, authorized);
+            decisions.put(getId(user), activity, authorized);
         }
     }
 
     public void addUser(IUser<UserId> user, IGroup<OrganizationId> organization, IActivity activity,
                         Boolean authorized) {
         if (user != null && organization != null && activity != null && authorized != null) {
-            activitiesByOrganization.computeIfAbsent(user, k -> new HashMap<>());
-
-            activitiesByOrganization.get(user).computeIfAbsent(organization, k -> new HashMap<>());
-
-            activitiesByOrganization.get(user).get(organization).put(activity, authorized);
-            time.put(user, System.currentTimeMillis());
+            decisions.put(getId(user), getId(organization), activity, authorized);
         }
     }
 
     /**
-     * Returns true or false if the activity is authorized and null if is not catched.
+     * Returns true or false if the activity is authorized and null if is not
+     * caught.
      *
-     * @param user
-     * @param activity
-     * @return
+     * @param user     the user to check.
+     * @param activity the activity to check.
+     * @return true if it is authorized.
      */
     @FindBugsSuppressWarnings("NP_BOOLEAN_RETURN_NULL")
     public Boolean isAuthorizedActivity(IUser<UserId> user, IActivity activity) {
-        long now = System.currentTimeMillis();
-        IUser<UserId> userForm;
-
-        if (time.size() > 0) {
-            for (IUser<UserId> userIdIUser : new HashMap<>(time).keySet()) {
-                userForm = userIdIUser;
-                try {
-                    if (time.get(userForm) != null && (now - time.get(userForm)) > EXPIRATION_TIME) {
-                        // object has expired
-                        removeUser(userForm);
-                    } else if (user != null && user.equals(userForm)) {
-                        if (activitiesByUser.get(user) != null && activity != null) {
-                            return activitiesByUser.get(user).get(activity);
-                        }
-                    }
-                } catch (Exception except) {
-                    // Something is wrong. Considered as not cached.
-                }
-            }
-        }
-        return null;
+        return decisions.get(getId(user), activity);
     }
 
     @FindBugsSuppressWarnings("NP_BOOLEAN_RETURN_NULL")
     public Boolean isAuthorizedActivity(IUser<UserId> user, IGroup<OrganizationId> organization,
                                         IActivity activity) {
-        long now = System.currentTimeMillis();
-        IUser<UserId> authorizedUser;
-
-        if (time.size() > 0) {
-            for (IUser<UserId> userIdIUser : new HashMap<>(time).keySet()) {
-                authorizedUser = userIdIUser;
-                try {
-                    if (time.get(authorizedUser) != null && (now - time.get(authorizedUser)) > EXPIRATION_TIME) {
-                        // object has expired
-                        removeUser(authorizedUser);
-                    } else if (user != null && user.equals(authorizedUser)) {
-                        if (activitiesByOrganization.get(user) != null && activitiesByOrganization.get(user).get(organization) != null
-                                && activity != null) {
-                            return activitiesByOrganization.get(user).get(organization).get(activity);
-                        }
-                    }
-                } catch (Exception except) {
-                    // Something is wrong. Considered as not cached.
-                }
-            }
-        }
-        return null;
+        return decisions.get(getId(user), getId(organization), activity);
+    }
+
+    /**
+     * Gets the cached decisions of several activities at once.
+     *
+     * @param user         the user to check.
+     * @param organization the organization, or null for the decisions out of any organization.
+     * @param activities   the activities to check.
+     * @return the cached decisions and the activities that are not cached.
+     */
+    public BulkResult<IActivity, Boolean> isAuthorizedActivities(IUser<UserId> user, IGroup<OrganizationId> organization, Collection<IActivity> activities) {
+        return decisions.getAll(getId(user), getId(organization), activities);
+    }
+
+    /**
+     * Returns the cached decision, or computes it with the loader and caches it. If several threads miss the same
+     * decision at the same time, only one of them runs the loader.
+     *
+     * @param user     the user to check.
+     * @param activity the activity to check.
+     * @param loader   computes the decision from the backend.
+     * @return true if it is authorized.
+     * @throws Exception the exception thrown by the loader.
+     */
+    @FindBugsSuppressWarnings("NP_BOOLEAN_RETURN_NULL")
+    public Boolean isAuthorizedActivity(IUser<UserId> user, IActivity activity, Callable<Boolean> loader) throws Exception {
+        return decisions.get(getId(user), activity, loader);
+    }
+
+    @FindBugsSuppressWarnings("NP_BOOLEAN_RETURN_NULL")
+    public Boolean isAuthorizedActivity(IUser<UserId> user, IGroup<OrganizationId> organization, IActivity activity, Callable<Boolean> loader)
+            throws Exception {
+        return decisions.get(getId(user), getId(organization), activity, loader);
+    }
+
+    /**
+     * Stores all the activities allowed to a user. Any other activity is denied until they expire.
+     *
+     * @param user       the user.
+     * @param activities the allowed activities.
+     */
+    public void setUserActivities(IUser<UserId> user, Collection<IActivity> activities) {
+        decisions.putPermissions(getId(user), activities);
+    }
+
+    public void setUserActivities(IUser<UserId> user, IGroup<OrganizationId> organization, Collection<IActivity> activities) {
+        decisions.putPermissions(getId(user), getId(organization), activities);
+    }
+
+    /**
+     * Returns the cached decision. On a miss, the loader gets all the activities allowed to the user and they are
+     * cached together, so the next checks of any activity are answered from memory.
+     *
+     * @param user     the user to check.
+     * @param activity the activity to check.
+     * @param loader   gets all the activities of the user from the backend.
+     * @return true if it is authorized.
+     * @throws Exception the exception thrown by the loader.
+     */
+    public boolean isAuthorizedActivityFromPermissions(IUser<UserId> user, IActivity activity, Callable<? extends Collection<IActivity>> loader)
+            throws Exception {
+        return decisions.getFromPermissions(getId(user), null, activity, loader);
+    }
+
+    public boolean isAuthorizedActivityFromPermissions(IUser<UserId> user, IGroup<OrganizationId> organization, IActivity activity,
+                                                       Callable<? extends Collection<IActivity>> loader) throws Exception {
+        return decisions.getFromPermissions(getId(user), getId(organization), activity, loader);
+    }
+
+    public Map<IActivity, Boolean> isAuthorizedActivitiesFromPermissions(IUser<UserId> user, IGroup<OrganizationId> organization,
+                                                                         Collection<IActivity> activities,
+                                                                         Callable<? extends Collection<IActivity>> loader) throws Exception {
+        return decisions.getAllFromPermissions(getId(user), getId(organization), activities, loader);
     }
 
     public void removeUser(IUser<UserId> user) {
-        if (user != null) {
-            time.remove(user);
-            activitiesByUser.remove(user);
-            activitiesByOrganization.remove(user);
+        decisions.remove(getId(user));
+    }
+
+    public void removeUserById(UserId userId) {
+        decisions.remove(userId);
+    }
+
+    /**
+     * Removes the decisions of the user of the event, if its roles or groups may have changed.
+     *
+     * @param event the change.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onInvalidation(InvalidationEvent event) {
+        if (event.getType() != InvalidationEvent.Type.USER_CHANGED) {
+            removeUserById((UserId) event.getUserId());
         }
     }
 
+    private static <Id> Id getId(IElement<Id> element) {
+        return element != null ? element.getUniqueId() : null;
+    }
+
+    /**
+     * Time that the decisions of a user are valid. Uses the settings of the activity pool.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getExpirationTime() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getActivityPoolExpirationTime();
+    }
+
+    /**
+     * Maximum number of users stored. Uses the settings of the activity pool.
+     *
+     * @return the number of users, zero or negative for no limit.
+     */
+    public long getMaximumSize() {
+        return PoolConfigurationReader.getInstance().getConfiguration().getActivityPoolMaximumSize();
+    }
+
+    /**
+     * Statistics of the decisions, including the time of the loaders.
+     *
+     * @return the statistics by map name.
+     */
+    public Map<String, CacheMetrics> getMetrics() {
+        return Collections.singletonMap(DECISIONS_METRICS, decisions.getMetrics());
+    }
+
+    public void registerMBeans(String poolName) {
+        PoolMetricsExporter.register(poolName, getMetrics());
+    }
+
+    public void unregisterMBeans(String poolName) {
+        PoolMetricsExporter.unregister(poolName, getMetrics());
+    }
+
+    /**
+     * Removes the users that have expired or exceed the maximum size with the new settings.
+     *
+     * @param configuration the new settings.
+     */
+    @Override
+    public void onConfigurationChanged(PoolConfiguration configuration) {
+        decisions.applyLimits();
+    }
+
     public void reset() {
-        time = new HashMap<>();
-        activitiesByUser = new HashMap<>();
-        activitiesByOrganization = new HashMap<>();
+        decisions.clear();
     }
 }
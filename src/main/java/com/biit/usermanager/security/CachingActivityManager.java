@@ -0,0 +1,187 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.activities.CompiledRoleActivities;
+import com.biit.usermanager.security.activities.RoleActivitiesListener;
+import com.biit.usermanager.security.exceptions.InvalidCredentialsException;
+import com.biit.usermanager.security.exceptions.OrganizationDoesNotExistException;
+import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
+import com.biit.usermanager.security.exceptions.UserManagementException;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link IActivityManager} that resolves the activities of a user from its roles and the {@link IRoleActivities}. On
+ * the first miss of a user (or a user in an organization) the union of the activities of all the user's roles is
+ * computed once and stored in an {@link AuthorizationPool}. Any later check of any activity is answered from memory
+ * until it expires. The stored permissions are discarded when the role definitions change, also when a
+ * {@link CompiledRoleActivities} reloads its file.
+ */
+public class CachingActivityManager<UserId, GroupId, RoleId> implements IActivityManager<UserId, GroupId, RoleId>, RoleActivitiesListener {
+
+    private final IAuthorizationService<UserId, GroupId, RoleId> authorizationService;
+    private final AuthorizationPool<UserId, GroupId> authorizationPool;
+    private volatile IRoleActivities<RoleId> roleActivities;
+
+    public CachingActivityManager(IAuthorizationService<UserId, GroupId, RoleId> authorizationService, IRoleActivities<RoleId> roleActivities) {
+        this(authorizationService, roleActivities, new AuthorizationPool<>());
+    }
+
+    public CachingActivityManager(IAuthorizationService<UserId, GroupId, RoleId> authorizationService, IRoleActivities<RoleId> roleActivities,
+                                  AuthorizationPool<UserId, GroupId> authorizationPool) {
+        this.authorizationService = authorizationService;
+        this.roleActivities = roleActivities;
+        this.authorizationPool = authorizationPool;
+        listenTo(roleActivities);
+    }
+
+    public AuthorizationPool<UserId, GroupId> getAuthorizationPool() {
+        return authorizationPool;
+    }
+
+    @Override
+    public Set<IActivity> getRoleActivities(IRole<RoleId> role) {
+        return roleActivities.getRoleActivities(role);
+    }
+
+    @Override
+    public IRoleActivities<RoleId> getRoleActivities() {
+        return roleActivities;
+    }
+
+    /**
+     * Changes the role definitions. All cached permissions are discarded, as they were computed with the previous
+     * ones.
+     *
+     * @param roleActivities the new definitions.
+     */
+    @Override
+    public void setRoleActivities(IRoleActivities<RoleId> roleActivities) {
+        final IRoleActivities<RoleId> previous = this.roleActivities;
+        if (previous instanceof CompiledRoleActivities) {
+            ((CompiledRoleActivities<RoleId>) previous).removeListener(this);
+        }
+        this.roleActivities = roleActivities;
+        listenTo(roleActivities);
+        authorizationPool.reset();
+    }
+
+    private void listenTo(IRoleActivities<RoleId> roleActivities) {
+        if (roleActivities instanceof CompiledRoleActivities) {
+            ((CompiledRoleActivities<RoleId>) roleActivities).addListener(this);
+        }
+    }
+
+    /**
+     * Discards all cached permissions when the current definitions have been reloaded.
+     *
+     * @param roleActivities the definitions that have changed.
+     */
+    @Override
+    public void onRoleActivitiesChanged(IRoleActivities<?> roleActivities) {
+        if (roleActivities == this.roleActivities) {
+            authorizationPool.reset();
+        }
+    }
+
+    private Set<IActivity> getActivities(Set<IRole<RoleId>> roles) {
+        final IRoleActivities<RoleId> definitions = roleActivities;
+        final Set<IActivity> activities = new HashSet<>();
+        if (roles != null) {
+            for (final IRole<RoleId> role : roles) {
+                activities.addAll(definitions.getRoleActivities(role));
+            }
+        }
+        return activities;
+    }
+
+    @Override
+    public boolean isAuthorizedActivity(IUser<UserId> user, IActivity activity) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        try {
+            return authorizationPool.isAuthorizedActivityFromPermissions(user, activity,
+                    () -> getActivities(authorizationService.getUserRoles(user)));
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading the activities of user '" + user + "'.", e);
+        }
+    }
+
+    @Override
+    public boolean isAuthorizedActivity(IUser<UserId> user, IGroup<GroupId> organization, IActivity activity) throws UserManagementException,
+            UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        try {
+            return authorizationPool.isAuthorizedActivityFromPermissions(user, organization, activity,
+                    () -> getActivities(authorizationService.getUserRoles(user, organization)));
+        } catch (UserManagementException | UserDoesNotExistException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading the activities of user '" + user + "'.", e);
+        }
+    }
+
+    @Override
+    public Map<IActivity, Boolean> isAuthorizedActivities(IUser<UserId> user, Collection<IActivity> activities) throws UserManagementException,
+            UserDoesNotExistException, InvalidCredentialsException {
+        try {
+            return authorizationPool.isAuthorizedActivitiesFromPermissions(user, null, activities,
+                    () -> getActivities(authorizationService.getUserRoles(user)));
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading the activities of user '" + user + "'.", e);
+        }
+    }
+
+    @Override
+    public Map<IActivity, Boolean> isAuthorizedActivities(IUser<UserId> user, IGroup<GroupId> organization, Collection<IActivity> activities)
+            throws UserManagementException, UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        try {
+            return authorizationPool.isAuthorizedActivitiesFromPermissions(user, organization, activities,
+                    () -> getActivities(authorizationService.getUserRoles(user, organization)));
+        } catch (UserManagementException | UserDoesNotExistException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading the activities of user '" + user + "'.", e);
+        }
+    }
+
+    /**
+     * Discards the cached permissions of a user, i.e. after its roles have changed.
+     *
+     * @param user the user.
+     */
+    public void removeUser(IUser<UserId> user) {
+        authorizationPool.removeUser(user);
+    }
+}
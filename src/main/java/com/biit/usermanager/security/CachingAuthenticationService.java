@@ -0,0 +1,124 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.UserPool;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationBus;
+import com.biit.usermanager.entity.pool.loader.SingleFlight;
+import com.biit.usermanager.security.exceptions.InvalidCredentialsException;
+import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
+import com.biit.usermanager.security.exceptions.UserManagementException;
+
+/**
+ * Adds the user pool to the lookups of users by email of any {@link IAuthenticationService}. Emails that do not exist
+ * are remembered for the negative expiration time of the pool, so repeated probes of unknown emails do not reach the
+ * delegate. Changes are published as in {@link InvalidatingAuthenticationService}, and the pool is subscribed to them.
+ *
+ * @param <UserId>  the user id type.
+ * @param <GroupId> the group id type.
+ */
+public class CachingAuthenticationService<UserId, GroupId> extends InvalidatingAuthenticationService<UserId, GroupId> {
+
+    private final UserPool<UserId, ?> userPool;
+    private final SingleFlight<String, IUser<UserId>> loads;
+
+    public CachingAuthenticationService(IAuthenticationService<UserId, GroupId> delegate, UserPool<UserId, ?> userPool) {
+        this(delegate, userPool, new InvalidationBus());
+    }
+
+    /**
+     * Creates the service using an existing pool, that can be shared with a {@link CachingAuthorizationService}.
+     *
+     * @param delegate        the service that access to the backend.
+     * @param userPool        the pool for users.
+     * @param invalidationBus where the changes are published. The pool is subscribed to it.
+     */
+    public CachingAuthenticationService(IAuthenticationService<UserId, GroupId> delegate, UserPool<UserId, ?> userPool,
+                                        InvalidationBus invalidationBus) {
+        super(delegate, invalidationBus);
+        this.userPool = userPool;
+        this.loads = new SingleFlight<>();
+        invalidationBus.subscribe(userPool);
+    }
+
+    public UserPool<UserId, ?> getUserPool() {
+        return userPool;
+    }
+
+    @Override
+    public IUser<UserId> getUserByEmail(String userEmail) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException {
+        if (userEmail == null) {
+            return super.getUserByEmail(userEmail);
+        }
+        final IUser<UserId> user = userPool.getUserByEmailAddress(userEmail);
+        if (user != null) {
+            return user;
+        }
+        if (userPool.isMissingEmailAddress(userEmail)) {
+            throw new UserDoesNotExistException("User with email '" + userEmail + "' does not exist.");
+        }
+        try {
+            return loads.load(userEmail, () -> {
+                try {
+                    final IUser<UserId> loaded = super.getUserByEmail(userEmail);
+                    if (loaded != null) {
+                        userPool.addUser(loaded);
+                    }
+                    return loaded;
+                } catch (UserDoesNotExistException e) {
+                    userPool.addMissingEmailAddress(userEmail);
+                    throw e;
+                }
+            });
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading user with email '" + userEmail + "'.", e);
+        }
+    }
+
+    @Override
+    public IUser<UserId> addUser(IGroup<GroupId> company, String password, String screenName, String emailAddress, String locale,
+                                 String firstName, String middleName, String lastName) throws UserManagementException,
+            InvalidCredentialsException {
+        final IUser<UserId> user = super.addUser(company, password, screenName, emailAddress, locale, firstName, middleName, lastName);
+        // The email may have been remembered as missing.
+        userPool.addUser(user);
+        return user;
+    }
+
+    @Override
+    public IUser<UserId> addUser(IUser<UserId> user) throws UserManagementException, InvalidCredentialsException {
+        final IUser<UserId> addedUser = super.addUser(user);
+        userPool.addUser(addedUser);
+        return addedUser;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        userPool.reset();
+    }
+}
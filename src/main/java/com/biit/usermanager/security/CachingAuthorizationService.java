@@ -0,0 +1,922 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IElement;
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.BulkResult;
+import com.biit.usermanager.entity.pool.GroupPool;
+import com.biit.usermanager.entity.pool.LongGroupPool;
+import com.biit.usermanager.entity.pool.LongRolePool;
+import com.biit.usermanager.entity.pool.LongUserPool;
+import com.biit.usermanager.entity.pool.RolePool;
+import com.biit.usermanager.entity.pool.UserPool;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationBus;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationListener;
+import com.biit.usermanager.entity.pool.loader.SingleFlight;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import com.biit.usermanager.entity.pool.metrics.PoolMetricsExporter;
+import com.biit.usermanager.entity.pool.snapshot.PoolSnapshot;
+import com.biit.usermanager.entity.pool.snapshot.PoolSnapshotCodecs;
+import com.biit.usermanager.security.exceptions.InvalidCredentialsException;
+import com.biit.usermanager.security.exceptions.OrganizationDoesNotExistException;
+import com.biit.usermanager.security.exceptions.RoleDoesNotExistsException;
+import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
+import com.biit.usermanager.security.exceptions.UserManagementException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Adds the user, group and role pools to any {@link IAuthorizationService}. Queries are served from the pools and only
+ * the misses reach the delegate, whose results are stored for the next time. Organizations and roles that do not exist
+ * are also remembered for the negative expiration time of the pools.
+ * <p>
+ * Concurrent misses of the same entry are coalesced: only one thread queries the delegate and the others wait for its
+ * result.
+ * <p>
+ * After a restart, the pools can be filled lazily from a {@link PoolSnapshot} written by a previous run: misses are
+ * looked up in the snapshot before asking the delegate.
+ *
+ * @param <UserId>  the user id type.
+ * @param <GroupId> the group id type.
+ * @param <RoleId>  the role id type.
+ */
+public class CachingAuthorizationService<UserId, GroupId, RoleId> implements IAuthorizationService<UserId, GroupId, RoleId>,
+        InvalidationListener {
+
+    private static final String TAG_SEPARATOR = "#";
+    private static final String ALL_ORGANIZATIONS_TAG = "all-organizations";
+    private static final String USER_ORGANIZATIONS_TAG = "user-organizations";
+    private static final String ORGANIZATION_ROLES_TAG = "organization-roles";
+    private static final String ROLE_USERS_TAG = "role-users";
+    private static final String USER_CHILDREN_ORGANIZATIONS_TAG = "user-children-organizations";
+
+    // Loads that are not stored as a tag.
+    private static final String ORGANIZATION_USERS = "organization-users";
+    private static final String ORGANIZATION_BY_ID = "organization-by-id";
+    private static final String ORGANIZATION_BY_NAME = "organization-by-name";
+    private static final String ROLE_BY_ID = "role-by-id";
+    private static final String ROLE_BY_NAME = "role-by-name";
+    private static final String GROUP_ROLES = "group-roles";
+    private static final String USER_GROUPS = "user-groups";
+    private static final String USER_ROLES = "user-roles";
+    private static final String USER_ORGANIZATION_ROLES = "user-organization-roles";
+    private static final String USER_PARENT_ORGANIZATIONS = "user-parent-organizations";
+    private static final List<String> QUERIES = Arrays.asList(ALL_ORGANIZATIONS_TAG, USER_ORGANIZATIONS_TAG, ORGANIZATION_ROLES_TAG,
+            ROLE_USERS_TAG, USER_CHILDREN_ORGANIZATIONS_TAG, ORGANIZATION_USERS, ORGANIZATION_BY_ID, ORGANIZATION_BY_NAME, ROLE_BY_ID,
+            ROLE_BY_NAME, GROUP_ROLES, USER_GROUPS, USER_ROLES, USER_ORGANIZATION_ROLES, USER_PARENT_ORGANIZATIONS);
+
+    private final IAuthorizationService<UserId, GroupId, RoleId> delegate;
+    private final UserPool<UserId, RoleId> userPool;
+    private final GroupPool<UserId, GroupId> groupPool;
+    private final RolePool<UserId, GroupId, RoleId> rolePool;
+    private final SingleFlight<List<Object>, Object> loads;
+    private final InvalidationBus invalidationBus;
+    // Time of the queries to the delegate, by query type.
+    private final Map<String, CacheMetrics> loadMetrics;
+    private volatile PoolSnapshot<UserId, GroupId, RoleId> snapshot;
+
+    public CachingAuthorizationService(IAuthorizationService<UserId, GroupId, RoleId> delegate) {
+        this(delegate, new UserPool<>(), new GroupPool<>(), new RolePool<>());
+    }
+
+    public CachingAuthorizationService(IAuthorizationService<UserId, GroupId, RoleId> delegate, UserPool<UserId, RoleId> userPool,
+                                       GroupPool<UserId, GroupId> groupPool, RolePool<UserId, GroupId, RoleId> rolePool) {
+        this(delegate, userPool, groupPool, rolePool, new InvalidationBus());
+    }
+
+    /**
+     * Creates the service with pools that store the ids as primitives.
+     *
+     * @param delegate the service that access to the backend. All its ids are {@link Long}.
+     * @return the service.
+     */
+    public static CachingAuthorizationService<Long, Long, Long> forLongIds(IAuthorizationService<Long, Long, Long> delegate) {
+        return new CachingAuthorizationService<>(delegate, new LongUserPool(), new LongGroupPool(), new LongRolePool());
+    }
+
+    /**
+     * Creates the service using existing pools, that can be shared with other services.
+     *
+     * @param delegate        the service that access to the backend.
+     * @param userPool        the pool for users.
+     * @param groupPool       the pool for groups and organizations.
+     * @param rolePool        the pool for roles.
+     * @param invalidationBus where the changes are published. The pools and this service are subscribed to it. Other
+     *                        pools, as an {@link AuthorizationPool}, can subscribe to it too.
+     */
+    public CachingAuthorizationService(IAuthorizationService<UserId, GroupId, RoleId> delegate, UserPool<UserId, RoleId> userPool,
+                                       GroupPool<UserId, GroupId> groupPool, RolePool<UserId, GroupId, RoleId> rolePool,
+                                       InvalidationBus invalidationBus) {
+        this.delegate = delegate;
+        this.userPool = userPool;
+        this.groupPool = groupPool;
+        this.rolePool = rolePool;
+        this.loads = new SingleFlight<>();
+        this.invalidationBus = invalidationBus;
+        this.loadMetrics = new HashMap<>();
+        for (final String query : QUERIES) {
+            loadMetrics.put(query, new CacheMetrics());
+        }
+        invalidationBus.subscribe(userPool);
+        invalidationBus.subscribe(groupPool);
+        invalidationBus.subscribe(rolePool);
+        invalidationBus.subscribe(this);
+    }
+
+    private static String tag(String type, Object... ids) {
+        final StringBuilder tag = new StringBuilder(type);
+        for (final Object id : ids) {
+            tag.append(TAG_SEPARATOR).append(id);
+        }
+        return tag.toString();
+    }
+
+    private static List<Object> key(String type, Object... ids) {
+        final List<Object> key = new ArrayList<>(ids.length + 1);
+        key.add(type);
+        key.addAll(Arrays.asList(ids));
+        return key;
+    }
+
+    /**
+     * Runs a loader, or waits for the loader of the same key that is already running.
+     *
+     * @param key    identifies the query.
+     * @param loader queries the delegate and stores the result in the pools.
+     * @param <T>    the type of the result.
+     * @return the result of the loader.
+     * @throws Exception the exception thrown by the loader.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T load(List<Object> key, Callable<T> loader) throws Exception {
+        final String keyType = String.valueOf(key.get(0));
+        final CacheMetrics metrics = loadMetrics.get(keyType.contains(TAG_SEPARATOR)
+                ? keyType.substring(0, keyType.indexOf(TAG_SEPARATOR)) : keyType);
+        return (T) loads.load(key, () -> {
+            final long start = System.nanoTime();
+            boolean success = false;
+            try {
+                final T result = loader.call();
+                success = true;
+                return result;
+            } finally {
+                if (metrics != null) {
+                    metrics.recordLoad(System.nanoTime() - start, success);
+                }
+            }
+        });
+    }
+
+    /**
+     * Time of the queries to the delegate.
+     *
+     * @return the statistics by query type.
+     */
+    public Map<String, CacheMetrics> getLoadMetrics() {
+        return Collections.unmodifiableMap(loadMetrics);
+    }
+
+    /**
+     * Publishes as JMX beans the statistics of the pools and the time of the queries to the delegate.
+     *
+     * @param name prefix of the pool names in the beans.
+     */
+    public void registerMBeans(String name) {
+        userPool.registerMBeans(name + "-users");
+        groupPool.registerMBeans(name + "-groups");
+        rolePool.registerMBeans(name + "-roles");
+        PoolMetricsExporter.register(name + "-backend", loadMetrics);
+    }
+
+    public void unregisterMBeans(String name) {
+        userPool.unregisterMBeans(name + "-users");
+        groupPool.unregisterMBeans(name + "-groups");
+        rolePool.unregisterMBeans(name + "-roles");
+        PoolMetricsExporter.unregister(name + "-backend", loadMetrics);
+    }
+
+    private static Object getId(IElement<?> element) {
+        return element != null ? element.getUniqueId() : null;
+    }
+
+    /**
+     * Serves the misses of the pools from a snapshot, before asking the delegate.
+     *
+     * @param snapshot the snapshot or null to stop using it.
+     */
+    public void setSnapshot(PoolSnapshot<UserId, GroupId, RoleId> snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public PoolSnapshot<UserId, GroupId, RoleId> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Writes the content of the pools, to be restored with {@link #setSnapshot(PoolSnapshot)} after a restart.
+     *
+     * @param snapshotFile the file to create or replace.
+     * @param codecs       how ids and elements are written.
+     * @return the number of entries written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int writeSnapshot(Path snapshotFile, PoolSnapshotCodecs<UserId, GroupId, RoleId> codecs) throws IOException {
+        return PoolSnapshot.write(snapshotFile, codecs, userPool, groupPool, rolePool);
+    }
+
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    public IAuthorizationService<UserId, GroupId, RoleId> getDelegate() {
+        return delegate;
+    }
+
+    public UserPool<UserId, RoleId> getUserPool() {
+        return userPool;
+    }
+
+    public GroupPool<UserId, GroupId> getGroupPool() {
+        return groupPool;
+    }
+
+    public RolePool<UserId, GroupId, RoleId> getRolePool() {
+        return rolePool;
+    }
+
+    @Override
+    public Set<IUser<UserId>> getAllUsers() throws UserManagementException, InvalidCredentialsException {
+        final Set<IUser<UserId>> users = delegate.getAllUsers();
+        if (users != null) {
+            for (final IUser<UserId> user : users) {
+                userPool.addUser(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public Set<IUser<UserId>> getAllUsers(IGroup<GroupId> group) throws UserManagementException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        if (group == null) {
+            return delegate.getAllUsers(group);
+        }
+        final Set<IUser<UserId>> users = groupPool.getGroupUsers(group.getUniqueId());
+        if (users != null) {
+            return users;
+        }
+        try {
+            return load(key(ORGANIZATION_USERS, group.getUniqueId()), () -> {
+                final Set<IUser<UserId>> loaded = delegate.getAllUsers(group);
+                groupPool.addGroupUsers(group.getUniqueId(), loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | OrganizationDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading users of '" + group + "'.", e);
+        }
+    }
+
+    @Override
+    public IGroup<GroupId> getOrganization(GroupId organizationId) throws UserManagementException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        final IGroup<GroupId> organization = groupPool.getGroupById(organizationId);
+        if (organization != null) {
+            return organization;
+        }
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            final IGroup<GroupId> restored = currentSnapshot.restoreGroup(organizationId, groupPool);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        if (groupPool.isMissingElement(organizationId)) {
+            throw new OrganizationDoesNotExistException("Organization '" + organizationId + "' does not exist.");
+        }
+        try {
+            return load(key(ORGANIZATION_BY_ID, organizationId), () -> {
+                try {
+                    final IGroup<GroupId> loaded = delegate.getOrganization(organizationId);
+                    if (loaded != null) {
+                        groupPool.addGroup(loaded);
+                    }
+                    return loaded;
+                } catch (OrganizationDoesNotExistException e) {
+                    groupPool.addMissingElement(organizationId);
+                    throw e;
+                }
+            });
+        } catch (UserManagementException | OrganizationDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading organization '" + organizationId + "'.", e);
+        }
+    }
+
+    @Override
+    public IGroup<GroupId> getOrganization(String organizationName) throws UserManagementException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        final IGroup<GroupId> organization = groupPool.getGroupByName(organizationName);
+        if (organization != null) {
+            return organization;
+        }
+        if (groupPool.isMissingUniqueName(organizationName)) {
+            throw new OrganizationDoesNotExistException("Organization '" + organizationName + "' does not exist.");
+        }
+        try {
+            return load(key(ORGANIZATION_BY_NAME, organizationName), () -> {
+                try {
+                    final IGroup<GroupId> loaded = delegate.getOrganization(organizationName);
+                    if (loaded != null) {
+                        groupPool.addGroup(loaded);
+                    }
+                    return loaded;
+                } catch (OrganizationDoesNotExistException e) {
+                    groupPool.addMissingUniqueName(organizationName);
+                    throw e;
+                }
+            });
+        } catch (UserManagementException | OrganizationDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading organization '" + organizationName + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IGroup<GroupId>> getAllAvailableOrganizations() throws UserManagementException, InvalidCredentialsException {
+        final Set<IGroup<GroupId>> organizations = groupPool.getElementsByTag(ALL_ORGANIZATIONS_TAG);
+        if (organizations != null) {
+            return organizations;
+        }
+        try {
+            return load(key(ALL_ORGANIZATIONS_TAG), () -> {
+                final Set<IGroup<GroupId>> loaded = delegate.getAllAvailableOrganizations();
+                if (loaded != null) {
+                    for (final IGroup<GroupId> organization : loaded) {
+                        groupPool.addGroup(organization);
+                    }
+                    groupPool.addGroupByTag(loaded, ALL_ORGANIZATIONS_TAG);
+                }
+                return loaded;
+            });
+        } catch (UserManagementException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading organizations.", e);
+        }
+    }
+
+    @Override
+    public IRole<RoleId> getRole(RoleId roleId) throws UserManagementException, RoleDoesNotExistsException, InvalidCredentialsException {
+        final IRole<RoleId> role = rolePool.getRoleById(roleId);
+        if (role != null) {
+            return role;
+        }
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            final IRole<RoleId> restored = currentSnapshot.restoreRole(roleId, rolePool);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        if (rolePool.isMissingElement(roleId)) {
+            throw new RoleDoesNotExistsException("Role '" + roleId + "' does not exist.");
+        }
+        try {
+            return load(key(ROLE_BY_ID, roleId), () -> {
+                try {
+                    final IRole<RoleId> loaded = delegate.getRole(roleId);
+                    if (loaded != null) {
+                        rolePool.addElement(loaded);
+                    }
+                    return loaded;
+                } catch (RoleDoesNotExistsException e) {
+                    rolePool.addMissingElement(roleId);
+                    throw e;
+                }
+            });
+        } catch (UserManagementException | RoleDoesNotExistsException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading role '" + roleId + "'.", e);
+        }
+    }
+
+    @Override
+    public IRole<RoleId> getRole(String roleName) throws UserManagementException, RoleDoesNotExistsException, InvalidCredentialsException {
+        final IRole<RoleId> role = rolePool.getRoleByName(roleName);
+        if (role != null) {
+            return role;
+        }
+        if (rolePool.isMissingUniqueName(roleName)) {
+            throw new RoleDoesNotExistsException("Role '" + roleName + "' does not exist.");
+        }
+        try {
+            return load(key(ROLE_BY_NAME, roleName), () -> {
+                try {
+                    final IRole<RoleId> loaded = delegate.getRole(roleName);
+                    if (loaded != null) {
+                        rolePool.addElement(loaded);
+                    }
+                    return loaded;
+                } catch (RoleDoesNotExistsException e) {
+                    rolePool.addMissingUniqueName(roleName);
+                    throw e;
+                }
+            });
+        } catch (UserManagementException | RoleDoesNotExistsException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading role '" + roleName + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IRole<RoleId>> getUserGroupRoles(IGroup<GroupId> group) throws UserManagementException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        if (group == null) {
+            return delegate.getUserGroupRoles(group);
+        }
+        final Set<IRole<RoleId>> roles = rolePool.getGroupRoles(group);
+        if (roles != null) {
+            return roles;
+        }
+        try {
+            return load(key(GROUP_ROLES, group.getUniqueId()), () -> {
+                final Set<IRole<RoleId>> loaded = delegate.getUserGroupRoles(group);
+                rolePool.addGroupRoles(group, loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | OrganizationDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading roles of '" + group + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IGroup<GroupId>> getUserGroups(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        if (user == null) {
+            return delegate.getUserGroups(user);
+        }
+        final Set<IGroup<GroupId>> groups = groupPool.getGroups(user.getUniqueId());
+        if (groups != null) {
+            return groups;
+        }
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            final Set<IGroup<GroupId>> restored = currentSnapshot.restoreUserGroups(user.getUniqueId(), groupPool);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        try {
+            return load(key(USER_GROUPS, user.getUniqueId()), () -> {
+                final Set<IGroup<GroupId>> loaded = delegate.getUserGroups(user);
+                groupPool.addUserToGroups(user, loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading groups of '" + user + "'.", e);
+        }
+    }
+
+    /**
+     * Gets the groups of the users that are cached, and asks the delegate for the rest in one call.
+     *
+     * @param users the users.
+     * @return the groups of each user.
+     */
+    @Override
+    public Map<IUser<UserId>, Set<IGroup<GroupId>>> getUserGroups(Collection<IUser<UserId>> users) throws UserManagementException,
+            UserDoesNotExistException, InvalidCredentialsException {
+        final BulkResult<IUser<UserId>, Set<IGroup<GroupId>>> cached = groupPool.getGroups(users);
+        final Map<IUser<UserId>, Set<IGroup<GroupId>>> groups = new HashMap<>(cached.getHits());
+        final Set<IUser<UserId>> missing = new HashSet<>(cached.getMissing());
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            for (final IUser<UserId> user : cached.getMissing()) {
+                final Set<IGroup<GroupId>> restored = currentSnapshot.restoreUserGroups(user.getUniqueId(), groupPool);
+                if (restored != null) {
+                    groups.put(user, restored);
+                    missing.remove(user);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            final Map<IUser<UserId>, Set<IGroup<GroupId>>> loaded = delegate.getUserGroups(missing);
+            for (final Map.Entry<IUser<UserId>, Set<IGroup<GroupId>>> userGroups : loaded.entrySet()) {
+                groupPool.addUserToGroups(userGroups.getKey(), userGroups.getValue());
+            }
+            groups.putAll(loaded);
+        }
+        return groups;
+    }
+
+    @Override
+    public Set<IGroup<GroupId>> getUserOrganizations(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        if (user == null) {
+            return delegate.getUserOrganizations(user);
+        }
+        final String tag = tag(USER_ORGANIZATIONS_TAG, user.getUniqueId());
+        final Set<IGroup<GroupId>> organizations = groupPool.getElementsByTag(tag);
+        if (organizations != null) {
+            return organizations;
+        }
+        try {
+            return load(key(tag), () -> {
+                final Set<IGroup<GroupId>> loaded = delegate.getUserOrganizations(user);
+                groupPool.addGroupByTag(loaded, tag);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading organizations of '" + user + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IGroup<GroupId>> getUserOrganizations(IUser<UserId> user, IGroup<GroupId> site) throws UserManagementException,
+            UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        if (user == null || site == null) {
+            return delegate.getUserOrganizations(user, site);
+        }
+        final String tag = tag(USER_ORGANIZATIONS_TAG, user.getUniqueId(), site.getUniqueId());
+        final Set<IGroup<GroupId>> organizations = groupPool.getElementsByTag(tag);
+        if (organizations != null) {
+            return organizations;
+        }
+        try {
+            return load(key(tag), () -> {
+                final Set<IGroup<GroupId>> loaded = delegate.getUserOrganizations(user, site);
+                groupPool.addGroupByTag(loaded, tag);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading organizations of '" + user + "' in '" + site + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IRole<RoleId>> getUserRoles(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        if (user == null) {
+            return delegate.getUserRoles(user);
+        }
+        final Set<IRole<RoleId>> roles = rolePool.getUserRoles(user);
+        if (roles != null) {
+            return roles;
+        }
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            final Set<IRole<RoleId>> restored = currentSnapshot.restoreUserRoles(user.getUniqueId(), rolePool);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        try {
+            return load(key(USER_ROLES, user.getUniqueId()), () -> {
+                final Set<IRole<RoleId>> loaded = delegate.getUserRoles(user);
+                rolePool.setUserRoles(user, loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading roles of '" + user + "'.", e);
+        }
+    }
+
+    /**
+     * Gets the roles of the users that are cached, and asks the delegate for the rest in one call.
+     *
+     * @param users the users.
+     * @return the roles of each user.
+     */
+    @Override
+    public Map<IUser<UserId>, Set<IRole<RoleId>>> getUserRoles(Collection<IUser<UserId>> users) throws UserManagementException,
+            UserDoesNotExistException, InvalidCredentialsException {
+        final BulkResult<IUser<UserId>, Set<IRole<RoleId>>> cached = rolePool.getUserRoles(users);
+        final Map<IUser<UserId>, Set<IRole<RoleId>>> roles = new HashMap<>(cached.getHits());
+        final Set<IUser<UserId>> missing = new HashSet<>(cached.getMissing());
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            for (final IUser<UserId> user : cached.getMissing()) {
+                final Set<IRole<RoleId>> restored = currentSnapshot.restoreUserRoles(user.getUniqueId(), rolePool);
+                if (restored != null) {
+                    roles.put(user, restored);
+                    missing.remove(user);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            final Map<IUser<UserId>, Set<IRole<RoleId>>> loaded = delegate.getUserRoles(missing);
+            for (final Map.Entry<IUser<UserId>, Set<IRole<RoleId>>> userRoles : loaded.entrySet()) {
+                rolePool.setUserRoles(userRoles.getKey(), userRoles.getValue());
+            }
+            roles.putAll(loaded);
+        }
+        return roles;
+    }
+
+    @Override
+    public Set<IRole<RoleId>> getUserRoles(IUser<UserId> user, IGroup<GroupId> organization) throws UserManagementException,
+            UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        if (user == null || organization == null) {
+            return delegate.getUserRoles(user, organization);
+        }
+        final Set<IRole<RoleId>> roles = rolePool.getUserRolesOfGroup(user, organization);
+        if (roles != null) {
+            return roles;
+        }
+        try {
+            return load(key(USER_ORGANIZATION_ROLES, user.getUniqueId(), organization.getUniqueId()), () -> {
+                final Set<IRole<RoleId>> loaded = delegate.getUserRoles(user, organization);
+                rolePool.addUserRolesOfGroup(user, organization, loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading roles of '" + user + "' in '" + organization + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IRole<RoleId>> getAllRoles(IGroup<Long> organization) throws UserManagementException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        if (organization == null) {
+            return delegate.getAllRoles(organization);
+        }
+        final String tag = tag(ORGANIZATION_ROLES_TAG, organization.getUniqueId());
+        final Set<IRole<RoleId>> roles = rolePool.getElementsByTag(tag);
+        if (roles != null) {
+            return roles;
+        }
+        try {
+            return load(key(tag), () -> {
+                final Set<IRole<RoleId>> loaded = delegate.getAllRoles(organization);
+                rolePool.addElementByTag(loaded, tag);
+                return loaded;
+            });
+        } catch (UserManagementException | OrganizationDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading roles of '" + organization + "'.", e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        snapshot = null;
+        userPool.reset();
+        groupPool.reset();
+        rolePool.reset();
+        delegate.reset();
+    }
+
+    @Override
+    public Set<IUser<UserId>> getUsers(IRole<RoleId> role, IGroup<GroupId> organization) throws UserManagementException,
+            RoleDoesNotExistsException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        if (role == null || organization == null) {
+            return delegate.getUsers(role, organization);
+        }
+        final String tag = tag(ROLE_USERS_TAG, role.getUniqueId(), organization.getUniqueId());
+        final Set<IUser<UserId>> users = userPool.getElementsByTag(tag);
+        if (users != null) {
+            return users;
+        }
+        try {
+            return load(key(tag), () -> {
+                final Set<IUser<UserId>> loaded = delegate.getUsers(role, organization);
+                userPool.addElementByTag(loaded, tag);
+                return loaded;
+            });
+        } catch (UserManagementException | RoleDoesNotExistsException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading users with '" + role + "' in '" + organization + "'.", e);
+        }
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserParentOrganizations(IUser<Long> user) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        if (user == null) {
+            return delegate.getUserParentOrganizations(user);
+        }
+        final UserId userId = poolUserId(user);
+        final Set<IGroup<Long>> organizations = groupPool.getUserParentOrganizations(userId);
+        if (organizations != null) {
+            return organizations;
+        }
+        try {
+            return load(key(USER_PARENT_ORGANIZATIONS, userId), () -> {
+                final Set<IGroup<Long>> loaded = delegate.getUserParentOrganizations(user);
+                groupPool.setUserParentOrganizations(userId, loaded);
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | InvalidCredentialsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading parent organizations of '" + user + "'.", e);
+        }
+    }
+
+    /**
+     * Gets the id of a user that the organization methods of the interface identify by {@link Long}. These methods are
+     * used when the users of the pools are identified by {@link Long} too.
+     *
+     * @param user the user.
+     * @return the id of the user in the pools.
+     */
+    @SuppressWarnings("unchecked")
+    private UserId poolUserId(IUser<Long> user) {
+        return (UserId) user.getUniqueId();
+    }
+
+    /**
+     * Gets the children organizations of a user. The result is also used to learn the organization tree of the pool,
+     * that allows to invalidate only a subtree later. Organizations are identified by {@link Long} in the interface, so
+     * they are cached only when the groups of the pool are identified by {@link Long} too.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<IGroup<Long>> getUserChildrenOrganizations(IUser<UserId> user, IGroup<GroupId> parentOrganization)
+            throws UserManagementException, UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        if (user == null || parentOrganization == null || !(parentOrganization.getUniqueId() instanceof Long)) {
+            return delegate.getUserChildrenOrganizations(user, parentOrganization);
+        }
+        final String tag = tag(USER_CHILDREN_ORGANIZATIONS_TAG, user.getUniqueId(), parentOrganization.getUniqueId());
+        // The groups of the pool are identified by Long, as the organizations of the interface.
+        final Set<?> organizations = groupPool.getElementsByTag(tag);
+        if (organizations != null) {
+            return (Set<IGroup<Long>>) organizations;
+        }
+        try {
+            return load(key(tag), () -> {
+                final Set<IGroup<Long>> loaded = delegate.getUserChildrenOrganizations(user, parentOrganization);
+                if (loaded != null) {
+                    final Set<IGroup<GroupId>> children = (Set<IGroup<GroupId>>) (Set<?>) loaded;
+                    groupPool.addChildrenOrganizations(parentOrganization, children);
+                    groupPool.addGroupByTag(children, tag);
+                }
+                return loaded;
+            });
+        } catch (UserManagementException | UserDoesNotExistException | OrganizationDoesNotExistException | InvalidCredentialsException
+                 | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UserManagementException("Error loading children organizations of '" + user + "' in '" + parentOrganization + "'.", e);
+        }
+    }
+
+    @Override
+    public void addUserRole(IUser<UserId> user, IRole<RoleId> role) throws UserManagementException, UserDoesNotExistException,
+            RoleDoesNotExistsException, InvalidCredentialsException {
+        delegate.addUserRole(user, role);
+        invalidationBus.publish(InvalidationEvent.roleGranted(getId(user), getId(role), null));
+    }
+
+    @Override
+    public void addUserOrganizationRole(IUser<UserId> user, IGroup<GroupId> organization, IRole<RoleId> role)
+            throws UserManagementException, UserDoesNotExistException, RoleDoesNotExistsException, OrganizationDoesNotExistException,
+            InvalidCredentialsException {
+        delegate.addUserOrganizationRole(user, organization, role);
+        invalidationBus.publish(InvalidationEvent.roleGranted(getId(user), getId(role), getId(organization)));
+        // The user may now belong to the organization.
+        invalidationBus.publish(InvalidationEvent.membershipChanged(getId(user), getId(organization)));
+    }
+
+    @Override
+    public void createBeans() {
+        delegate.createBeans();
+    }
+
+    @Override
+    public void cleanUserChildrenOrganizations(IUser<Long> user, IGroup<Long> parentOrganization) throws UserManagementException,
+            UserDoesNotExistException, OrganizationDoesNotExistException, InvalidCredentialsException {
+        delegate.cleanUserChildrenOrganizations(user, parentOrganization);
+        invalidationBus.publish(InvalidationEvent.membershipChanged(getId(user), getId(parentOrganization)));
+    }
+
+    /**
+     * Removes the tags that depend on the changed user, role or membership. The maps of the pools are updated by the
+     * pools themselves. The entries of the changed user are no longer restored from the snapshot.
+     *
+     * @param event the change.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onInvalidation(InvalidationEvent event) {
+        final PoolSnapshot<UserId, GroupId, RoleId> currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            currentSnapshot.invalidateUser(event.getUserId());
+        }
+        switch (event.getType()) {
+            case USER_CHANGED:
+            case USER_DELETED:
+                userPool.removeElementsByTagContaining((UserId) event.getUserId());
+                if (event.getUserId() != null) {
+                    removeUserOrganizations(event.getUserId(), null);
+                }
+                break;
+            case ROLE_GRANTED:
+            case ROLE_REVOKED:
+                if (event.getRoleId() == null) {
+                    userPool.removeElementsByTagPrefix(ROLE_USERS_TAG + TAG_SEPARATOR);
+                } else if (event.getGroupId() == null) {
+                    userPool.removeElementsByTagPrefix(tag(ROLE_USERS_TAG, event.getRoleId()) + TAG_SEPARATOR);
+                } else {
+                    userPool.removeElementsByTag(tag(ROLE_USERS_TAG, event.getRoleId(), event.getGroupId()));
+                }
+                break;
+            case MEMBERSHIP_CHANGED:
+                if (event.getUserId() != null) {
+                    removeUserOrganizations(event.getUserId(), event.getGroupId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Removes the cached organizations of a user that can include an organization or any of its descendants. Other
+     * branches of the tree of this user are kept.
+     *
+     * @param userId         the user.
+     * @param organizationId the changed organization, or null to remove all the organizations of the user.
+     */
+    @SuppressWarnings("unchecked")
+    private void removeUserOrganizations(Object userId, Object organizationId) {
+        groupPool.removeGroupsByTag(tag(USER_ORGANIZATIONS_TAG, userId));
+        groupPool.removeUserParentOrganizations((UserId) userId);
+        if (organizationId == null || !groupPool.getOrganizationTree().contains((GroupId) organizationId)) {
+            groupPool.removeElementsByTagPrefix(tag(USER_ORGANIZATIONS_TAG, userId) + TAG_SEPARATOR);
+            groupPool.removeElementsByTagPrefix(tag(USER_CHILDREN_ORGANIZATIONS_TAG, userId) + TAG_SEPARATOR);
+            return;
+        }
+        final GroupId parentId = (GroupId) organizationId;
+        final List<Object> affected = new ArrayList<>();
+        affected.add(parentId);
+        affected.addAll(groupPool.getOrganizationTree().getDescendants(parentId));
+        // Sites above the organization also contain the subtree.
+        for (GroupId ancestorId = groupPool.getOrganizationTree().getParent(parentId); ancestorId != null;
+             ancestorId = groupPool.getOrganizationTree().getParent(ancestorId)) {
+            affected.add(ancestorId);
+        }
+        for (final Object affectedId : affected) {
+            groupPool.removeGroupsByTag(tag(USER_CHILDREN_ORGANIZATIONS_TAG, userId, affectedId));
+            groupPool.removeGroupsByTag(tag(USER_ORGANIZATIONS_TAG, userId, affectedId));
+        }
+    }
+}
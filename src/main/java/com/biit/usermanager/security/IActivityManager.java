@@ -29,6 +29,9 @@ import com.biit.usermanager.security.exceptions.OrganizationDoesNotExistExceptio
 import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
 import com.biit.usermanager.security.exceptions.UserManagementException;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public interface IActivityManager<UserId, GroupId, RoleId> {
@@ -65,6 +68,43 @@ public interface IActivityManager<UserId, GroupId, RoleId> {
             throws UserManagementException, UserDoesNotExistException,
             OrganizationDoesNotExistException, InvalidCredentialsException;
 
+    /**
+     * Checks several activities of a user at once. Implementations can override it to resolve the permissions of the
+     * user only once.
+     *
+     * @param user       the user.
+     * @param activities the activities to check.
+     * @return the decision for each activity.
+     * @throws UserManagementException
+     */
+    default Map<IActivity, Boolean> isAuthorizedActivities(IUser<UserId> user, Collection<IActivity> activities)
+            throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException {
+        final Map<IActivity, Boolean> decisions = new HashMap<>();
+        for (final IActivity activity : activities) {
+            decisions.put(activity, isAuthorizedActivity(user, activity));
+        }
+        return decisions;
+    }
+
+    /**
+     * Checks several activities of a user in a group at once. Implementations can override it to resolve the
+     * permissions of the user only once.
+     *
+     * @param user         the user.
+     * @param organization the group.
+     * @param activities   the activities to check.
+     * @return the decision for each activity.
+     * @throws UserManagementException
+     */
+    default Map<IActivity, Boolean> isAuthorizedActivities(IUser<UserId> user, IGroup<GroupId> organization, Collection<IActivity> activities)
+            throws UserManagementException, UserDoesNotExistException,
+            OrganizationDoesNotExistException, InvalidCredentialsException {
+        final Map<IActivity, Boolean> decisions = new HashMap<>();
+        for (final IActivity activity : activities) {
+            decisions.put(activity, isAuthorizedActivity(user, organization, activity));
+        }
+        return decisions;
+    }
 
     IRoleActivities<RoleId> getRoleActivities() throws InvalidCredentialsException;
 
@@ -30,6 +30,9 @@ import com.biit.usermanager.security.exceptions.RoleDoesNotExistsException;
 import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
 import com.biit.usermanager.security.exceptions.UserManagementException;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public interface IAuthorizationService<UserId, GroupId, RoleId> {
@@ -110,6 +113,22 @@ public interface IAuthorizationService<UserId, GroupId, RoleId> {
      */
     Set<IGroup<GroupId>> getUserGroups(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException;
 
+    /**
+     * Get all groups of several users. Implementations can override it to query the backend only once.
+     *
+     * @param users the users.
+     * @return the groups of each user.
+     * @throws UserManagementException
+     */
+    default Map<IUser<UserId>, Set<IGroup<GroupId>>> getUserGroups(Collection<IUser<UserId>> users) throws UserManagementException,
+            UserDoesNotExistException, InvalidCredentialsException {
+        final Map<IUser<UserId>, Set<IGroup<GroupId>>> groups = new HashMap<>();
+        for (final IUser<UserId> user : users) {
+            groups.put(user, getUserGroups(user));
+        }
+        return groups;
+    }
+
     /**
      * get all user organizations.
      *
@@ -139,6 +158,23 @@ public interface IAuthorizationService<UserId, GroupId, RoleId> {
      */
     Set<IRole<RoleId>> getUserRoles(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException;
 
+    /**
+     * Get the roles of the application of several users. Implementations can override it to query the backend only
+     * once.
+     *
+     * @param users the users.
+     * @return the roles of each user.
+     * @throws UserManagementException
+     */
+    default Map<IUser<UserId>, Set<IRole<RoleId>>> getUserRoles(Collection<IUser<UserId>> users) throws UserManagementException,
+            UserDoesNotExistException, InvalidCredentialsException {
+        final Map<IUser<UserId>, Set<IRole<RoleId>>> roles = new HashMap<>();
+        for (final IUser<UserId> user : users) {
+            roles.put(user, getUserRoles(user));
+        }
+        return roles;
+    }
+
     /**
      * Get user roles of user in a group
      *
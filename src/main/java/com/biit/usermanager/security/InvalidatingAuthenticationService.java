@@ -0,0 +1,128 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IElement;
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationBus;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationEvent;
+import com.biit.usermanager.security.exceptions.AuthenticationRequired;
+import com.biit.usermanager.security.exceptions.InvalidCredentialsException;
+import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
+import com.biit.usermanager.security.exceptions.UserManagementException;
+
+/**
+ * Publishes the changes of users done through an {@link IAuthenticationService} in an {@link InvalidationBus}, so the
+ * pools subscribed to it only remove the entries of the changed user.
+ */
+public class InvalidatingAuthenticationService<UserId, GroupId> implements IAuthenticationService<UserId, GroupId> {
+
+    private final IAuthenticationService<UserId, GroupId> delegate;
+    private final InvalidationBus invalidationBus;
+
+    public InvalidatingAuthenticationService(IAuthenticationService<UserId, GroupId> delegate, InvalidationBus invalidationBus) {
+        this.delegate = delegate;
+        this.invalidationBus = invalidationBus;
+    }
+
+    private static Object getId(IElement<?> element) {
+        return element != null ? element.getUniqueId() : null;
+    }
+
+    public IAuthenticationService<UserId, GroupId> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public IUser<UserId> authenticate(String userMail, String password) throws UserManagementException, AuthenticationRequired,
+            InvalidCredentialsException, UserDoesNotExistException {
+        return delegate.authenticate(userMail, password);
+    }
+
+    @Override
+    public IGroup<GroupId> getDefaultGroup(IUser<UserId> user) throws UserManagementException, UserDoesNotExistException,
+            InvalidCredentialsException {
+        return delegate.getDefaultGroup(user);
+    }
+
+    @Override
+    public IUser<UserId> getUserByEmail(String userEmail) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException {
+        return delegate.getUserByEmail(userEmail);
+    }
+
+    @Override
+    public IUser<UserId> getUserById(long userId) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException {
+        return delegate.getUserById(userId);
+    }
+
+    @Override
+    public boolean isInGroup(IGroup<GroupId> group, IUser<UserId> user) throws UserManagementException, InvalidCredentialsException {
+        return delegate.isInGroup(group, user);
+    }
+
+    @Override
+    public IUser<UserId> updatePassword(IUser<UserId> user, String plainTextPassword) throws UserDoesNotExistException,
+            InvalidCredentialsException, UserManagementException {
+        final IUser<UserId> updatedUser = delegate.updatePassword(user, plainTextPassword);
+        invalidationBus.publish(InvalidationEvent.userChanged(getId(user)));
+        return updatedUser;
+    }
+
+    @Override
+    public IUser<Long> updateUser(IUser<Long> user) throws UserManagementException, UserDoesNotExistException, InvalidCredentialsException {
+        final IUser<Long> updatedUser = delegate.updateUser(user);
+        invalidationBus.publish(InvalidationEvent.userChanged(getId(user)));
+        return updatedUser;
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+    }
+
+    @Override
+    public IUser<UserId> addUser(IGroup<GroupId> company, String password, String screenName, String emailAddress, String locale,
+                                 String firstName, String middleName, String lastName) throws UserManagementException,
+            InvalidCredentialsException {
+        final IUser<UserId> user = delegate.addUser(company, password, screenName, emailAddress, locale, firstName, middleName, lastName);
+        invalidationBus.publish(InvalidationEvent.membershipChanged(getId(user), getId(company)));
+        return user;
+    }
+
+    @Override
+    public IUser<UserId> addUser(IUser<UserId> user) throws UserManagementException, InvalidCredentialsException {
+        return delegate.addUser(user);
+    }
+
+    @Override
+    public void deleteUser(IUser<UserId> user) throws UserManagementException, InvalidCredentialsException {
+        delegate.deleteUser(user);
+        invalidationBus.publish(InvalidationEvent.userDeleted(getId(user)));
+    }
+
+    @Override
+    public void createBeans() {
+        delegate.createBeans();
+    }
+}
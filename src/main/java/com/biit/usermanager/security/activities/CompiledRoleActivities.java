@@ -0,0 +1,154 @@
+package com.biit.usermanager.security.activities;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.pool.config.FileWatcher;
+import com.biit.usermanager.security.IActivity;
+import com.biit.usermanager.security.IRoleActivities;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * {@link IRoleActivities} backed by a {@link RoleActivitiesIndex}. Readers never lock: the index is immutable and it is
+ * replaced as a whole when the definition changes. When created from a file, the file can be watched and the index is
+ * rebuilt and swapped on each modification. If the new file cannot be read, the previous index is kept. Each new index
+ * is notified to the {@link RoleActivitiesListener}s, that discard what they computed with the previous one.
+ */
+public class CompiledRoleActivities<RoleId> implements IRoleActivities<RoleId>, AutoCloseable {
+
+    private final Path definitionFile;
+    private final RoleActivitiesDefinitionReader<RoleId> reader;
+    private volatile RoleActivitiesIndex<RoleId> index;
+    private FileWatcher watcher;
+    // Managers are not kept alive only because they listen to changes.
+    private final Set<RoleActivitiesListener> listeners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    public CompiledRoleActivities(RoleActivitiesIndex<RoleId> index) {
+        this.definitionFile = null;
+        this.reader = null;
+        this.index = index;
+    }
+
+    public CompiledRoleActivities(Path definitionFile, RoleActivitiesDefinitionReader<RoleId> reader) throws IOException {
+        this.definitionFile = definitionFile;
+        this.reader = reader;
+        this.index = reader.read(definitionFile);
+    }
+
+    @Override
+    public Set<IActivity> getRoleActivities(IRole<RoleId> role) {
+        return index.getRoleActivities(role);
+    }
+
+    @Override
+    public Set<IActivity> getRoleActivities(String roleName) {
+        return index.getRoleActivities(roleName);
+    }
+
+    public RoleActivitiesIndex<RoleId> getIndex() {
+        return index;
+    }
+
+    public void setIndex(RoleActivitiesIndex<RoleId> index) {
+        this.index = index;
+        notifyListeners();
+    }
+
+    /**
+     * Reads again the definition file and replaces the index.
+     *
+     * @return true if the index has been replaced.
+     */
+    public boolean reload() {
+        if (definitionFile == null) {
+            return false;
+        }
+        try {
+            index = reader.read(definitionFile);
+            BiitPoolLogger.info(this.getClass(), "Role activities reloaded from '" + definitionFile + "'.");
+            notifyListeners();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            BiitPoolLogger.errorMessage(this.getClass(), e);
+            return false;
+        }
+    }
+
+    private void notifyListeners() {
+        final List<RoleActivitiesListener> currentListeners;
+        synchronized (listeners) {
+            currentListeners = new ArrayList<>(listeners);
+        }
+        for (final RoleActivitiesListener listener : currentListeners) {
+            try {
+                listener.onRoleActivitiesChanged(this);
+            } catch (RuntimeException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+    }
+
+    /**
+     * Notifies a listener each time that the index is replaced. Only a weak reference to the listener is kept.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(RoleActivitiesListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(RoleActivitiesListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Starts watching the definition file. Each modification reloads the index.
+     *
+     * @throws IOException if the file cannot be watched.
+     */
+    public synchronized void watch() throws IOException {
+        if (definitionFile != null && watcher == null) {
+            watcher = new FileWatcher(definitionFile, this::reload);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+}
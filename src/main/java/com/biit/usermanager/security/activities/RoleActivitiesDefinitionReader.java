@@ -0,0 +1,89 @@
+package com.biit.usermanager.security.activities;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.security.IActivity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Reads a role definition file in properties format. Each line defines a role and its activities as comma separated
+ * tags:
+ *
+ * <pre>
+ * administrator = user.create, user.delete, report.view
+ * viewer = report.view
+ * </pre>
+ * <p>
+ * The activity of each tag is obtained from a resolver, so the same {@link IActivity} instances of the application are
+ * used. Unknown tags are ignored. If a role id resolver is set, roles can also be found by id.
+ */
+public class RoleActivitiesDefinitionReader<RoleId> {
+
+    private static final String TAG_SEPARATOR = ",";
+
+    private final Function<String, IActivity> activityResolver;
+    private final Function<String, RoleId> roleIdResolver;
+
+    public RoleActivitiesDefinitionReader(Function<String, IActivity> activityResolver) {
+        this(activityResolver, roleName -> null);
+    }
+
+    public RoleActivitiesDefinitionReader(Function<String, IActivity> activityResolver, Function<String, RoleId> roleIdResolver) {
+        this.activityResolver = activityResolver;
+        this.roleIdResolver = roleIdResolver;
+    }
+
+    public RoleActivitiesIndex<RoleId> read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    public RoleActivitiesIndex<RoleId> read(Reader reader) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(reader);
+        final RoleActivitiesIndex.Builder<RoleId> builder = new RoleActivitiesIndex.Builder<>();
+        for (final String roleName : properties.stringPropertyNames()) {
+            final List<IActivity> activities = new ArrayList<>();
+            for (final String tag : properties.getProperty(roleName).split(TAG_SEPARATOR)) {
+                if (!tag.trim().isEmpty()) {
+                    final IActivity activity = activityResolver.apply(tag.trim());
+                    if (activity != null) {
+                        activities.add(activity);
+                    }
+                }
+            }
+            builder.addRole(roleName.trim(), roleIdResolver.apply(roleName.trim()), activities);
+        }
+        return builder.build();
+    }
+}
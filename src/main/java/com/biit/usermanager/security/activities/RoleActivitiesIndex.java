@@ -0,0 +1,124 @@
+package com.biit.usermanager.security.activities;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.security.IActivity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable relationship between roles and activities. Roles are found by id or by name in a single hash lookup.
+ * Roles with the same activities share the same unmodifiable set, so a definition with many similar roles keeps only
+ * one copy of each distinct set. Use {@link Builder} to create it.
+ */
+public final class RoleActivitiesIndex<RoleId> {
+
+    private final Map<RoleId, Set<IActivity>> activitiesById;
+    private final Map<String, Set<IActivity>> activitiesByName;
+
+    private RoleActivitiesIndex(Map<RoleId, Set<IActivity>> activitiesById, Map<String, Set<IActivity>> activitiesByName) {
+        this.activitiesById = activitiesById;
+        this.activitiesByName = activitiesByName;
+    }
+
+    public static <RoleId> RoleActivitiesIndex<RoleId> empty() {
+        return new RoleActivitiesIndex<>(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Gets the activities of a role. The role is searched by id and, if not found, by name.
+     *
+     * @param role the role.
+     * @return the activities or an empty set if the role is not defined.
+     */
+    public Set<IActivity> getRoleActivities(IRole<RoleId> role) {
+        if (role == null) {
+            return Collections.emptySet();
+        }
+        final Set<IActivity> activities = activitiesById.get(role.getUniqueId());
+        if (activities != null) {
+            return activities;
+        }
+        return getRoleActivities(role.getUniqueName());
+    }
+
+    public Set<IActivity> getRoleActivities(String roleName) {
+        if (roleName == null) {
+            return Collections.emptySet();
+        }
+        return activitiesByName.getOrDefault(roleName, Collections.emptySet());
+    }
+
+    public Set<String> getRoleNames() {
+        return Collections.unmodifiableSet(activitiesByName.keySet());
+    }
+
+    public int size() {
+        return activitiesByName.size();
+    }
+
+    public static class Builder<RoleId> {
+        private final Map<RoleId, Set<IActivity>> activitiesById = new HashMap<>();
+        private final Map<String, Set<IActivity>> activitiesByName = new HashMap<>();
+        private final Map<Set<IActivity>, Set<IActivity>> sharedSets = new HashMap<>();
+
+        /**
+         * Defines the activities of a role.
+         *
+         * @param roleName   the name of the role.
+         * @param roleId     the id of the role. Can be null if only the name is known.
+         * @param activities the activities of the role.
+         * @return this builder.
+         */
+        public Builder<RoleId> addRole(String roleName, RoleId roleId, Collection<IActivity> activities) {
+            final Set<IActivity> shared = share(activities);
+            if (roleName != null) {
+                activitiesByName.put(roleName, shared);
+            }
+            if (roleId != null) {
+                activitiesById.put(roleId, shared);
+            }
+            return this;
+        }
+
+        public Builder<RoleId> addRole(IRole<RoleId> role, Collection<IActivity> activities) {
+            return addRole(role.getUniqueName(), role.getUniqueId(), activities);
+        }
+
+        private Set<IActivity> share(Collection<IActivity> activities) {
+            final Set<IActivity> set = Collections.unmodifiableSet(new HashSet<>(activities));
+            final Set<IActivity> existing = sharedSets.putIfAbsent(set, set);
+            return existing != null ? existing : set;
+        }
+
+        public RoleActivitiesIndex<RoleId> build() {
+            return new RoleActivitiesIndex<>(new HashMap<>(activitiesById), new HashMap<>(activitiesByName));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IActivity;
+import com.biit.usermanager.security.IActivityManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link IActivityManager}. The future is completed with the result or with the same
+ * exception that the blocking method throws.
+ */
+public interface AsyncActivityManager<UserId, GroupId, RoleId> {
+
+    CompletableFuture<Set<IActivity>> getRoleActivities(IRole<RoleId> role);
+
+    CompletableFuture<Boolean> isAuthorizedActivity(IUser<UserId> user, IActivity activity);
+
+    CompletableFuture<Boolean> isAuthorizedActivity(IUser<UserId> user, IGroup<GroupId> organization, IActivity activity);
+
+    CompletableFuture<Map<IActivity, Boolean>> isAuthorizedActivities(IUser<UserId> user, Collection<IActivity> activities);
+
+    CompletableFuture<Map<IActivity, Boolean>> isAuthorizedActivities(IUser<UserId> user, IGroup<GroupId> organization,
+                                                                      Collection<IActivity> activities);
+}
@@ -0,0 +1,78 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IActivity;
+import com.biit.usermanager.security.IActivityManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs any blocking {@link IActivityManager} in a {@link BlockingCallExecutor}.
+ */
+public class AsyncActivityManagerAdapter<UserId, GroupId, RoleId> implements AsyncActivityManager<UserId, GroupId, RoleId> {
+
+    private final IActivityManager<UserId, GroupId, RoleId> activityManager;
+    private final BlockingCallExecutor executor;
+
+    public AsyncActivityManagerAdapter(IActivityManager<UserId, GroupId, RoleId> activityManager, BlockingCallExecutor executor) {
+        this.activityManager = activityManager;
+        this.executor = executor;
+    }
+
+    public IActivityManager<UserId, GroupId, RoleId> getActivityManager() {
+        return activityManager;
+    }
+
+    @Override
+    public CompletableFuture<Set<IActivity>> getRoleActivities(IRole<RoleId> role) {
+        return executor.submit(() -> activityManager.getRoleActivities(role));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isAuthorizedActivity(IUser<UserId> user, IActivity activity) {
+        return executor.submit(() -> activityManager.isAuthorizedActivity(user, activity));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isAuthorizedActivity(IUser<UserId> user, IGroup<GroupId> organization, IActivity activity) {
+        return executor.submit(() -> activityManager.isAuthorizedActivity(user, organization, activity));
+    }
+
+    @Override
+    public CompletableFuture<Map<IActivity, Boolean>> isAuthorizedActivities(IUser<UserId> user, Collection<IActivity> activities) {
+        return executor.submit(() -> activityManager.isAuthorizedActivities(user, activities));
+    }
+
+    @Override
+    public CompletableFuture<Map<IActivity, Boolean>> isAuthorizedActivities(IUser<UserId> user, IGroup<GroupId> organization,
+                                                                             Collection<IActivity> activities) {
+        return executor.submit(() -> activityManager.isAuthorizedActivities(user, organization, activities));
+    }
+}
@@ -0,0 +1,57 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IAuthenticationService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link IAuthenticationService}. The future is completed with the result or with the same
+ * exception that the blocking method throws.
+ */
+public interface AsyncAuthenticationService<UserId, GroupId> {
+
+    CompletableFuture<IUser<UserId>> authenticate(String userMail, String password);
+
+    CompletableFuture<IGroup<GroupId>> getDefaultGroup(IUser<UserId> user);
+
+    CompletableFuture<IUser<UserId>> getUserByEmail(String userEmail);
+
+    CompletableFuture<IUser<UserId>> getUserById(long userId);
+
+    CompletableFuture<Boolean> isInGroup(IGroup<GroupId> group, IUser<UserId> user);
+
+    CompletableFuture<IUser<UserId>> updatePassword(IUser<UserId> user, String plainTextPassword);
+
+    CompletableFuture<IUser<Long>> updateUser(IUser<Long> user);
+
+    CompletableFuture<IUser<UserId>> addUser(IGroup<GroupId> company, String password, String screenName, String emailAddress, String locale,
+                                             String firstName, String middleName, String lastName);
+
+    CompletableFuture<IUser<UserId>> addUser(IUser<UserId> user);
+
+    CompletableFuture<Void> deleteUser(IUser<UserId> user);
+}
@@ -0,0 +1,101 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IAuthenticationService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs any blocking {@link IAuthenticationService} in a {@link BlockingCallExecutor}.
+ */
+public class AsyncAuthenticationServiceAdapter<UserId, GroupId> implements AsyncAuthenticationService<UserId, GroupId> {
+
+    private final IAuthenticationService<UserId, GroupId> service;
+    private final BlockingCallExecutor executor;
+
+    public AsyncAuthenticationServiceAdapter(IAuthenticationService<UserId, GroupId> service, BlockingCallExecutor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    public IAuthenticationService<UserId, GroupId> getService() {
+        return service;
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> authenticate(String userMail, String password) {
+        return executor.submit(() -> service.authenticate(userMail, password));
+    }
+
+    @Override
+    public CompletableFuture<IGroup<GroupId>> getDefaultGroup(IUser<UserId> user) {
+        return executor.submit(() -> service.getDefaultGroup(user));
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> getUserByEmail(String userEmail) {
+        return executor.submit(() -> service.getUserByEmail(userEmail));
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> getUserById(long userId) {
+        return executor.submit(() -> service.getUserById(userId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isInGroup(IGroup<GroupId> group, IUser<UserId> user) {
+        return executor.submit(() -> service.isInGroup(group, user));
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> updatePassword(IUser<UserId> user, String plainTextPassword) {
+        return executor.submit(() -> service.updatePassword(user, plainTextPassword));
+    }
+
+    @Override
+    public CompletableFuture<IUser<Long>> updateUser(IUser<Long> user) {
+        return executor.submit(() -> service.updateUser(user));
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> addUser(IGroup<GroupId> company, String password, String screenName, String emailAddress,
+                                                    String locale, String firstName, String middleName, String lastName) {
+        return executor.submit(() -> service.addUser(company, password, screenName, emailAddress, locale, firstName, middleName, lastName));
+    }
+
+    @Override
+    public CompletableFuture<IUser<UserId>> addUser(IUser<UserId> user) {
+        return executor.submit(() -> service.addUser(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteUser(IUser<UserId> user) {
+        return executor.submit(() -> {
+            service.deleteUser(user);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IAuthorizationService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link IAuthorizationService}. Each method returns immediately, and the future is completed
+ * with the result or with the same exception that the blocking method throws. Several lookups can be started at once
+ * and combined when all of them finish.
+ */
+public interface AsyncAuthorizationService<UserId, GroupId, RoleId> {
+
+    CompletableFuture<Set<IUser<UserId>>> getAllUsers();
+
+    CompletableFuture<Set<IUser<UserId>>> getAllUsers(IGroup<GroupId> group);
+
+    CompletableFuture<IGroup<GroupId>> getOrganization(GroupId organizationId);
+
+    CompletableFuture<IGroup<GroupId>> getOrganization(String organizationName);
+
+    CompletableFuture<Set<IGroup<GroupId>>> getAllAvailableOrganizations();
+
+    CompletableFuture<IRole<RoleId>> getRole(RoleId roleId);
+
+    CompletableFuture<IRole<RoleId>> getRole(String roleName);
+
+    CompletableFuture<Set<IRole<RoleId>>> getUserGroupRoles(IGroup<GroupId> group);
+
+    CompletableFuture<Set<IGroup<GroupId>>> getUserGroups(IUser<UserId> user);
+
+    CompletableFuture<Map<IUser<UserId>, Set<IGroup<GroupId>>>> getUserGroups(Collection<IUser<UserId>> users);
+
+    CompletableFuture<Set<IGroup<GroupId>>> getUserOrganizations(IUser<UserId> user);
+
+    CompletableFuture<Set<IGroup<GroupId>>> getUserOrganizations(IUser<UserId> user, IGroup<GroupId> site);
+
+    CompletableFuture<Set<IRole<RoleId>>> getUserRoles(IUser<UserId> user);
+
+    CompletableFuture<Map<IUser<UserId>, Set<IRole<RoleId>>>> getUserRoles(Collection<IUser<UserId>> users);
+
+    CompletableFuture<Set<IRole<RoleId>>> getUserRoles(IUser<UserId> user, IGroup<GroupId> organization);
+
+    CompletableFuture<Set<IRole<RoleId>>> getAllRoles(IGroup<Long> organization);
+
+    CompletableFuture<Set<IUser<UserId>>> getUsers(IRole<RoleId> role, IGroup<GroupId> organization);
+
+    CompletableFuture<Set<IGroup<Long>>> getUserParentOrganizations(IUser<Long> user);
+
+    CompletableFuture<Set<IGroup<Long>>> getUserChildrenOrganizations(IUser<UserId> user, IGroup<GroupId> parentOrganization);
+
+    CompletableFuture<Void> addUserRole(IUser<UserId> user, IRole<RoleId> role);
+
+    CompletableFuture<Void> addUserOrganizationRole(IUser<UserId> user, IGroup<GroupId> organization, IRole<RoleId> role);
+
+    CompletableFuture<Void> cleanUserChildrenOrganizations(IUser<Long> user, IGroup<Long> parentOrganization);
+}
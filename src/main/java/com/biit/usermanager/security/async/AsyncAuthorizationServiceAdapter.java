@@ -0,0 +1,170 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.security.IAuthorizationService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs any blocking {@link IAuthorizationService} in a {@link BlockingCallExecutor}.
+ */
+public class AsyncAuthorizationServiceAdapter<UserId, GroupId, RoleId> implements AsyncAuthorizationService<UserId, GroupId, RoleId> {
+
+    private final IAuthorizationService<UserId, GroupId, RoleId> service;
+    private final BlockingCallExecutor executor;
+
+    public AsyncAuthorizationServiceAdapter(IAuthorizationService<UserId, GroupId, RoleId> service, BlockingCallExecutor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    public IAuthorizationService<UserId, GroupId, RoleId> getService() {
+        return service;
+    }
+
+    @Override
+    public CompletableFuture<Set<IUser<UserId>>> getAllUsers() {
+        return executor.submit(() -> service.getAllUsers());
+    }
+
+    @Override
+    public CompletableFuture<Set<IUser<UserId>>> getAllUsers(IGroup<GroupId> group) {
+        return executor.submit(() -> service.getAllUsers(group));
+    }
+
+    @Override
+    public CompletableFuture<IGroup<GroupId>> getOrganization(GroupId organizationId) {
+        return executor.submit(() -> service.getOrganization(organizationId));
+    }
+
+    @Override
+    public CompletableFuture<IGroup<GroupId>> getOrganization(String organizationName) {
+        return executor.submit(() -> service.getOrganization(organizationName));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<GroupId>>> getAllAvailableOrganizations() {
+        return executor.submit(() -> service.getAllAvailableOrganizations());
+    }
+
+    @Override
+    public CompletableFuture<IRole<RoleId>> getRole(RoleId roleId) {
+        return executor.submit(() -> service.getRole(roleId));
+    }
+
+    @Override
+    public CompletableFuture<IRole<RoleId>> getRole(String roleName) {
+        return executor.submit(() -> service.getRole(roleName));
+    }
+
+    @Override
+    public CompletableFuture<Set<IRole<RoleId>>> getUserGroupRoles(IGroup<GroupId> group) {
+        return executor.submit(() -> service.getUserGroupRoles(group));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<GroupId>>> getUserGroups(IUser<UserId> user) {
+        return executor.submit(() -> service.getUserGroups(user));
+    }
+
+    @Override
+    public CompletableFuture<Map<IUser<UserId>, Set<IGroup<GroupId>>>> getUserGroups(Collection<IUser<UserId>> users) {
+        return executor.submit(() -> service.getUserGroups(users));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<GroupId>>> getUserOrganizations(IUser<UserId> user) {
+        return executor.submit(() -> service.getUserOrganizations(user));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<GroupId>>> getUserOrganizations(IUser<UserId> user, IGroup<GroupId> site) {
+        return executor.submit(() -> service.getUserOrganizations(user, site));
+    }
+
+    @Override
+    public CompletableFuture<Set<IRole<RoleId>>> getUserRoles(IUser<UserId> user) {
+        return executor.submit(() -> service.getUserRoles(user));
+    }
+
+    @Override
+    public CompletableFuture<Map<IUser<UserId>, Set<IRole<RoleId>>>> getUserRoles(Collection<IUser<UserId>> users) {
+        return executor.submit(() -> service.getUserRoles(users));
+    }
+
+    @Override
+    public CompletableFuture<Set<IRole<RoleId>>> getUserRoles(IUser<UserId> user, IGroup<GroupId> organization) {
+        return executor.submit(() -> service.getUserRoles(user, organization));
+    }
+
+    @Override
+    public CompletableFuture<Set<IRole<RoleId>>> getAllRoles(IGroup<Long> organization) {
+        return executor.submit(() -> service.getAllRoles(organization));
+    }
+
+    @Override
+    public CompletableFuture<Set<IUser<UserId>>> getUsers(IRole<RoleId> role, IGroup<GroupId> organization) {
+        return executor.submit(() -> service.getUsers(role, organization));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<Long>>> getUserParentOrganizations(IUser<Long> user) {
+        return executor.submit(() -> service.getUserParentOrganizations(user));
+    }
+
+    @Override
+    public CompletableFuture<Set<IGroup<Long>>> getUserChildrenOrganizations(IUser<UserId> user, IGroup<GroupId> parentOrganization) {
+        return executor.submit(() -> service.getUserChildrenOrganizations(user, parentOrganization));
+    }
+
+    @Override
+    public CompletableFuture<Void> addUserRole(IUser<UserId> user, IRole<RoleId> role) {
+        return executor.submit(() -> {
+            service.addUserRole(user, role);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> addUserOrganizationRole(IUser<UserId> user, IGroup<GroupId> organization, IRole<RoleId> role) {
+        return executor.submit(() -> {
+            service.addUserOrganizationRole(user, organization, role);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> cleanUserChildrenOrganizations(IUser<Long> user, IGroup<Long> parentOrganization) {
+        return executor.submit(() -> {
+            service.cleanUserChildrenOrganizations(user, parentOrganization);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.biit.usermanager.security.async;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs blocking calls in the background and returns their result as a {@link CompletableFuture}. If the JVM supports
+ * virtual threads, each call runs in its own virtual thread and a semaphore limits how many of them access the backend
+ * at the same time. Otherwise, a fixed pool of platform threads of that size is used.
+ * <p>
+ * Exceptions thrown by the call complete the future exceptionally with the original exception.
+ */
+public class BlockingCallExecutor implements AutoCloseable {
+
+    public static final int DEFAULT_MAXIMUM_CONCURRENCY = 64;
+
+    private final ExecutorService executor;
+    // Only used with virtual threads.
+    private final Semaphore permits;
+
+    public BlockingCallExecutor() {
+        this(DEFAULT_MAXIMUM_CONCURRENCY);
+    }
+
+    /**
+     * Creates the executor.
+     *
+     * @param maximumConcurrency maximum number of calls running at the same time.
+     */
+    public BlockingCallExecutor(int maximumConcurrency) {
+        if (maximumConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum concurrency must be positive.");
+        }
+        final ExecutorService virtualThreads = createVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            executor = virtualThreads;
+            permits = new Semaphore(maximumConcurrency);
+        } else {
+            executor = Executors.newFixedThreadPool(maximumConcurrency, runnable -> {
+                final Thread thread = new Thread(runnable, "user-manager-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+            permits = null;
+        }
+    }
+
+    /**
+     * Virtual threads are available from Java 21. Obtained by reflection to keep compatibility with older JVMs.
+     *
+     * @return the executor or null if not available.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            BiitPoolLogger.info(BlockingCallExecutor.class, "Virtual threads not available. Using platform threads.");
+            return null;
+        }
+    }
+
+    /**
+     * Runs a blocking call in the background.
+     *
+     * @param call the call.
+     * @param <T>  the result type.
+     * @return a future completed with the result of the call or with its exception.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(call, future));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(Callable<T> call, CompletableFuture<T> future) {
+        try {
+            if (permits != null) {
+                permits.acquire();
+            }
+            try {
+                future.complete(call.call());
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return permits != null;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
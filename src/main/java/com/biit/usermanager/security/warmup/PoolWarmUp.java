@@ -0,0 +1,255 @@
+package com.biit.usermanager.security.warmup;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.logger.BiitPoolLogger;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.pool.config.PoolConfiguration;
+import com.biit.usermanager.entity.pool.config.PoolConfigurationReader;
+import com.biit.usermanager.security.CachingAuthorizationService;
+import com.biit.usermanager.security.async.BlockingCallExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fills the user, group and role pools of a {@link CachingAuthorizationService} at startup, so the first requests
+ * after a deploy do not all go to the backend. All users and organizations are obtained first, and then the roles and
+ * groups of the users are asked in batches, with a limited number of backend calls running at the same time.
+ * <p>
+ * The pools are ready when the warm-up reaches the required coverage, or when it finishes even if some users failed.
+ * With a coverage of zero they are ready at once and the warm-up only runs in the background.
+ *
+ * @param <UserId>  the user id type.
+ * @param <GroupId> the group id type.
+ * @param <RoleId>  the role id type.
+ */
+public class PoolWarmUp<UserId, GroupId, RoleId> {
+
+    private static final int PROGRESS_LOG_STEPS = 10;
+
+    private final CachingAuthorizationService<UserId, GroupId, RoleId> service;
+    private final int parallelism;
+    private final int batchSize;
+    private final double requiredCoverage;
+    private final List<Consumer<WarmUpProgress>> progressListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CompletableFuture<WarmUpProgress> completion = new CompletableFuture<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final AtomicInteger warmedUsers = new AtomicInteger();
+    private final AtomicInteger failedUsers = new AtomicInteger();
+    private final AtomicInteger loggedStep = new AtomicInteger();
+    private volatile int totalUsers;
+    private volatile boolean finished;
+    private volatile long startTime;
+
+    public PoolWarmUp(CachingAuthorizationService<UserId, GroupId, RoleId> service) {
+        this(service, PoolConfigurationReader.getInstance().getConfiguration());
+    }
+
+    public PoolWarmUp(CachingAuthorizationService<UserId, GroupId, RoleId> service, PoolConfiguration configuration) {
+        this(service, configuration.getWarmUpParallelism(), configuration.getWarmUpBatchSize(), configuration.getWarmUpCoverage());
+    }
+
+    /**
+     * Creates the warm-up.
+     *
+     * @param service          the service whose pools are filled.
+     * @param parallelism      maximum number of backend calls running at the same time.
+     * @param batchSize        users whose roles and groups are asked in the same call.
+     * @param requiredCoverage fraction of users, from 0 to 1, that must be warmed up before the pools are ready.
+     */
+    public PoolWarmUp(CachingAuthorizationService<UserId, GroupId, RoleId> service, int parallelism, int batchSize, double requiredCoverage) {
+        if (parallelism <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Parallelism and batch size must be positive.");
+        }
+        if (requiredCoverage < 0 || requiredCoverage > 1) {
+            throw new IllegalArgumentException("Coverage must be between 0 and 1.");
+        }
+        this.service = service;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.requiredCoverage = requiredCoverage;
+    }
+
+    /**
+     * Notified each time a batch of users finishes, and when the warm-up finishes.
+     *
+     * @param listener the listener.
+     */
+    public void addProgressListener(Consumer<WarmUpProgress> listener) {
+        progressListeners.add(listener);
+    }
+
+    public void removeProgressListener(Consumer<WarmUpProgress> listener) {
+        progressListeners.remove(listener);
+    }
+
+    /**
+     * Starts the warm-up in the background. Only the first call has effect.
+     *
+     * @return a future completed with the final progress when the warm-up finishes.
+     */
+    public CompletableFuture<WarmUpProgress> start() {
+        if (started.compareAndSet(false, true)) {
+            final Thread thread = new Thread(this::run, "user-manager-warm-up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return completion;
+    }
+
+    /**
+     * Runs the warm-up and waits until it finishes.
+     *
+     * @return the final progress.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public WarmUpProgress warmUp() throws InterruptedException {
+        try {
+            return start().get();
+        } catch (ExecutionException e) {
+            // Errors are logged and counted, the future is never completed exceptionally.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void run() {
+        startTime = System.currentTimeMillis();
+        if (requiredCoverage == 0) {
+            ready.countDown();
+        }
+        try (BlockingCallExecutor executor = new BlockingCallExecutor(parallelism)) {
+            final Set<IUser<UserId>> users = service.getAllUsers();
+            totalUsers = users != null ? users.size() : 0;
+            BiitPoolLogger.info(this.getClass(), "Warming up pools with " + totalUsers + " users.");
+            final List<CompletableFuture<?>> batches = new ArrayList<>();
+            batches.add(executor.submit(service::getAllAvailableOrganizations).handle((organizations, e) -> {
+                if (e != null) {
+                    BiitPoolLogger.warning(this.getClass(), "Organizations not warmed up: " + e.getMessage());
+                }
+                return null;
+            }));
+            if (users != null) {
+                final List<IUser<UserId>> allUsers = new ArrayList<>(users);
+                for (int i = 0; i < allUsers.size(); i += batchSize) {
+                    final List<IUser<UserId>> batch = allUsers.subList(i, Math.min(i + batchSize, allUsers.size()));
+                    batches.add(executor.submit(() -> warmUp(batch)).handle((result, e) -> {
+                        if (e != null) {
+                            failedUsers.addAndGet(batch.size());
+                            BiitPoolLogger.warning(this.getClass(), batch.size() + " users not warmed up: " + e.getMessage());
+                        }
+                        onBatchFinished();
+                        return null;
+                    }));
+                }
+            }
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+        } catch (Exception e) {
+            BiitPoolLogger.severe(this.getClass(), "Pools not warmed up: " + e.getMessage());
+            BiitPoolLogger.errorMessage(this.getClass(), e);
+        } finally {
+            finished = true;
+            final WarmUpProgress progress = getProgress();
+            if (progress.getCoverage() < requiredCoverage) {
+                BiitPoolLogger.warning(this.getClass(), "Warm-up finished below the required coverage: " + progress + ".");
+            } else {
+                BiitPoolLogger.info(this.getClass(), "Warm-up finished: " + progress + ".");
+            }
+            notifyProgress(progress);
+            ready.countDown();
+            completion.complete(progress);
+        }
+    }
+
+    private Void warmUp(List<IUser<UserId>> users) throws Exception {
+        // The service stores the results in its pools.
+        service.getUserRoles(users);
+        service.getUserGroups(users);
+        warmedUsers.addAndGet(users.size());
+        return null;
+    }
+
+    private void onBatchFinished() {
+        final WarmUpProgress progress = getProgress();
+        if (progress.getCoverage() >= requiredCoverage) {
+            ready.countDown();
+        }
+        final int step = (int) ((long) (warmedUsers.get() + failedUsers.get()) * PROGRESS_LOG_STEPS / Math.max(totalUsers, 1));
+        final int previousStep = loggedStep.get();
+        if (step > previousStep && loggedStep.compareAndSet(previousStep, step)) {
+            BiitPoolLogger.info(this.getClass(), "Warm-up progress: " + progress + ".");
+        }
+        notifyProgress(progress);
+    }
+
+    private void notifyProgress(WarmUpProgress progress) {
+        for (final Consumer<WarmUpProgress> listener : progressListeners) {
+            try {
+                listener.accept(progress);
+            } catch (RuntimeException e) {
+                BiitPoolLogger.errorMessage(this.getClass(), e);
+            }
+        }
+    }
+
+    public WarmUpProgress getProgress() {
+        return new WarmUpProgress(totalUsers, warmedUsers.get(), failedUsers.get(), finished,
+                startTime == 0 ? 0 : System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * The pools have the required coverage or the warm-up has finished.
+     *
+     * @return true if ready.
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    /**
+     * Waits until the pools are ready. Starts the warm-up if not started.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit    the unit of the timeout.
+     * @return true if ready, false if the time has elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        start();
+        return ready.await(timeout, unit);
+    }
+
+    public double getRequiredCoverage() {
+        return requiredCoverage;
+    }
+}
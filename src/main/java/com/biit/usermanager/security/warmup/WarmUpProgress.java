@@ -0,0 +1,101 @@
+package com.biit.usermanager.security.warmup;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+/**
+ * State of the warm-up of the pools at a point in time.
+ */
+public final class WarmUpProgress {
+
+    private final int totalUsers;
+    private final int warmedUsers;
+    private final int failedUsers;
+    private final boolean finished;
+    private final long elapsedTime;
+
+    public WarmUpProgress(int totalUsers, int warmedUsers, int failedUsers, boolean finished, long elapsedTime) {
+        this.totalUsers = totalUsers;
+        this.warmedUsers = warmedUsers;
+        this.failedUsers = failedUsers;
+        this.finished = finished;
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * Users to warm up. Zero until the users are obtained from the backend.
+     *
+     * @return the number of users.
+     */
+    public int getTotalUsers() {
+        return totalUsers;
+    }
+
+    /**
+     * Users whose roles and groups are stored in the pools.
+     *
+     * @return the number of users.
+     */
+    public int getWarmedUsers() {
+        return warmedUsers;
+    }
+
+    /**
+     * Users whose roles or groups could not be obtained from the backend.
+     *
+     * @return the number of users.
+     */
+    public int getFailedUsers() {
+        return failedUsers;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Time since the warm-up started.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Fraction of the users that are warmed up. A warm-up without users has full coverage once finished.
+     *
+     * @return a value from 0 to 1.
+     */
+    public double getCoverage() {
+        if (totalUsers == 0) {
+            return finished ? 1 : 0;
+        }
+        return (double) warmedUsers / totalUsers;
+    }
+
+    @Override
+    public String toString() {
+        return warmedUsers + "/" + totalUsers + " users warmed up, " + failedUsers + " failed, " + elapsedTime + " ms"
+                + (finished ? " (finished)" : "");
+    }
+}
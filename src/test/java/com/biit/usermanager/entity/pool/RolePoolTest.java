@@ -0,0 +1,169 @@
+package com.biit.usermanager.entity.pool;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+@Test(groups = {"rolePool"})
+public class RolePoolTest {
+    private static final long EXPIRATION = 60_000;
+    private static final long MAXIMUM_SIZE = 2;
+    private static final int CONCURRENT_CHANGES = 200;
+    private static final int TRIALS = 500;
+
+    /**
+     * A generic pool and a pool with primitive ids, with a short size.
+     */
+    private static List<RolePool<Long, Long, Long>> createPools() {
+        return Arrays.asList(createPool(), createLongPool());
+    }
+
+    private static RolePool<Long, Long, Long> createPool() {
+        return new RolePool<Long, Long, Long>() {
+            @Override
+            public long getExpirationTime() {
+                return EXPIRATION;
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return MAXIMUM_SIZE;
+            }
+        };
+    }
+
+    private static RolePool<Long, Long, Long> createLongPool() {
+        return new LongRolePool() {
+            @Override
+            public long getExpirationTime() {
+                return EXPIRATION;
+            }
+
+            @Override
+            public long getMaximumSize() {
+                return MAXIMUM_SIZE;
+            }
+        };
+    }
+
+    private static Set<IRole<Long>> roles(long roleId) {
+        return Collections.singleton(TestEntities.role(roleId));
+    }
+
+    /**
+     * Number of users visited by getUsersWithRole(), i.e. the holders of the role in the index.
+     */
+    private static long visitedUsers(RolePool<Long, Long, Long> pool, long roleId) {
+        final CacheMetrics metrics = pool.getMetrics().get("rolesByUser");
+        final long before = metrics.getHits() + metrics.getMisses();
+        pool.getUsersWithRole(TestEntities.role(roleId));
+        return metrics.getHits() + metrics.getMisses() - before;
+    }
+
+    @Test
+    public void expiredUsersLeaveRoleIndex() {
+        for (final RolePool<Long, Long, Long> pool : createPools()) {
+            final long now = System.currentTimeMillis();
+            pool.setUserRoles(1L, roles(1), now - 2 * EXPIRATION);
+            pool.setUserRoles(2L, roles(1), now);
+            // Any access expires the first user.
+            Assert.assertNull(pool.getUserRoles(TestEntities.user(1)));
+            Assert.assertEquals(visitedUsers(pool, 1), 1);
+            Assert.assertEquals(pool.getUsersWithRole(TestEntities.role(1)), Collections.singleton(2L));
+        }
+    }
+
+    @Test
+    public void evictedUsersLeaveRoleIndex() {
+        for (final RolePool<Long, Long, Long> pool : createPools()) {
+            for (long userId = 1; userId <= MAXIMUM_SIZE + 1; userId++) {
+                pool.setUserRoles(TestEntities.user(userId), roles(1));
+            }
+            Assert.assertEquals(visitedUsers(pool, 1), MAXIMUM_SIZE);
+        }
+    }
+
+    @Test
+    public void replacedRolesLeaveRoleIndex() {
+        for (final RolePool<Long, Long, Long> pool : createPools()) {
+            pool.setUserRoles(TestEntities.user(1), roles(1));
+            pool.setUserRoles(TestEntities.user(1), roles(2));
+            Assert.assertEquals(visitedUsers(pool, 1), 0);
+            Assert.assertEquals(visitedUsers(pool, 2), 1);
+        }
+    }
+
+    private static long userRolesWriteTime(RolePool<Long, Long, Long> pool, long userId) {
+        final long[] writeTime = {-1};
+        pool.forEachUserRoles((id, roles, time) -> {
+            if (id == userId) {
+                writeTime[0] = time;
+            }
+        });
+        return writeTime[0];
+    }
+
+    @Test
+    public void removedRolesKeepWriteTime() {
+        for (final RolePool<Long, Long, Long> pool : createPools()) {
+            final long writeTime = System.currentTimeMillis() - EXPIRATION / 2;
+            pool.setUserRoles(1L, new HashSet<>(Arrays.asList(TestEntities.role(1), TestEntities.role(2), TestEntities.role(3))), writeTime);
+            pool.removeUserRole(TestEntities.user(1), TestEntities.role(1));
+            pool.removeRole(TestEntities.role(2));
+            Assert.assertEquals(pool.getUserRoles(TestEntities.user(1)), roles(3));
+            Assert.assertEquals(userRolesWriteTime(pool, 1), writeTime);
+        }
+    }
+
+    @Test
+    public void concurrentChangesDoNotRestoreRemovedRoles() throws InterruptedException {
+        final RolePool<Long, Long, Long> pool = createPools().get(0);
+        final IRole<Long> role = TestEntities.role(0);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            pool.addUserRole(TestEntities.user(1), role);
+            final CountDownLatch adding = new CountDownLatch(1);
+            final Thread adder = new Thread(() -> {
+                for (long roleId = 1; roleId <= CONCURRENT_CHANGES; roleId++) {
+                    pool.addUserRole(TestEntities.user(1), TestEntities.role(roleId));
+                    adding.countDown();
+                }
+            });
+            adder.start();
+            adding.await();
+            pool.removeRole(role);
+            adder.join();
+            Assert.assertFalse(pool.getUserRoles(TestEntities.user(1)).contains(role));
+        }
+    }
+}
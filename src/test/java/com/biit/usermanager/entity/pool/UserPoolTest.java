@@ -0,0 +1,182 @@
+package com.biit.usermanager.entity.pool;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+@Test(groups = {"userPool"})
+public class UserPoolTest {
+
+    private static List<UserPool<Long, Long>> createPools() {
+        return Arrays.asList(new UserPool<Long, Long>(), new LongUserPool());
+    }
+
+    /**
+     * Hits and misses of the tags, that also promote the tags to be kept.
+     */
+    private static long tagAccesses(UserPool<Long, Long> pool) {
+        final CacheMetrics metrics = pool.getMetrics().get("elementsByTag");
+        return metrics.getHits() + metrics.getMisses();
+    }
+
+    @Test
+    public void removesOnlyTagsContainingElement() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addElementByTag(new HashSet<IUser<Long>>(Arrays.asList(TestEntities.user(1), TestEntities.user(2))), "roleUsers#1");
+            pool.addElementByTag(TestEntities.user(2), "roleUsers#2");
+            pool.addElementByTag(TestEntities.user(3), "roleUsers#3");
+            final long accesses = tagAccesses(pool);
+
+            pool.removeElementsByTagContaining(2L);
+
+            Assert.assertEquals(tagAccesses(pool), accesses);
+            Assert.assertNull(pool.getElementsByTag("roleUsers#1"));
+            Assert.assertNull(pool.getElementsByTag("roleUsers#2"));
+            Assert.assertEquals(pool.getElementsByTag("roleUsers#3").size(), 1);
+        }
+    }
+
+    @Test
+    public void removesTagsWithPrefix() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addElementByTag(TestEntities.user(1), "roleUsers#1#1");
+            pool.addElementByTag(TestEntities.user(1), "roleUsers#1#2");
+            pool.addElementByTag(TestEntities.user(1), "roleUsers#10#1");
+            final long accesses = tagAccesses(pool);
+
+            pool.removeElementsByTagPrefix("roleUsers#1#");
+
+            Assert.assertEquals(tagAccesses(pool), accesses);
+            Assert.assertNull(pool.getElementsByTag("roleUsers#1#1"));
+            Assert.assertNull(pool.getElementsByTag("roleUsers#1#2"));
+            Assert.assertNotNull(pool.getElementsByTag("roleUsers#10#1"));
+        }
+    }
+
+    @Test
+    public void removedElementLeavesTagIndex() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addElementByTag(TestEntities.user(1), "roleUsers#1");
+            pool.addElementByTag(TestEntities.user(2), "roleUsers#1");
+            pool.removeElementsByTag("roleUsers#1", TestEntities.user(1));
+
+            // The tag no longer contains the user, so it is kept.
+            pool.removeElementsByTagContaining(1L);
+
+            Assert.assertEquals(pool.getElementsByTag("roleUsers#1").size(), 1);
+        }
+    }
+
+    @Test
+    public void findsUsersByNormalizedEmail() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addUser(TestEntities.user(1, "User1@Test.com"));
+
+            Assert.assertEquals(pool.getUserByEmailAddress(" user1@test.COM "), TestEntities.user(1));
+            Assert.assertNull(pool.getUserByEmailAddress("user2@test.com"));
+        }
+    }
+
+    @Test
+    public void changedEmailReplacesPreviousOne() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addUser(TestEntities.user(1, "old@test.com"));
+            pool.addUser(TestEntities.user(1, "new@test.com"));
+
+            Assert.assertNull(pool.getUserByEmailAddress("old@test.com"));
+            Assert.assertEquals(pool.getUserByEmailAddress("new@test.com"), TestEntities.user(1));
+        }
+    }
+
+    @Test
+    public void removedUserKeepsEmailOfNewOwner() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addUser(TestEntities.user(1, "shared@test.com"));
+            pool.addUser(TestEntities.user(2, "shared@test.com"));
+            pool.removeUser(TestEntities.user(1));
+
+            Assert.assertEquals(pool.getUserByEmailAddress("shared@test.com"), TestEntities.user(2));
+            pool.removeUser(TestEntities.user(2));
+            Assert.assertNull(pool.getUserByEmailAddress("shared@test.com"));
+        }
+    }
+
+    @Test
+    public void addedUserClearsMissingEmail() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addMissingEmailAddress("New@test.com");
+            Assert.assertTrue(pool.isMissingEmailAddress(" new@test.com"));
+
+            pool.addUser(TestEntities.user(1, "new@test.com"));
+
+            Assert.assertFalse(pool.isMissingEmailAddress("New@test.com"));
+        }
+    }
+
+    @Test
+    public void findsElementsByUniqueName() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addUser(TestEntities.user(1));
+            Assert.assertEquals(pool.getUserByScreenName("user1"), TestEntities.user(1));
+            Assert.assertNull(pool.getUserByScreenName("user2"));
+        }
+        final GroupPool<Long, Long> groupPool = new GroupPool<>();
+        groupPool.addGroup(TestEntities.group(1));
+        Assert.assertEquals(groupPool.getGroupByName(TestEntities.group(1).getUniqueName()), TestEntities.group(1));
+        final RolePool<Long, Long, Long> rolePool = new RolePool<>();
+        rolePool.addElement(TestEntities.role(1));
+        Assert.assertEquals(rolePool.getRoleByName("role1"), TestEntities.role(1));
+    }
+
+    @Test
+    public void expiredOrRemovedElementsAreNotFoundByName() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addElement(TestEntities.user(1), System.currentTimeMillis() - 2 * pool.getExpirationTime());
+            pool.addUser(TestEntities.user(2));
+            pool.removeUser(TestEntities.user(2));
+
+            Assert.assertNull(pool.getUserByScreenName("user1"));
+            Assert.assertNull(pool.getUserByScreenName("user2"));
+        }
+    }
+
+    @Test
+    public void addedElementClearsMissingName() {
+        for (final UserPool<Long, Long> pool : createPools()) {
+            pool.addMissingUniqueName("user1");
+            Assert.assertTrue(pool.isMissingUniqueName("user1"));
+
+            pool.addUser(TestEntities.user(1));
+
+            Assert.assertFalse(pool.isMissingUniqueName("user1"));
+        }
+    }
+}
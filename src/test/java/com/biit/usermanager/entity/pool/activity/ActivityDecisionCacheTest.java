@@ -0,0 +1,193 @@
+package com.biit.usermanager.entity.pool.activity;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.BulkResult;
+import com.biit.usermanager.security.IActivity;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@Test(groups = {"activityDecisionCache"})
+public class ActivityDecisionCacheTest {
+    private static final long EXPIRATION = 1000;
+    private static final long FIRST_WAIT = 700;
+    private static final long SECOND_WAIT = 600;
+    private static final IActivity READ = () -> "read";
+    private static final IActivity WRITE = () -> "write";
+    private static final IActivity DELETE = () -> "delete";
+    private static final int THREADS = 8;
+    private static final int ACTIVITIES_PER_THREAD = 100;
+
+    @Test
+    public void storesDecisionsByUserAndOrganization() {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        cache.put(1L, READ, true);
+        cache.put(1L, WRITE, false);
+        cache.put(1L, 1L, WRITE, true);
+
+        Assert.assertEquals(cache.get(1L, READ), Boolean.TRUE);
+        Assert.assertEquals(cache.get(1L, WRITE), Boolean.FALSE);
+        Assert.assertNull(cache.get(1L, DELETE));
+        Assert.assertEquals(cache.get(1L, 1L, WRITE), Boolean.TRUE);
+        Assert.assertNull(cache.get(1L, 1L, READ));
+        Assert.assertNull(cache.get(1L, 2L, WRITE));
+        Assert.assertNull(cache.get(2L, READ));
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void getAllReportsMissingDecisions() {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        cache.put(1L, READ, true);
+        cache.put(1L, WRITE, false);
+
+        final BulkResult<IActivity, Boolean> result = cache.getAll(1L, null, Arrays.asList(READ, WRITE, DELETE));
+
+        Assert.assertFalse(result.isComplete());
+        Assert.assertEquals(result.getHits().get(READ), Boolean.TRUE);
+        Assert.assertEquals(result.getHits().get(WRITE), Boolean.FALSE);
+        Assert.assertEquals(result.getMissing(), Collections.singleton(DELETE));
+    }
+
+    @Test
+    public void completePermissionsAnswerAllActivities() {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        cache.putPermissions(1L, Collections.singleton(READ));
+        cache.putPermissions(1L, 1L, Collections.singleton(WRITE));
+
+        Assert.assertTrue(cache.getAll(1L, null, Arrays.asList(READ, WRITE, DELETE)).isComplete());
+        Assert.assertEquals(cache.get(1L, DELETE), Boolean.FALSE);
+        Assert.assertEquals(cache.get(1L, 1L, READ), Boolean.FALSE);
+        Assert.assertEquals(cache.get(1L, 1L, WRITE), Boolean.TRUE);
+    }
+
+    @Test
+    public void removedUserDuringLoadIsNotStored() throws Exception {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        final boolean authorized = cache.getFromPermissions(1L, null, READ, () -> {
+            // The roles change while the backend answers.
+            cache.remove(1L);
+            return Collections.singleton(READ);
+        });
+
+        Assert.assertTrue(authorized);
+        Assert.assertNull(cache.get(1L, READ));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void removedUserDuringDecisionLoadIsNotStored() throws Exception {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        cache.put(1L, WRITE, true);
+        Assert.assertTrue(cache.get(1L, READ, () -> {
+            cache.remove(1L);
+            return true;
+        }));
+
+        Assert.assertNull(cache.get(1L, READ));
+        Assert.assertNull(cache.get(1L, WRITE));
+    }
+
+    @Test
+    public void loadedPermissionsHaveTheirOwnTime() throws Exception {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        cache.put(1L, 1L, WRITE, true);
+        Thread.sleep(FIRST_WAIT);
+        Assert.assertTrue(cache.getFromPermissions(1L, null, READ, () -> Collections.singleton(READ)));
+        Thread.sleep(SECOND_WAIT);
+
+        // The decision in the organization expires with the entry, the permissions loaded later are kept.
+        Assert.assertNull(cache.get(1L, 1L, WRITE));
+        Assert.assertTrue(cache.get(1L, READ));
+        Assert.assertFalse(cache.get(1L, WRITE));
+    }
+
+    private static IActivity activity(int thread, int index) {
+        final String tag = "concurrent." + thread + "." + index;
+        return () -> tag;
+    }
+
+    /**
+     * Several threads store different decisions of the same user at the same time.
+     *
+     * @param organization the organization of the decisions, or null.
+     */
+    private static void putConcurrently(ActivityDecisionCache<Long, Long> cache, Long organization) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int index = 0; index < ACTIVITIES_PER_THREAD; index++) {
+                    if (organization == null) {
+                        cache.put(1L, activity(thread, index), index % 2 == 0);
+                    } else {
+                        cache.put(1L, organization, activity(thread, index), index % 2 == 0);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void concurrentDecisionsOfSameUserAreKept() throws Exception {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        putConcurrently(cache, null);
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int index = 0; index < ACTIVITIES_PER_THREAD; index++) {
+                Assert.assertEquals(cache.get(1L, activity(thread, index)), Boolean.valueOf(index % 2 == 0));
+            }
+        }
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void concurrentDecisionsInOrganizationAreKept() throws Exception {
+        final ActivityDecisionCache<Long, Long> cache = new ActivityDecisionCache<>(() -> EXPIRATION);
+        putConcurrently(cache, 1L);
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int index = 0; index < ACTIVITIES_PER_THREAD; index++) {
+                Assert.assertEquals(cache.get(1L, 1L, activity(thread, index)), Boolean.valueOf(index % 2 == 0));
+            }
+        }
+        Assert.assertNull(cache.get(1L, activity(0, 0)));
+    }
+}
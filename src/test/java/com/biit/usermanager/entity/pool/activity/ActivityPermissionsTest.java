@@ -0,0 +1,82 @@
+package com.biit.usermanager.entity.pool.activity;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@Test(groups = {"activityPermissions"})
+public class ActivityPermissionsTest {
+    // Ordinals in the first word, in the second word and beyond.
+    private static final int FIRST = 3;
+    private static final int SECOND = 70;
+    private static final int FAR = 1000;
+    private static final long TIME = 1_000_000L;
+
+    @Test
+    public void keepsDecisionsOfEachActivity() {
+        final ActivityPermissions permissions = ActivityPermissions.EMPTY.with(FIRST, true).with(SECOND, false);
+
+        Assert.assertEquals(permissions.isAllowed(FIRST), Boolean.TRUE);
+        Assert.assertEquals(permissions.isAllowed(SECOND), Boolean.FALSE);
+        Assert.assertNull(permissions.isAllowed(FIRST + 1));
+        Assert.assertNull(permissions.isAllowed(FAR));
+        Assert.assertFalse(permissions.isComplete());
+    }
+
+    @Test
+    public void changesAreCopies() {
+        final ActivityPermissions allowed = ActivityPermissions.EMPTY.with(FIRST, true);
+        final ActivityPermissions denied = allowed.with(FIRST, false);
+
+        Assert.assertEquals(allowed.isAllowed(FIRST), Boolean.TRUE);
+        Assert.assertEquals(denied.isAllowed(FIRST), Boolean.FALSE);
+        Assert.assertNull(ActivityPermissions.EMPTY.isAllowed(FIRST));
+        Assert.assertSame(allowed.with(-1, true), allowed);
+    }
+
+    @Test
+    public void completePermissionsDenyOtherActivities() {
+        final ActivityPermissions permissions = ActivityPermissions.complete(Arrays.asList(FIRST, SECOND), TIME);
+
+        Assert.assertTrue(permissions.isComplete());
+        Assert.assertEquals(permissions.isAllowed(SECOND), Boolean.TRUE);
+        Assert.assertEquals(permissions.isAllowed(FAR), Boolean.FALSE);
+        // Unknown activities have no ordinal.
+        Assert.assertEquals(permissions.isAllowed(-1), Boolean.FALSE);
+        Assert.assertEquals(permissions.with(FAR, true).isAllowed(FAR), Boolean.TRUE);
+        Assert.assertEquals(ActivityPermissions.complete(Collections.emptyList(), TIME).isAllowed(FIRST), Boolean.FALSE);
+    }
+
+    @Test
+    public void keepsTimeOnChanges() {
+        final ActivityPermissions permissions = ActivityPermissions.complete(Collections.singleton(FIRST), TIME);
+
+        Assert.assertEquals(permissions.with(SECOND, true).getTime(), TIME);
+        Assert.assertEquals(permissions.withTime(TIME + 1).getTime(), TIME + 1);
+        Assert.assertEquals(permissions.withTime(TIME + 1).isAllowed(FIRST), Boolean.TRUE);
+    }
+}
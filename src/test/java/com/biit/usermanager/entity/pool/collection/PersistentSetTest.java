@@ -0,0 +1,151 @@
+package com.biit.usermanager.entity.pool.collection;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.TestEntities;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+@Test(groups = {"persistentSet"})
+public class PersistentSetTest {
+    private static final int ELEMENTS = 2000;
+    private static final int OPERATIONS = 20_000;
+    private static final int COLLIDING_ELEMENTS = 5;
+    // Same bits in the first level of the trie, different in the second one.
+    private static final int SECOND_LEVEL = 1 << 5;
+
+    @Test
+    public void addsAndRemovesElements() {
+        final PersistentSet<String> empty = PersistentSet.empty();
+        final PersistentSet<String> set = empty.plus("a").plus("b").plus("c");
+        Assert.assertEquals(set.size(), 3);
+        Assert.assertTrue(set.contains("b"));
+        Assert.assertSame(set.plus("b"), set);
+        final PersistentSet<String> removed = set.minus("b");
+        Assert.assertEquals(removed, new HashSet<>(Arrays.asList("a", "c")));
+        Assert.assertSame(removed.minus("b"), removed);
+        // Previous versions are not modified.
+        Assert.assertEquals(set, new HashSet<>(Arrays.asList("a", "b", "c")));
+        Assert.assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    public void rejectsNullElements() {
+        Assert.expectThrows(NullPointerException.class, () -> PersistentSet.empty().plus(null));
+    }
+
+    @Test
+    public void keepsElementsWithSameHash() {
+        PersistentSet<Colliding> set = PersistentSet.empty();
+        for (int i = 0; i < COLLIDING_ELEMENTS; i++) {
+            set = set.plus(new Colliding(0, i));
+        }
+        Assert.assertEquals(set.size(), COLLIDING_ELEMENTS);
+        for (int i = 0; i < COLLIDING_ELEMENTS; i++) {
+            Assert.assertTrue(set.contains(new Colliding(0, i)));
+        }
+        for (int i = 0; i < COLLIDING_ELEMENTS - 1; i++) {
+            set = set.minus(new Colliding(0, i));
+        }
+        Assert.assertEquals(set, new HashSet<>(Arrays.asList(new Colliding(0, COLLIDING_ELEMENTS - 1))));
+        Assert.assertFalse(set.contains(new Colliding(0, 0)));
+    }
+
+    @Test
+    public void collapsesBranchWithOneElement() {
+        final Colliding first = new Colliding(1, 0);
+        final Colliding second = new Colliding(1 + SECOND_LEVEL, 0);
+        final Colliding third = new Colliding(2, 0);
+        final PersistentSet<Colliding> set = PersistentSet.<Colliding>empty().plus(first).plus(second).plus(third);
+        final PersistentSet<Colliding> collapsed = set.minus(first);
+        Assert.assertEquals(collapsed, new HashSet<>(Arrays.asList(second, third)));
+        // The remaining element is found again and can be removed.
+        Assert.assertTrue(collapsed.contains(second));
+        Assert.assertTrue(collapsed.minus(second).minus(third).isEmpty());
+        Assert.assertEquals(collapsed.plus(first), set);
+    }
+
+    @Test
+    public void behavesAsHashSet() {
+        final Random random = new Random(1);
+        final Set<Integer> expected = new HashSet<>();
+        PersistentSet<Integer> actual = PersistentSet.empty();
+        for (int i = 0; i < OPERATIONS; i++) {
+            final Integer element = random.nextInt(ELEMENTS);
+            if (random.nextBoolean()) {
+                expected.add(element);
+                actual = actual.plus(element);
+            } else {
+                expected.remove(element);
+                actual = actual.minus(element);
+            }
+            Assert.assertEquals(actual.size(), expected.size());
+        }
+        Assert.assertEquals(actual, expected);
+        Assert.assertEquals(new HashSet<>(actual), expected);
+    }
+
+    @Test
+    public void keyedSetReplacesElementWithSameKey() {
+        final IUser<Long> user = TestEntities.user(1L, "old@test.com");
+        final IUser<Long> updated = TestEntities.user(1L, "new@test.com");
+        final PersistentSet<IUser<Long>> set = PersistentSet.<IUser<Long>>emptyByKey(IUser::getUniqueId).plus(user)
+                .plus(TestEntities.user(2L));
+        final PersistentSet<IUser<Long>> replaced = set.plus(updated);
+        Assert.assertEquals(replaced.size(), 2);
+        Assert.assertSame(replaced.getByKey(1L), updated);
+        Assert.assertSame(set.getByKey(1L), user);
+        Assert.assertEquals(replaced.minusKey(1L).size(), 1);
+        Assert.assertNull(replaced.minusKey(1L).getByKey(1L));
+        Assert.assertFalse(replaced.contains("not a user"));
+    }
+
+    /**
+     * Element with a chosen hash code.
+     */
+    private static final class Colliding {
+        private final int hash;
+        private final int id;
+
+        private Colliding(int hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Colliding && ((Colliding) other).hash == hash && ((Colliding) other).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
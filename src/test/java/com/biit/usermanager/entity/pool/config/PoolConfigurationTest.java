@@ -0,0 +1,122 @@
+package com.biit.usermanager.entity.pool.config;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.entity.pool.UserPool;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Test(groups = {"poolConfiguration"})
+public class PoolConfigurationTest {
+    private static final long EXPIRATION = 60_000;
+    private static final long USER_EXPIRATION = 10_000;
+    private static final long MAXIMUM_SIZE = 100;
+    private static final long WATCH_TIMEOUT = 10;
+    private static final long MODIFICATION_DELAY = 10_000;
+    private static final int USERS = 3;
+
+    private static PoolConfiguration.Builder builder() {
+        return new PoolConfiguration.Builder().setStandardExpirationTime(EXPIRATION).setStandardMaximumSize(MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void poolSettingsFallBackToStandard() {
+        final PoolConfiguration configuration = builder().setUserPoolExpirationTime(USER_EXPIRATION).build();
+
+        Assert.assertEquals(configuration.getUserPoolExpirationTime(), USER_EXPIRATION);
+        Assert.assertEquals(configuration.getGroupPoolExpirationTime(), EXPIRATION);
+        Assert.assertEquals(configuration.getRolePoolMaximumSize(), MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void sameSettingsAreEqual() {
+        Assert.assertEquals(builder().build(), builder().build());
+        Assert.assertEquals(builder().build().hashCode(), builder().build().hashCode());
+        Assert.assertNotEquals(builder().setUserPoolExpirationTime(USER_EXPIRATION).build(), builder().build());
+    }
+
+    @Test
+    public void reloadWithoutChangesDoesNotNotify() {
+        final AtomicInteger notifications = new AtomicInteger();
+        final PoolConfigurationListener listener = configuration -> notifications.incrementAndGet();
+        final PoolConfigurationReader reader = PoolConfigurationReader.getInstance();
+        reader.addListener(listener);
+        try {
+            final PoolConfiguration configuration = reader.getConfiguration();
+            reader.reload();
+
+            Assert.assertSame(reader.getConfiguration(), configuration);
+            Assert.assertEquals(notifications.get(), 0);
+        } finally {
+            reader.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void watcherRunsOnModification() throws Exception {
+        final Path folder = Files.createTempDirectory("settings");
+        final Path file = folder.resolve("settings.conf");
+        Files.write(file, "usermanager.pool.maxsize=10\n".getBytes(StandardCharsets.UTF_8));
+        final CountDownLatch changed = new CountDownLatch(1);
+        try (FileWatcher watcher = new FileWatcher(file, changed::countDown)) {
+            Files.write(file, "usermanager.pool.maxsize=20\n".getBytes(StandardCharsets.UTF_8));
+            // Same second resolution on some file systems.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + MODIFICATION_DELAY));
+
+            Assert.assertTrue(changed.await(WATCH_TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            Files.delete(file);
+            Files.delete(folder);
+        }
+    }
+
+    @Test
+    public void poolAppliesReducedMaximumSize() {
+        final AtomicLong maximumSize = new AtomicLong(MAXIMUM_SIZE);
+        final UserPool<Long, Long> pool = new UserPool<Long, Long>() {
+            @Override
+            public long getMaximumSize() {
+                return maximumSize.get();
+            }
+        };
+        for (long id = 1; id <= USERS; id++) {
+            pool.addElement(TestEntities.user(id));
+        }
+        maximumSize.set(1);
+
+        pool.onConfigurationChanged(builder().setUserPoolMaximumSize(1L).build());
+
+        Assert.assertEquals(pool.getMetrics().get("elements").getSize(), 1);
+        Assert.assertNotNull(pool.getElement((long) USERS));
+    }
+}
@@ -0,0 +1,71 @@
+package com.biit.usermanager.entity.pool.eviction;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+@Test(groups = {"segmentedLru"})
+public class LongSegmentedLruTest {
+    private static final long MAXIMUM_SIZE = 50;
+    private static final int KEYS = 200;
+    private static final int OPERATIONS = 20_000;
+    private static final int OPERATION_TYPES = 3;
+
+    @Test
+    public void behavesAsGenericPolicy() {
+        final SegmentedLru<Long> expected = new SegmentedLru<>(() -> MAXIMUM_SIZE);
+        final LongSegmentedLru actual = new LongSegmentedLru(() -> MAXIMUM_SIZE);
+        final Random random = new Random(1);
+        for (int i = 0; i < OPERATIONS; i++) {
+            final Long key = (long) random.nextInt(KEYS);
+            switch (random.nextInt(OPERATION_TYPES)) {
+                case 0:
+                    Assert.assertEquals(actual.recordWrite(key), expected.recordWrite(key));
+                    break;
+                case 1:
+                    actual.recordAccess(key);
+                    expected.recordAccess(key);
+                    break;
+                default:
+                    actual.remove(key);
+                    expected.remove(key);
+                    break;
+            }
+            Assert.assertEquals(actual.size(), expected.size());
+        }
+    }
+
+    @Test
+    public void keepsFrequentlyUsedKeysOnScan() {
+        final LongSegmentedLru usage = new LongSegmentedLru(() -> 2);
+        usage.recordWrite(1L);
+        usage.recordAccess(1L);
+        usage.recordWrite(2L);
+        Assert.assertEquals(usage.recordWrite(3L).size(), 1);
+        Assert.assertEquals(usage.recordWrite(4L).get(0), Long.valueOf(3L));
+        Assert.assertTrue(usage.recordWrite(1L).isEmpty());
+    }
+}
@@ -0,0 +1,107 @@
+package com.biit.usermanager.entity.pool.eviction;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Test(groups = {"segmentedLru"})
+public class SegmentedLruTest {
+    private static final long MAXIMUM_SIZE = 5;
+    private static final int SCANNED_KEYS = 100;
+
+    @Test
+    public void evictsLeastRecentlyWrittenProbationKey() {
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(() -> 3);
+        usage.recordWrite(1);
+        usage.recordWrite(2);
+        usage.recordWrite(3);
+        usage.recordAccess(1);
+
+        Assert.assertEquals(usage.recordWrite(4), Collections.singletonList(2));
+        Assert.assertEquals(usage.size(), 3);
+    }
+
+    @Test
+    public void keepsAccessedKeysOnScan() {
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(() -> MAXIMUM_SIZE);
+        usage.recordWrite(0);
+        usage.recordAccess(0);
+        for (int key = 1; key <= SCANNED_KEYS; key++) {
+            Assert.assertFalse(usage.recordWrite(key).contains(0));
+        }
+        Assert.assertEquals(usage.size(), MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void demotesLeastRecentlyUsedProtectedKey() {
+        // The protected segment keeps four keys.
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(() -> MAXIMUM_SIZE);
+        for (int key = 1; key <= MAXIMUM_SIZE; key++) {
+            usage.recordWrite(key);
+        }
+        for (int key = 1; key <= MAXIMUM_SIZE; key++) {
+            usage.recordAccess(key);
+        }
+
+        Assert.assertEquals(usage.recordWrite(6), Collections.singletonList(1));
+    }
+
+    @Test
+    public void rewrittenKeyIsPromoted() {
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(() -> 2);
+        usage.recordWrite(1);
+        usage.recordWrite(2);
+        Assert.assertTrue(usage.recordWrite(1).isEmpty());
+
+        Assert.assertEquals(usage.recordWrite(3), Collections.singletonList(2));
+    }
+
+    @Test
+    public void trimsAfterMaximumIsReduced() {
+        final AtomicLong maximum = new AtomicLong(4);
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(maximum::get);
+        for (int key = 1; key <= 4; key++) {
+            usage.recordWrite(key);
+        }
+        usage.recordAccess(1);
+        maximum.set(2);
+
+        Assert.assertEquals(usage.trim(), Arrays.asList(2, 3));
+        Assert.assertEquals(usage.size(), 2);
+    }
+
+    @Test
+    public void neverEvictsWithoutLimit() {
+        final SegmentedLru<Integer> usage = new SegmentedLru<>(() -> 0);
+        for (int key = 0; key < SCANNED_KEYS; key++) {
+            Assert.assertTrue(usage.recordWrite(key).isEmpty());
+        }
+        usage.remove(0);
+        Assert.assertEquals(usage.size(), SCANNED_KEYS - 1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@Test(groups = {"expirationQueue"})
+public class ExpirationQueueTest {
+    private static final long EXPIRATION = 1000;
+    private static final long NOW = 1_000_000;
+
+    @Test
+    public void expiresInWriteOrder() {
+        final ExpirationQueue<String> queue = new ExpirationQueue<>(() -> EXPIRATION);
+        queue.touch("a", NOW);
+        queue.touch("b", NOW + 10);
+        queue.touch("c", NOW + 20);
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION + 15), Arrays.asList("a", "b"));
+        Assert.assertEquals(queue.size(), 1);
+    }
+
+    @Test
+    public void touchedKeyMovesToTail() {
+        final ExpirationQueue<String> queue = new ExpirationQueue<>(() -> EXPIRATION);
+        queue.touch("a", NOW);
+        queue.touch("b", NOW + 10);
+        queue.touch("a", NOW + 20);
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION + 15), Collections.singletonList("b"));
+        Assert.assertTrue(queue.contains("a"));
+    }
+
+    @Test
+    public void olderWriteTimeExpiresOnTime() {
+        final ExpirationQueue<String> queue = new ExpirationQueue<>(() -> EXPIRATION);
+        queue.touch("alive", NOW);
+        // Restored from a snapshot, written long before.
+        queue.touch("restored", NOW - EXPIRATION / 2);
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION / 2 + 1), Collections.singletonList("restored"));
+        Assert.assertTrue(queue.contains("alive"));
+        Assert.assertEquals(queue.size(), 1);
+    }
+
+    @Test
+    public void rewrittenOlderKeyIsNotExpired() {
+        final ExpirationQueue<String> queue = new ExpirationQueue<>(() -> EXPIRATION);
+        queue.touch("alive", NOW);
+        queue.touch("restored", NOW - EXPIRATION / 2);
+        queue.touch("restored", NOW + 10);
+        Assert.assertTrue(queue.pollExpired(NOW + EXPIRATION / 2 + 1).isEmpty());
+        Assert.assertEquals(queue.size(), 2);
+    }
+}
@@ -0,0 +1,78 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@Test(groups = {"expirationQueue"})
+public class LongExpirationQueueTest {
+    private static final long EXPIRATION = 1000;
+    private static final long NOW = 1_000_000;
+    private static final int REWRITES = 40;
+
+    @Test
+    public void expiresInWriteOrder() {
+        final LongExpirationQueue queue = new LongExpirationQueue(() -> EXPIRATION);
+        queue.touch(1L, NOW);
+        queue.touch(2L, NOW + 10);
+        queue.touch(3L, NOW + 20);
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION + 15), Arrays.asList(1L, 2L));
+        Assert.assertEquals(queue.size(), 1);
+        Assert.assertEquals(queue.getTime(3L), Long.valueOf(NOW + 20));
+    }
+
+    @Test
+    public void olderWriteTimeExpiresOnTime() {
+        final LongExpirationQueue queue = new LongExpirationQueue(() -> EXPIRATION);
+        queue.touch(1L, NOW);
+        queue.touch(2L, NOW - EXPIRATION / 2);
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION / 2 + 1), Collections.singletonList(2L));
+        Assert.assertTrue(queue.contains(1L));
+    }
+
+    @Test
+    public void sameWriteTimeRewritesDoNotHideOtherKeys() {
+        final LongExpirationQueue queue = new LongExpirationQueue(() -> EXPIRATION);
+        queue.touch(2L, NOW);
+        for (int i = 0; i < REWRITES; i++) {
+            queue.touch(1L, NOW);
+        }
+        Assert.assertEquals(queue.pollExpired(NOW + EXPIRATION + 1), Arrays.asList(2L, 1L));
+        Assert.assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void pollsEldestKey() {
+        final LongExpirationQueue queue = new LongExpirationQueue(() -> EXPIRATION);
+        queue.touch(1L, NOW);
+        queue.touch(2L, NOW + 10);
+        queue.touch(1L, NOW + 20);
+        Assert.assertEquals(queue.pollEldest(), Long.valueOf(2L));
+        Assert.assertEquals(queue.remove(1L), Long.valueOf(NOW + 20));
+        Assert.assertNull(queue.pollEldest());
+    }
+}
@@ -0,0 +1,138 @@
+package com.biit.usermanager.entity.pool.expiration;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.pool.metrics.CacheMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+@Test(groups = {"longExpiringMap"})
+public class LongExpiringMapTest {
+    private static final long EXPIRATION = 60_000;
+    private static final int REWRITES = 40;
+    private static final int KEYS = 1000;
+
+    @Test
+    public void expiresEntries() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        final long now = System.currentTimeMillis();
+        map.put(1L, "one", now);
+        map.put(2L, "two", now + 10);
+        map.expire(now + EXPIRATION + 5);
+        Assert.assertEquals(map.size(), 1);
+        Assert.assertEquals(map.getMetrics().getExpirations(), 1);
+        Assert.assertNull(map.get(1L));
+        Assert.assertEquals(map.get(2L), "two");
+    }
+
+    @Test
+    public void rewrittenKeyIsNotExpired() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        final long now = System.currentTimeMillis();
+        map.put(1L, "old", now - EXPIRATION / 2);
+        map.put(1L, "new", now);
+        map.expire(now + EXPIRATION / 2 + 1);
+        Assert.assertEquals(map.get(1L), "new");
+    }
+
+    @Test
+    public void sameWriteTimeRewritesDoNotHideOtherKeys() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        final long now = System.currentTimeMillis();
+        map.put(2L, "two", now);
+        for (int i = 0; i < REWRITES; i++) {
+            map.put(1L, "one" + i, now);
+            map.put(3L, "three" + i, now);
+        }
+        Assert.assertEquals(map.get(1L), "one" + (REWRITES - 1));
+        map.expire(now + EXPIRATION + 1);
+        Assert.assertEquals(map.size(), 0);
+    }
+
+    @Test
+    public void olderWriteTimeExpiresOnTime() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        final long now = System.currentTimeMillis();
+        map.put(1L, "alive", now);
+        // Restored from a snapshot, written long before.
+        map.put(2L, "restored", now - EXPIRATION / 2);
+        map.expire(now + EXPIRATION / 2 + 1);
+        Assert.assertEquals(map.keySet(), new HashSet<>(Arrays.asList(1L)));
+    }
+
+    @Test
+    public void evictsEntriesUsedOnce() {
+        final CacheMetrics metrics = new CacheMetrics();
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION, () -> 3, metrics);
+        for (long key = 1; key <= 5; key++) {
+            map.put(key, "value" + key);
+        }
+        Assert.assertEquals(map.keySet(), new HashSet<>(Arrays.asList(3L, 4L, 5L)));
+        Assert.assertEquals(metrics.getEvictions(), 2);
+    }
+
+    @Test
+    public void keepsEntriesWhenRehashing() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        for (long key = 0; key < KEYS; key++) {
+            map.put(key, "value" + key);
+        }
+        for (long key = 0; key < KEYS; key += 2) {
+            Assert.assertEquals(map.remove(key), "value" + key);
+        }
+        // Removed slots are reused or dropped by the next rehash.
+        for (long key = KEYS; key < 2 * KEYS; key++) {
+            map.put(key, "value" + key);
+        }
+        Assert.assertEquals(map.size(), KEYS + KEYS / 2);
+        for (long key = 0; key < 2 * KEYS; key++) {
+            Assert.assertEquals(map.get(key), key < KEYS && key % 2 == 0 ? null : "value" + key);
+        }
+    }
+
+    @Test
+    public void updateKeepsWriteTime() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION);
+        final long writeTime = System.currentTimeMillis() - EXPIRATION / 2;
+        map.put(1L, "old", writeTime);
+        Assert.assertEquals(map.update(1L, value -> value + "er"), "older");
+        Assert.assertNull(map.update(2L, value -> value));
+        map.expire(writeTime + EXPIRATION + 1);
+        Assert.assertEquals(map.size(), 0);
+    }
+
+    @Test
+    public void keepsReadEntriesOnScan() {
+        final LongExpiringMap<String> map = new LongExpiringMap<>(() -> EXPIRATION, () -> 3);
+        map.put(1L, "hot");
+        Assert.assertEquals(map.get(1L), "hot");
+        for (long key = 2; key <= KEYS; key++) {
+            map.put(key, "value" + key);
+        }
+        Assert.assertEquals(map.get(1L), "hot");
+        Assert.assertEquals(map.size(), 3);
+    }
+}
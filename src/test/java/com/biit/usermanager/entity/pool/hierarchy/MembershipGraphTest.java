@@ -0,0 +1,125 @@
+package com.biit.usermanager.entity.pool.hierarchy;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.entity.pool.collection.PersistentSet;
+import com.biit.usermanager.entity.pool.expiration.ExpiringCache;
+import com.biit.usermanager.entity.pool.expiration.ExpiringMap;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+@Test(groups = {"membershipGraph"})
+public class MembershipGraphTest {
+    private static final long EXPIRATION = 60_000;
+    private static final long MAXIMUM_SIZE = 2;
+
+    private final AtomicLong expiration = new AtomicLong();
+    private CountingMap<Long, PersistentSet<IUser<Long>>> usersByGroup;
+    private ExpiringMap<Long, PersistentSet<IGroup<Long>>> groupsByUser;
+    private MembershipGraph<Long, Long> graph;
+
+    /**
+     * Counts the stored values that are updated.
+     */
+    private static final class CountingMap<Key, Value> extends ExpiringMap<Key, Value> {
+        private long updates;
+
+        private CountingMap(AtomicLong expiration) {
+            super(expiration::get, () -> MAXIMUM_SIZE);
+        }
+
+        @Override
+        public synchronized Value update(Key key, UnaryOperator<Value> update) {
+            updates++;
+            return super.update(key, update);
+        }
+    }
+
+    @BeforeMethod
+    public void createGraph() {
+        expiration.set(EXPIRATION);
+        usersByGroup = new CountingMap<>(expiration);
+        groupsByUser = new ExpiringMap<>(expiration::get, () -> MAXIMUM_SIZE);
+        graph = new MembershipGraph<>(usersByGroup, groupsByUser);
+    }
+
+    /**
+     * Number of groups visited when removing a user, i.e. the groups indexed for it.
+     */
+    private long visitedGroups(long userId) {
+        final long before = usersByGroup.updates;
+        graph.removeUser(userId);
+        return usersByGroup.updates - before;
+    }
+
+    private static <Key, Value> long writeTime(ExpiringCache<Key, Value> map, Key key) {
+        final long[] writeTime = {-1};
+        map.forEach((storedKey, value, time) -> {
+            if (storedKey.equals(key)) {
+                writeTime[0] = time;
+            }
+        });
+        return writeTime[0];
+    }
+
+    @Test
+    public void expiredGroupsLeaveIndex() {
+        graph.addUsers(1L, Collections.singleton(TestEntities.user(1)));
+        expiration.set(-1);
+        Assert.assertNull(graph.getUsers(1L));
+        expiration.set(EXPIRATION);
+        graph.addUsers(2L, Collections.singleton(TestEntities.user(1)));
+        Assert.assertEquals(visitedGroups(1), 1);
+        Assert.assertTrue(graph.getUsers(2L).isEmpty());
+    }
+
+    @Test
+    public void evictedGroupsLeaveIndex() {
+        for (long groupId = 1; groupId <= MAXIMUM_SIZE + 1; groupId++) {
+            graph.addUsers(groupId, Collections.singleton(TestEntities.user(1)));
+        }
+        Assert.assertEquals(visitedGroups(1), MAXIMUM_SIZE);
+    }
+
+    @Test
+    public void partialChangesKeepWriteTime() {
+        final long writeTime = System.currentTimeMillis() - EXPIRATION / 2;
+        usersByGroup.put(1L, PersistentSet.<IUser<Long>>emptyByKey(IUser::getUniqueId).plus(TestEntities.user(1)), writeTime);
+        graph.setGroups(1L, Arrays.asList(TestEntities.group(1), TestEntities.group(2)), writeTime);
+        graph.addGroups(TestEntities.user(2), Collections.singleton(TestEntities.group(1)));
+        graph.removeMembership(1L, 2L);
+        Assert.assertEquals(graph.getUsers(1L).size(), 2);
+        Assert.assertEquals(graph.getGroups(1L).size(), 1);
+        Assert.assertEquals(writeTime(usersByGroup, 1L), writeTime);
+        Assert.assertEquals(writeTime(groupsByUser, 1L), writeTime);
+    }
+}
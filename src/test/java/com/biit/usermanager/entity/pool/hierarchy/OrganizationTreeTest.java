@@ -0,0 +1,108 @@
+package com.biit.usermanager.entity.pool.hierarchy;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+@Test(groups = {"organizationTree"})
+public class OrganizationTreeTest {
+
+    private OrganizationTree<Long> tree;
+
+    /**
+     * 1 -> (2 -> 4 -> 5, 3) and 9 -> 10.
+     */
+    @BeforeMethod
+    public void createTree() {
+        tree = new OrganizationTree<>();
+        tree.setParent(Arrays.asList(2L, 3L), 1L);
+        tree.setParent(4L, 2L);
+        tree.setParent(5L, 4L);
+        tree.setParent(10L, 9L);
+    }
+
+    @Test
+    public void numbersDescendants() {
+        Assert.assertEquals(new HashSet<>(tree.getDescendants(1L)), new HashSet<>(Arrays.asList(2L, 3L, 4L, 5L)));
+        Assert.assertEquals(tree.getDescendants(5L), Collections.emptyList());
+        Assert.assertTrue(tree.isAncestor(1L, 5L));
+        Assert.assertFalse(tree.isAncestor(5L, 1L));
+        Assert.assertFalse(tree.isAncestor(3L, 4L));
+        Assert.assertFalse(tree.isAncestor(1L, 10L));
+        Assert.assertEquals(tree.size(), 7);
+    }
+
+    @Test
+    public void renumbersAfterMovingSubtree() {
+        Assert.assertTrue(tree.isAncestor(2L, 5L));
+
+        tree.setParent(4L, 3L);
+
+        Assert.assertFalse(tree.isAncestor(2L, 5L));
+        Assert.assertTrue(tree.isAncestor(3L, 5L));
+        Assert.assertTrue(tree.isAncestor(1L, 5L));
+        Assert.assertEquals(tree.getChildren(2L), Collections.emptySet());
+        Assert.assertEquals(new HashSet<>(tree.getDescendants(3L)), new HashSet<>(Arrays.asList(4L, 5L)));
+    }
+
+    @Test
+    public void renumbersAfterJoiningTrees() {
+        tree.setParent(9L, 5L);
+
+        Assert.assertTrue(tree.isAncestor(1L, 10L));
+        Assert.assertEquals(tree.getParent(9L), Long.valueOf(5L));
+        Assert.assertEquals(tree.size(), 7);
+    }
+
+    @Test
+    public void ignoresCycles() {
+        tree.setParent(1L, 5L);
+        tree.setParent(1L, 1L);
+
+        Assert.assertNull(tree.getParent(1L));
+        Assert.assertTrue(tree.isAncestor(1L, 5L));
+    }
+
+    @Test
+    public void filtersDescendants() {
+        Assert.assertEquals(tree.filterDescendants(2L, new HashSet<>(Arrays.asList(3L, 5L, 10L))), Collections.singleton(5L));
+        Assert.assertTrue(tree.contains(10L));
+        Assert.assertFalse(tree.contains(11L));
+    }
+
+    @Test
+    public void clearRemovesAll() {
+        Assert.assertTrue(tree.isAncestor(1L, 5L));
+        tree.clear();
+
+        Assert.assertFalse(tree.isAncestor(1L, 5L));
+        Assert.assertFalse(tree.contains(1L));
+        Assert.assertEquals(tree.size(), 0);
+    }
+}
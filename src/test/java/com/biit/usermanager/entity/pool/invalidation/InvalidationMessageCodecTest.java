@@ -0,0 +1,61 @@
+package com.biit.usermanager.entity.pool.invalidation;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+@Test(groups = {"invalidationMessageCodec"})
+public class InvalidationMessageCodecTest {
+
+    private static InvalidationEvent roundTrip(InvalidationEvent event) throws IOException {
+        final InvalidationMessageCodec.Message message = InvalidationMessageCodec.decode(InvalidationMessageCodec.encode("node", event));
+        Assert.assertEquals(message.getNodeId(), "node");
+        return message.getEvent();
+    }
+
+    @Test
+    public void idsKeepTheirType() throws IOException {
+        final InvalidationEvent event = roundTrip(new InvalidationEvent(InvalidationEvent.Type.ROLE_GRANTED, 1L, 2, "admin"));
+        Assert.assertEquals(event.getType(), InvalidationEvent.Type.ROLE_GRANTED);
+        Assert.assertEquals(event.getUserId(), 1L);
+        Assert.assertEquals(event.getGroupId(), 2);
+        Assert.assertEquals(event.getRoleId(), "admin");
+    }
+
+    @Test
+    public void nullIds() throws IOException {
+        final InvalidationEvent event = roundTrip(new InvalidationEvent(InvalidationEvent.Type.USER_DELETED, Integer.MAX_VALUE, null, null));
+        Assert.assertEquals(event.getUserId(), Integer.MAX_VALUE);
+        Assert.assertNull(event.getGroupId());
+        Assert.assertNull(event.getRoleId());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void unsupportedIdType() throws IOException {
+        InvalidationMessageCodec.encode("node", new InvalidationEvent(InvalidationEvent.Type.USER_CHANGED, UUID.randomUUID(), null, null));
+    }
+}
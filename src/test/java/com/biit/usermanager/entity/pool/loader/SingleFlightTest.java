@@ -0,0 +1,141 @@
+package com.biit.usermanager.entity.pool.loader;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Test(groups = {"singleFlight"})
+public class SingleFlightTest {
+    private static final int WAITING_THREADS = 8;
+    private static final long POLL_TIME = 10;
+
+    /**
+     * Starts a load that blocks until released, and several loads of the same key that wait for it.
+     *
+     * @return the results of all loads, the first one is the one that runs the loader.
+     */
+    private static List<Future<String>> loadConcurrently(SingleFlight<String, String> loads, ExecutorService executor, Callable<String> loader,
+                                                         CountDownLatch release) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> loads.load("key", () -> {
+            started.countDown();
+            release.await();
+            return loader.call();
+        })));
+        started.await();
+        final List<Thread> waiting = new ArrayList<>();
+        for (int i = 0; i < WAITING_THREADS; i++) {
+            results.add(executor.submit(() -> {
+                synchronized (waiting) {
+                    waiting.add(Thread.currentThread());
+                }
+                return loads.load("key", () -> "not coalesced");
+            }));
+        }
+        // The waiting threads are parked on the load in progress.
+        while (!allWaiting(waiting)) {
+            Thread.sleep(POLL_TIME);
+        }
+        return results;
+    }
+
+    private static boolean allWaiting(List<Thread> threads) {
+        synchronized (threads) {
+            return threads.size() == WAITING_THREADS && threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING);
+        }
+    }
+
+    @Test
+    public void coalescesConcurrentLoads() throws Exception {
+        final SingleFlight<String, String> loads = new SingleFlight<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(WAITING_THREADS + 1);
+        try {
+            final List<Future<String>> results = loadConcurrently(loads, executor, () -> {
+                calls.incrementAndGet();
+                return "value";
+            }, release);
+            Assert.assertEquals(loads.size(), 1);
+            release.countDown();
+            for (final Future<String> result : results) {
+                Assert.assertEquals(result.get(), "value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(calls.get(), 1);
+        Assert.assertEquals(loads.size(), 0);
+    }
+
+    @Test
+    public void propagatesExceptionToWaitingThreads() throws Exception {
+        final SingleFlight<String, String> loads = new SingleFlight<>();
+        final IOException failure = new IOException("backend down");
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(WAITING_THREADS + 1);
+        try {
+            final List<Future<String>> results = loadConcurrently(loads, executor, () -> {
+                throw failure;
+            }, release);
+            release.countDown();
+            for (final Future<String> result : results) {
+                final Exception thrown = Assert.expectThrows(Exception.class, result::get);
+                Assert.assertSame(thrown.getCause(), failure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failuresAreNotRemembered() throws Exception {
+        final SingleFlight<String, String> loads = new SingleFlight<>();
+        Assert.expectThrows(IOException.class, () -> loads.load("key", () -> {
+            throw new IOException("backend down");
+        }));
+        Assert.assertEquals(loads.size(), 0);
+        Assert.assertEquals(loads.load("key", () -> "value"), "value");
+    }
+
+    @Test
+    public void errorsArePropagated() {
+        final SingleFlight<String, String> loads = new SingleFlight<>();
+        Assert.expectThrows(AssertionError.class, () -> loads.load("key", () -> {
+            throw new AssertionError("broken loader");
+        }));
+        Assert.assertEquals(loads.size(), 0);
+    }
+}
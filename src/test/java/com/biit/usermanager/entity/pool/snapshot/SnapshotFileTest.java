@@ -0,0 +1,144 @@
+package com.biit.usermanager.entity.pool.snapshot;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+@Test(groups = {"snapshot"})
+public class SnapshotFileTest {
+    // More than the initial capacity of the writer.
+    private static final int ENTRIES = 3000;
+    private static final long WRITE_TIME = 1_000_000L;
+
+    private Path folder;
+    private Path file;
+
+    @BeforeMethod
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("snapshot");
+        file = folder.resolve("pool.snapshot");
+    }
+
+    @AfterMethod
+    public void deleteFolder() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static byte[] key(long id) {
+        return ("user#" + id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodecs.STRING.write(value, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private void writeEntries(int entries) throws IOException {
+        try (SnapshotFileWriter writer = new SnapshotFileWriter(file)) {
+            for (long id = 0; id < entries; id++) {
+                writer.add(key(id), WRITE_TIME + id, encode("value" + id));
+            }
+            Assert.assertEquals(writer.size(), entries);
+            writer.commit();
+        }
+    }
+
+    @Test
+    public void readsWrittenEntries() throws IOException {
+        final long before = System.currentTimeMillis();
+        writeEntries(ENTRIES);
+
+        final SnapshotFile snapshot = SnapshotFile.open(file);
+        Assert.assertEquals(snapshot.size(), ENTRIES);
+        Assert.assertTrue(snapshot.getCreationTime() >= before);
+        for (long id = 0; id < ENTRIES; id++) {
+            final SnapshotEntry entry = snapshot.get(key(id));
+            Assert.assertNotNull(entry);
+            Assert.assertEquals(entry.getWriteTime(), WRITE_TIME + id);
+            Assert.assertEquals(SnapshotCodecs.STRING.read(entry.getValue()), "value" + id);
+        }
+        Assert.assertNull(snapshot.get(key(ENTRIES)));
+    }
+
+    @Test
+    public void readsEmptySnapshot() throws IOException {
+        writeEntries(0);
+
+        final SnapshotFile snapshot = SnapshotFile.open(file);
+        Assert.assertEquals(snapshot.size(), 0);
+        Assert.assertNull(snapshot.get(key(0)));
+    }
+
+    @Test
+    public void commitReplacesPreviousSnapshot() throws IOException {
+        writeEntries(ENTRIES);
+        final SnapshotFile previous = SnapshotFile.open(file);
+        writeEntries(1);
+
+        Assert.assertEquals(SnapshotFile.open(file).size(), 1);
+        // The mapped file can still be read.
+        Assert.assertEquals(SnapshotCodecs.STRING.read(previous.get(key(2)).getValue()), "value2");
+    }
+
+    @Test
+    public void uncommittedSnapshotIsDiscarded() throws IOException {
+        try (SnapshotFileWriter writer = new SnapshotFileWriter(file)) {
+            writer.add(key(1), WRITE_TIME, encode("value1"));
+        }
+
+        Assert.assertFalse(Files.exists(file));
+        try (Stream<Path> paths = Files.list(folder)) {
+            Assert.assertEquals(paths.count(), 0);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(file, "not a snapshot, but long enough for a header".getBytes(StandardCharsets.UTF_8));
+
+        Assert.expectThrows(IOException.class, () -> SnapshotFile.open(file));
+    }
+
+    @Test
+    public void entryExpiresAfterExpirationTime() {
+        final SnapshotEntry entry = new SnapshotEntry(WRITE_TIME, null);
+
+        Assert.assertFalse(entry.isExpired(1, WRITE_TIME + 1));
+        Assert.assertTrue(entry.isExpired(1, WRITE_TIME + 2));
+    }
+}
@@ -0,0 +1,127 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.security.activities.CompiledRoleActivities;
+import com.biit.usermanager.security.activities.RoleActivitiesIndex;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@Test(groups = {"cachingActivityManager"})
+public class CachingActivityManagerTest {
+    private static final IActivity READ = () -> "read";
+    private static final IActivity WRITE = () -> "write";
+
+    private FakeAuthorizationService backend;
+    private IUser<Long> user;
+
+    @BeforeMethod
+    public void createBackend() {
+        backend = new FakeAuthorizationService();
+        user = TestEntities.user(1);
+        backend.roles.put(1L, Collections.singleton(TestEntities.role(1)));
+    }
+
+    private static CompiledRoleActivities<Long> definitions(IActivity activity) {
+        return new CompiledRoleActivities<>(index(activity));
+    }
+
+    private static RoleActivitiesIndex<Long> index(IActivity activity) {
+        return new RoleActivitiesIndex.Builder<Long>().addRole(TestEntities.role(1), Collections.singleton(activity)).build();
+    }
+
+    @Test
+    public void permissionsAreLoadedOnce() throws Exception {
+        final CachingActivityManager<Long, Long, Long> manager = new CachingActivityManager<>(backend, definitions(READ));
+
+        Assert.assertTrue(manager.isAuthorizedActivity(user, READ));
+        Assert.assertFalse(manager.isAuthorizedActivity(user, WRITE));
+        final Map<IActivity, Boolean> expected = new HashMap<>();
+        expected.put(READ, true);
+        expected.put(WRITE, false);
+        Assert.assertEquals(manager.isAuthorizedActivities(user, Arrays.asList(READ, WRITE)), expected);
+
+        Assert.assertEquals(backend.roleQueries.get(), 1);
+    }
+
+    @Test
+    public void organizationPermissionsAreLoadedApart() throws Exception {
+        backend.organizationRoles.put(1L, Collections.singleton(TestEntities.role(2)));
+        final CachingActivityManager<Long, Long, Long> manager = new CachingActivityManager<>(backend, new CompiledRoleActivities<>(
+                new RoleActivitiesIndex.Builder<Long>().addRole(TestEntities.role(1), Collections.singleton(READ))
+                        .addRole(TestEntities.role(2), Collections.singleton(WRITE)).build()));
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(manager.isAuthorizedActivity(user, READ));
+            Assert.assertFalse(manager.isAuthorizedActivity(user, TestEntities.group(1), READ));
+            Assert.assertTrue(manager.isAuthorizedActivity(user, TestEntities.group(1), WRITE));
+        }
+        Assert.assertEquals(backend.roleQueries.get(), 2);
+    }
+
+    @Test
+    public void removedUserIsLoadedAgain() throws Exception {
+        final CachingActivityManager<Long, Long, Long> manager = new CachingActivityManager<>(backend, definitions(READ));
+        Assert.assertTrue(manager.isAuthorizedActivity(user, READ));
+
+        backend.roles.put(1L, Collections.emptySet());
+        manager.removeUser(user);
+
+        Assert.assertFalse(manager.isAuthorizedActivity(user, READ));
+        Assert.assertEquals(backend.roleQueries.get(), 2);
+    }
+
+    @Test
+    public void reloadedDefinitionsDiscardPermissions() throws Exception {
+        final CompiledRoleActivities<Long> definitions = definitions(READ);
+        final CachingActivityManager<Long, Long, Long> manager = new CachingActivityManager<>(backend, definitions);
+        Assert.assertTrue(manager.isAuthorizedActivity(user, READ));
+
+        definitions.setIndex(index(WRITE));
+
+        Assert.assertFalse(manager.isAuthorizedActivity(user, READ));
+        Assert.assertTrue(manager.isAuthorizedActivity(user, WRITE));
+        Assert.assertEquals(backend.roleQueries.get(), 2);
+    }
+
+    @Test
+    public void replacedDefinitionsAreNotListened() throws Exception {
+        final CompiledRoleActivities<Long> previous = definitions(READ);
+        final CachingActivityManager<Long, Long, Long> manager = new CachingActivityManager<>(backend, previous);
+        manager.setRoleActivities(definitions(WRITE));
+        Assert.assertTrue(manager.isAuthorizedActivity(user, WRITE));
+
+        previous.setIndex(index(READ));
+
+        Assert.assertTrue(manager.isAuthorizedActivity(user, WRITE));
+        Assert.assertEquals(backend.roleQueries.get(), 1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IUser;
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.entity.pool.UserPool;
+import com.biit.usermanager.entity.pool.invalidation.InvalidationBus;
+import com.biit.usermanager.security.exceptions.UserDoesNotExistException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Test(groups = {"cachingAuthenticationService"})
+public class CachingAuthenticationServiceTest {
+
+    private FakeAuthenticationService backend;
+    private UserPool<Long, Long> userPool;
+    private CachingAuthenticationService<Long, Long> service;
+
+    @BeforeMethod
+    public void createService() {
+        backend = new FakeAuthenticationService();
+        userPool = new UserPool<>();
+        service = new CachingAuthenticationService<>(backend, userPool, new InvalidationBus());
+    }
+
+    @Test
+    public void userByEmailIsServedFromPool() throws Exception {
+        backend.users.put("user1@test.com", TestEntities.user(1));
+        Assert.assertEquals(service.getUserByEmail("user1@test.com"), TestEntities.user(1));
+        Assert.assertEquals(service.getUserByEmail(" USER1@test.com"), TestEntities.user(1));
+        Assert.assertEquals(backend.emailQueries, 1);
+    }
+
+    @Test
+    public void missingEmailIsRemembered() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Assert.expectThrows(UserDoesNotExistException.class, () -> service.getUserByEmail("unknown@test.com"));
+        }
+        Assert.assertEquals(backend.emailQueries, 1);
+        Assert.assertTrue(userPool.isMissingEmailAddress("unknown@test.com"));
+    }
+
+    @Test
+    public void addedUserClearsMissingEmail() throws Exception {
+        Assert.expectThrows(UserDoesNotExistException.class, () -> service.getUserByEmail("new@test.com"));
+        final IUser<Long> user = TestEntities.user(2, "new@test.com");
+        backend.users.put("new@test.com", user);
+        service.addUser(user);
+        Assert.assertEquals(service.getUserByEmail("new@test.com"), user);
+        Assert.assertEquals(backend.emailQueries, 1);
+    }
+
+    @Test
+    public void deletedUserIsRemovedFromPool() throws Exception {
+        final IUser<Long> user = TestEntities.user(3);
+        backend.users.put(user.getEmailAddress(), user);
+        service.getUserByEmail(user.getEmailAddress());
+        service.deleteUser(user);
+        Assert.expectThrows(UserDoesNotExistException.class, () -> service.getUserByEmail(user.getEmailAddress()));
+        Assert.assertEquals(backend.emailQueries, 2);
+    }
+
+    /**
+     * Backend that only knows users by email.
+     */
+    private static final class FakeAuthenticationService implements IAuthenticationService<Long, Long> {
+        private final Map<String, IUser<Long>> users = new HashMap<>();
+        private int emailQueries;
+
+        @Override
+        public IUser<Long> authenticate(String userMail, String password) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IGroup<Long> getDefaultGroup(IUser<Long> user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IUser<Long> getUserByEmail(String userEmail) throws UserDoesNotExistException {
+            emailQueries++;
+            final IUser<Long> user = users.get(userEmail);
+            if (user == null) {
+                throw new UserDoesNotExistException("User with email '" + userEmail + "' does not exist.");
+            }
+            return user;
+        }
+
+        @Override
+        public IUser<Long> getUserById(long userId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isInGroup(IGroup<Long> group, IUser<Long> user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IUser<Long> updatePassword(IUser<Long> user, String plainTextPassword) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IUser<Long> updateUser(IUser<Long> user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void reset() {
+            // Nothing cached.
+        }
+
+        @Override
+        public IUser<Long> addUser(IGroup<Long> company, String password, String screenName, String emailAddress, String locale,
+                                   String firstName, String middleName, String lastName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IUser<Long> addUser(IUser<Long> user) {
+            return user;
+        }
+
+        @Override
+        public void deleteUser(IUser<Long> user) {
+            users.remove(user.getEmailAddress());
+        }
+
+        @Override
+        public void createBeans() {
+            // No beans.
+        }
+    }
+}
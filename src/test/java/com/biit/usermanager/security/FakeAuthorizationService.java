@@ -0,0 +1,154 @@
+package com.biit.usermanager.security;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.IGroup;
+import com.biit.usermanager.entity.IRole;
+import com.biit.usermanager.entity.IUser;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend that only knows the roles of the users, in and out of organizations. Counts the queries of roles.
+ */
+class FakeAuthorizationService implements IAuthorizationService<Long, Long, Long> {
+    final Map<Long, Set<IRole<Long>>> roles = new ConcurrentHashMap<>();
+    final Map<Long, Set<IRole<Long>>> organizationRoles = new ConcurrentHashMap<>();
+    final AtomicInteger roleQueries = new AtomicInteger();
+
+    @Override
+    public Set<IUser<Long>> getAllUsers() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IUser<Long>> getAllUsers(IGroup<Long> group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IGroup<Long> getOrganization(Long organizationId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IGroup<Long> getOrganization(String organizationName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getAllAvailableOrganizations() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IRole<Long> getRole(Long roleId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IRole<Long> getRole(String roleName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IRole<Long>> getUserGroupRoles(IGroup<Long> group) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserGroups(IUser<Long> user) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserOrganizations(IUser<Long> user) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserOrganizations(IUser<Long> user, IGroup<Long> site) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IRole<Long>> getUserRoles(IUser<Long> user) {
+        roleQueries.incrementAndGet();
+        return roles.getOrDefault(user.getUniqueId(), Collections.emptySet());
+    }
+
+    @Override
+    public Set<IRole<Long>> getUserRoles(IUser<Long> user, IGroup<Long> organization) {
+        roleQueries.incrementAndGet();
+        return organizationRoles.getOrDefault(user.getUniqueId(), Collections.emptySet());
+    }
+
+    @Override
+    public Set<IRole<Long>> getAllRoles(IGroup<Long> organization) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void reset() {
+        // Nothing cached.
+    }
+
+    @Override
+    public Set<IUser<Long>> getUsers(IRole<Long> role, IGroup<Long> organization) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserParentOrganizations(IUser<Long> user) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<IGroup<Long>> getUserChildrenOrganizations(IUser<Long> user, IGroup<Long> parentOrganization) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addUserRole(IUser<Long> user, IRole<Long> role) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addUserOrganizationRole(IUser<Long> user, IGroup<Long> organization, IRole<Long> role) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createBeans() {
+        // No beans.
+    }
+
+    @Override
+    public void cleanUserChildrenOrganizations(IUser<Long> user, IGroup<Long> parentOrganization) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,106 @@
+package com.biit.usermanager.security.activities;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.security.IRoleActivities;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Test(groups = {"roleActivities"})
+public class CompiledRoleActivitiesTest {
+
+    private Path definitionFile;
+
+    @BeforeMethod
+    public void createDefinitionFile() throws IOException {
+        definitionFile = Files.createTempFile("roleActivities", ".properties");
+        write("viewer = report.view\n");
+    }
+
+    @AfterMethod
+    public void deleteDefinitionFile() throws IOException {
+        Files.deleteIfExists(definitionFile);
+    }
+
+    private void write(String definitions) throws IOException {
+        Files.write(definitionFile, definitions.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reloadReplacesIndex() throws Exception {
+        try (CompiledRoleActivities<Long> roleActivities = new CompiledRoleActivities<>(definitionFile,
+                RoleActivitiesDefinitionReaderTest.createReader())) {
+            Assert.assertEquals(roleActivities.getRoleActivities("viewer"), Collections.singleton(RoleActivitiesDefinitionReaderTest.VIEW));
+
+            write("viewer = user.create\n");
+
+            Assert.assertTrue(roleActivities.reload());
+            Assert.assertEquals(roleActivities.getRoleActivities("viewer"), Collections.singleton(RoleActivitiesDefinitionReaderTest.CREATE));
+        }
+    }
+
+    @Test
+    public void failedReloadKeepsIndex() throws Exception {
+        try (CompiledRoleActivities<Long> roleActivities = new CompiledRoleActivities<>(definitionFile,
+                RoleActivitiesDefinitionReaderTest.createReader())) {
+            final RoleActivitiesIndex<Long> index = roleActivities.getIndex();
+            Files.delete(definitionFile);
+
+            Assert.assertFalse(roleActivities.reload());
+            Assert.assertSame(roleActivities.getIndex(), index);
+        }
+    }
+
+    @Test
+    public void indexWithoutFileIsNotReloaded() {
+        final CompiledRoleActivities<Long> roleActivities = new CompiledRoleActivities<>(RoleActivitiesIndex.empty());
+        Assert.assertFalse(roleActivities.reload());
+    }
+
+    @Test
+    public void listenersAreNotifiedOfNewIndex() throws Exception {
+        final List<IRoleActivities<?>> changes = new ArrayList<>();
+        final RoleActivitiesListener listener = changes::add;
+        try (CompiledRoleActivities<Long> roleActivities = new CompiledRoleActivities<>(definitionFile,
+                RoleActivitiesDefinitionReaderTest.createReader())) {
+            roleActivities.addListener(listener);
+            Assert.assertTrue(roleActivities.reload());
+            Files.delete(definitionFile);
+            Assert.assertFalse(roleActivities.reload());
+            roleActivities.removeListener(listener);
+            roleActivities.setIndex(RoleActivitiesIndex.empty());
+
+            Assert.assertEquals(changes, Collections.singletonList(roleActivities));
+        }
+    }
+}
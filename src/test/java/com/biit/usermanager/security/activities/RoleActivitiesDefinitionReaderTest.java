@@ -0,0 +1,91 @@
+package com.biit.usermanager.security.activities;
+
+
+/*-
+ * #%L
+ * User Manager Common Utils
+ * %%
+ * Copyright (C) 2015 - 2025 BiiT Sourcing Solutions S.L.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+
+import com.biit.usermanager.entity.TestEntities;
+import com.biit.usermanager.security.IActivity;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+@Test(groups = {"roleActivities"})
+public class RoleActivitiesDefinitionReaderTest {
+    static final IActivity CREATE = () -> "user.create";
+    static final IActivity DELETE = () -> "user.delete";
+    static final IActivity VIEW = () -> "report.view";
+
+    private static final Map<String, IActivity> ACTIVITIES = new HashMap<>();
+
+    static {
+        for (final IActivity activity : Arrays.asList(CREATE, DELETE, VIEW)) {
+            ACTIVITIES.put(activity.getTag(), activity);
+        }
+    }
+
+    static RoleActivitiesDefinitionReader<Long> createReader() {
+        return new RoleActivitiesDefinitionReader<>(ACTIVITIES::get, roleName -> roleName.equals("administrator") ? 1L : null);
+    }
+
+    @Test
+    public void readsActivitiesOfEachRole() throws Exception {
+        final RoleActivitiesIndex<Long> index = createReader().read(new StringReader(
+                "administrator = user.create, user.delete, report.view\nviewer = report.view\n"));
+
+        Assert.assertEquals(index.size(), 2);
+        Assert.assertEquals(index.getRoleActivities("administrator"), new HashSet<>(Arrays.asList(CREATE, DELETE, VIEW)));
+        Assert.assertEquals(index.getRoleActivities("viewer"), Collections.singleton(VIEW));
+        Assert.assertTrue(index.getRoleActivities("unknown").isEmpty());
+    }
+
+    @Test
+    public void ignoresUnknownAndEmptyTags() throws Exception {
+        final RoleActivitiesIndex<Long> index = createReader().read(new StringReader("viewer = report.view, report.print, ,\nguest =\n"));
+
+        Assert.assertEquals(index.getRoleActivities("viewer"), Collections.singleton(VIEW));
+        Assert.assertTrue(index.getRoleActivities("guest").isEmpty());
+        Assert.assertEquals(index.getRoleNames(), new HashSet<>(Arrays.asList("viewer", "guest")));
+    }
+
+    @Test
+    public void findsRolesByIdOrName() throws Exception {
+        final RoleActivitiesIndex<Long> index = createReader().read(new StringReader("administrator = user.create\nrole2 = report.view\n"));
+
+        // The first role has another name, so it is found by id.
+        Assert.assertEquals(index.getRoleActivities(TestEntities.role(1)), Collections.singleton(CREATE));
+        Assert.assertEquals(index.getRoleActivities(TestEntities.role(2)), Collections.singleton(VIEW));
+        Assert.assertTrue(index.getRoleActivities(TestEntities.role(3)).isEmpty());
+    }
+
+    @Test
+    public void rolesWithSameActivitiesShareTheirSet() throws Exception {
+        final RoleActivitiesIndex<Long> index = createReader().read(new StringReader("viewer = report.view\nauditor = report.view\n"));
+
+        Assert.assertSame(index.getRoleActivities("viewer"), index.getRoleActivities("auditor"));
+    }
+}